@@ -0,0 +1,15 @@
+package enterprises.iwakura.jdainteractables.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Execution of interaction denied callbacks
+ */
+@Name(JfrInteractionTracer.EVENT_PREFIX + "DeniedCallbackEvent")
+@Label("Denied Callbacks")
+@Description("Execution of interaction denied callbacks")
+public class DeniedCallbackEvent extends InteractionStageEvent {
+
+}
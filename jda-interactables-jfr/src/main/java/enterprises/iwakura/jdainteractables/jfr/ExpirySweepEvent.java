@@ -0,0 +1,33 @@
+package enterprises.iwakura.jdainteractables.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Sweep of expired interactables on the expiry timer
+ */
+@Name(JfrInteractionTracer.EVENT_PREFIX + "ExpirySweepEvent")
+@Label("Expiry Sweep")
+@Description("Sweep of expired interactables, excluding expiry callbacks which run asynchronously")
+@Category("JDA Interactables")
+@Enabled(false)
+@StackTrace(false)
+public class ExpirySweepEvent extends Event {
+
+    @Label("Sweep Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    public long sweepDuration;
+
+    @Label("Expired Interactables")
+    public int expiredCount;
+
+    @Label("Registry Size")
+    @Description("Number of interactables remaining in the registry")
+    public int registrySize;
+}
@@ -0,0 +1,15 @@
+package enterprises.iwakura.jdainteractables.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Execution of an interaction handler
+ */
+@Name(JfrInteractionTracer.EVENT_PREFIX + "HandlerExecutionEvent")
+@Label("Handler Execution")
+@Description("Execution of an interaction handler")
+public class HandlerExecutionEvent extends InteractionStageEvent {
+
+}
@@ -0,0 +1,15 @@
+package enterprises.iwakura.jdainteractables.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Interaction waiting in the event processor queue until it is dispatched
+ */
+@Name(JfrInteractionTracer.EVENT_PREFIX + "InteractionDispatchEvent")
+@Label("Interaction Dispatch")
+@Description("Interaction waiting in the event processor queue until it is dispatched")
+public class InteractionDispatchEvent extends InteractionStageEvent {
+
+}
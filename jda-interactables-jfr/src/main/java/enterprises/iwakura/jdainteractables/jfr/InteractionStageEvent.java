@@ -0,0 +1,28 @@
+package enterprises.iwakura.jdainteractables.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of JFR events of a single interaction processing stage. Events are disabled by default, enable them using the
+ * JFC settings shipped with this module.
+ */
+@Category("JDA Interactables")
+@Enabled(false)
+@StackTrace(false)
+public abstract class InteractionStageEvent extends Event {
+
+    @Label("Interaction Type")
+    public String interactionType;
+
+    @Label("Custom ID")
+    @Description("Custom ID of the interacted component or modal")
+    public String customId;
+
+    @Label("User ID")
+    public long userId;
+}
@@ -0,0 +1,108 @@
+package enterprises.iwakura.jdainteractables.jfr;
+
+import enterprises.iwakura.jdainteractables.InteractionEventContext;
+import enterprises.iwakura.jdainteractables.InteractionSpan;
+import enterprises.iwakura.jdainteractables.InteractionTracer;
+import enterprises.iwakura.jdainteractables.TraceStage;
+import jdk.jfr.EventType;
+
+/**
+ * {@link InteractionTracer} emitting Java Flight Recorder events. The events are disabled by default, so the tracer
+ * costs nothing unless a recording enables them, e.g. using the settings shipped with this module:
+ * <pre>{@code
+ * java -XX:StartFlightRecording:settings=default,settings=/path/to/jda-interactables.jfc ...
+ * }</pre>
+ * Set the sample rate of {@link enterprises.iwakura.jdainteractables.InteractionTracing} to 1.0 (default) to record
+ * all interactions.
+ */
+public class JfrInteractionTracer implements InteractionTracer {
+
+    /**
+     * Prefix of names of the events
+     */
+    public static final String EVENT_PREFIX = "enterprises.iwakura.jdainteractables.";
+
+    /**
+     * Path of the JFC settings on the classpath
+     */
+    public static final String SETTINGS_RESOURCE = "/enterprises/iwakura/jdainteractables/jfr/jda-interactables.jfc";
+
+    private static final EventType DISPATCH = EventType.getEventType(InteractionDispatchEvent.class);
+    private static final EventType LOOKUP = EventType.getEventType(RegistryLookupEvent.class);
+    private static final EventType RULES = EventType.getEventType(RuleEvaluationEvent.class);
+    private static final EventType HANDLER = EventType.getEventType(HandlerExecutionEvent.class);
+    private static final EventType DENIED_CALLBACKS = EventType.getEventType(DeniedCallbackEvent.class);
+    private static final EventType EXPIRY_SWEEP = EventType.getEventType(ExpirySweepEvent.class);
+
+    @Override
+    public InteractionSpan startSpan(TraceStage stage, InteractionEventContext ctx) {
+        InteractionStageEvent event;
+        switch (stage) {
+            case QUEUE:
+                event = DISPATCH.isEnabled() ? new InteractionDispatchEvent() : null;
+                break;
+            case LOOKUP:
+                event = LOOKUP.isEnabled() ? new RegistryLookupEvent() : null;
+                break;
+            case RULES:
+                event = RULES.isEnabled() ? new RuleEvaluationEvent() : null;
+                break;
+            case HANDLER:
+                event = HANDLER.isEnabled() ? new HandlerExecutionEvent() : null;
+                break;
+            case DENIED_CALLBACKS:
+                event = DENIED_CALLBACKS.isEnabled() ? new DeniedCallbackEvent() : null;
+                break;
+            default:
+                event = null;
+                break;
+        }
+
+        if (event == null) {
+            return InteractionSpan.NOOP;
+        }
+
+        event.begin();
+        return new JfrSpan(event, ctx);
+    }
+
+    @Override
+    public void recordExpirySweep(long durationNanos, int expiredCount, int registrySize) {
+        if (!EXPIRY_SWEEP.isEnabled()) {
+            return;
+        }
+
+        ExpirySweepEvent event = new ExpirySweepEvent();
+        if (event.shouldCommit()) {
+            event.sweepDuration = durationNanos;
+            event.expiredCount = expiredCount;
+            event.registrySize = registrySize;
+            event.commit();
+        }
+    }
+
+    /**
+     * Span committing the event when it ends. Fields are filled only if the event passes the recording's threshold.
+     */
+    protected static class JfrSpan implements InteractionSpan {
+
+        protected final InteractionStageEvent event;
+        protected final InteractionEventContext ctx;
+
+        protected JfrSpan(InteractionStageEvent event, InteractionEventContext ctx) {
+            this.event = event;
+            this.ctx = ctx;
+        }
+
+        @Override
+        public void end() {
+            event.end();
+            if (event.shouldCommit()) {
+                event.interactionType = ctx.getInteractionType().name();
+                event.customId = ctx.getCustomId();
+                event.userId = ctx.getUser().getIdLong();
+                event.commit();
+            }
+        }
+    }
+}
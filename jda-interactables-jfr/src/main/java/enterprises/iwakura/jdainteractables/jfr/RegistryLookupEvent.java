@@ -0,0 +1,15 @@
+package enterprises.iwakura.jdainteractables.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Lookup of the interactable the interaction belongs to, including rules and handlers
+ */
+@Name(JfrInteractionTracer.EVENT_PREFIX + "RegistryLookupEvent")
+@Label("Registry Lookup")
+@Description("Lookup of the interactable the interaction belongs to, including rules and handlers")
+public class RegistryLookupEvent extends InteractionStageEvent {
+
+}
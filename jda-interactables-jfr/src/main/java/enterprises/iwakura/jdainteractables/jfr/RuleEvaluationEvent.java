@@ -0,0 +1,15 @@
+package enterprises.iwakura.jdainteractables.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evaluation of interaction rules of an interactable
+ */
+@Name(JfrInteractionTracer.EVENT_PREFIX + "RuleEvaluationEvent")
+@Label("Interaction Rule Evaluation")
+@Description("Evaluation of interaction rules of an interactable")
+public class RuleEvaluationEvent extends InteractionStageEvent {
+
+}
@@ -0,0 +1,86 @@
+package enterprises.iwakura.jdainteractables.opentelemetry;
+
+import enterprises.iwakura.jdainteractables.InteractionEventContext;
+import enterprises.iwakura.jdainteractables.InteractionSpan;
+import enterprises.iwakura.jdainteractables.InteractionTracer;
+import enterprises.iwakura.jdainteractables.TraceStage;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import lombok.NonNull;
+
+/**
+ * {@link InteractionTracer} reporting stages of interaction processing as OpenTelemetry spans named
+ * {@code jda-interactables <stage>}. Spans of stages running on the same thread are nested; the queue span is not
+ * made current, as it ends on another thread.
+ */
+public class OpenTelemetryInteractionTracer implements InteractionTracer {
+
+    /**
+     * Instrumentation scope name
+     */
+    public static final String INSTRUMENTATION_NAME = "enterprises.iwakura.jda-interactables";
+
+    /**
+     * Attributes of the spans
+     */
+    public static final AttributeKey<String> INTERACTION_TYPE = AttributeKey.stringKey("discord.interaction.type");
+    public static final AttributeKey<String> CUSTOM_ID = AttributeKey.stringKey("discord.interaction.custom_id");
+    public static final AttributeKey<String> USER_ID = AttributeKey.stringKey("discord.user.id");
+
+    protected final Tracer tracer;
+
+    /**
+     * Creates new tracer
+     *
+     * @param openTelemetry OpenTelemetry instance
+     */
+    public OpenTelemetryInteractionTracer(@NonNull OpenTelemetry openTelemetry) {
+        this.tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    }
+
+    @Override
+    public InteractionSpan startSpan(TraceStage stage, InteractionEventContext ctx) {
+        Span span = tracer.spanBuilder("jda-interactables " + stage.name().toLowerCase())
+            .setSpanKind(stage == TraceStage.REPLY ? SpanKind.CLIENT : SpanKind.INTERNAL)
+            .setAttribute(INTERACTION_TYPE, ctx.getInteractionType().name())
+            .setAttribute(CUSTOM_ID, String.valueOf(ctx.getCustomId()))
+            .setAttribute(USER_ID, ctx.getInteraction().getUser().getId())
+            .startSpan();
+
+        Scope scope = stage == TraceStage.QUEUE ? null : span.makeCurrent();
+        return new OpenTelemetrySpan(span, scope);
+    }
+
+    /**
+     * {@link InteractionSpan} backed by an OpenTelemetry span
+     */
+    protected static class OpenTelemetrySpan implements InteractionSpan {
+
+        protected final Span span;
+        protected final Scope scope;
+
+        protected OpenTelemetrySpan(Span span, Scope scope) {
+            this.span = span;
+            this.scope = scope;
+        }
+
+        @Override
+        public void recordException(Throwable throwable) {
+            span.recordException(throwable);
+            span.setStatus(StatusCode.ERROR);
+        }
+
+        @Override
+        public void end() {
+            if (scope != null) {
+                scope.close();
+            }
+            span.end();
+        }
+    }
+}
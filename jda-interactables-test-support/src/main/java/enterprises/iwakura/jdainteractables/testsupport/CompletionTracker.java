@@ -0,0 +1,125 @@
+package enterprises.iwakura.jdainteractables.testsupport;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import enterprises.iwakura.jdainteractables.InteractableListener;
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
+
+/**
+ * Tracks sent synthetic events until their handlers finish and records their latencies from the scheduled send time
+ */
+class CompletionTracker {
+
+    /**
+     * Scheduled send times of events whose handler has not finished yet, by interaction IDs
+     */
+    private final Map<Long, Long> scheduledTimes = new ConcurrentHashMap<>();
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong lastCompletionNanos = new AtomicLong();
+    private long startNanos;
+    private long staleBefore;
+
+    /**
+     * Starts tracking a new run
+     *
+     * @param startNanos Scheduled send time of the first event
+     */
+    void start(long startNanos) {
+        scheduledTimes.clear();
+        latencyRecorder.reset();
+        completed.set(0);
+        lastCompletionNanos.set(startNanos);
+        this.startNanos = startNanos;
+        this.staleBefore = InteractableListener.getMetrics().getStaleEvents();
+    }
+
+    /**
+     * Tracks the event
+     *
+     * @param event     The event
+     * @param scheduled Scheduled send time of the event
+     * @param <E>       Type of the event
+     * @return The event
+     */
+    <E extends GenericInteractionCreateEvent> E track(E event, long scheduled) {
+        scheduledTimes.put(event.getIdLong(), scheduled);
+        return event;
+    }
+
+    /**
+     * Marks the handler of the event as finished
+     *
+     * @param interactionId ID of the event's interaction
+     */
+    void complete(long interactionId) {
+        long now = System.nanoTime();
+        Long scheduled = scheduledTimes.remove(interactionId);
+        if (scheduled == null) {
+            return;
+        }
+        latencyRecorder.record(now - scheduled);
+        completed.incrementAndGet();
+        lastCompletionNanos.accumulateAndGet(now, Math::max);
+    }
+
+    /**
+     * Waits until the expected number of events finished or were dropped
+     *
+     * @param expected Number of events expected to finish
+     * @param timeout  Time to wait for
+     * @throws InterruptedException if the thread is interrupted
+     */
+    void awaitCompletion(long expected, Duration timeout) throws InterruptedException {
+        long timeoutAt = System.nanoTime() + timeout.toNanos();
+        while (completed.get() + dropped() < expected && System.nanoTime() < timeoutAt) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Creates the report of the run
+     *
+     * @param sent Number of sent events
+     * @return The report
+     */
+    LoadReport report(long sent) {
+        long[] sorted = latencyRecorder.getSortedSamples();
+        LoadReport report = new LoadReport(sent, completed.get(), dropped(),
+            Duration.ofNanos(lastCompletionNanos.get() - startNanos), LatencyRecorder.percentile(sorted, 50),
+            LatencyRecorder.percentile(sorted, 99), LatencyRecorder.percentile(sorted, 99.9),
+            sorted.length == 0 ? 0 : sorted[sorted.length - 1]);
+        scheduledTimes.clear();
+        return report;
+    }
+
+    private long dropped() {
+        return InteractableListener.getMetrics().getStaleEvents() - staleBefore;
+    }
+
+    /**
+     * Waits until the time
+     *
+     * @param deadline Time to wait for as {@link System#nanoTime()}
+     * @throws InterruptedException if the thread is interrupted
+     */
+    static void waitUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            // Parking is too coarse for short waits, yield for the last stretch
+            if (remaining > TimeUnit.MICROSECONDS.toNanos(100)) {
+                LockSupport.parkNanos(remaining - TimeUnit.MICROSECONDS.toNanos(50));
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package enterprises.iwakura.jdainteractables.testsupport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import enterprises.iwakura.jdainteractables.InteractableListener;
+import enterprises.iwakura.jdainteractables.Interaction;
+import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
+import enterprises.iwakura.jdainteractables.InteractionRecorder;
+import enterprises.iwakura.jdainteractables.InteractionTraceReader;
+import enterprises.iwakura.jdainteractables.InteractionTraceReader.DispatchRecord;
+import enterprises.iwakura.jdainteractables.InteractionTraceReader.InteractableKind;
+import enterprises.iwakura.jdainteractables.InteractionTraceReader.RegisterRecord;
+import enterprises.iwakura.jdainteractables.InteractionTraceReader.RemoveRecord;
+import enterprises.iwakura.jdainteractables.InteractionTraceReader.TraceRecord;
+import enterprises.iwakura.jdainteractables.RemovalReason;
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import enterprises.iwakura.jdainteractables.components.InteractableMessage;
+import enterprises.iwakura.jdainteractables.components.InteractableModal;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.components.selections.EntitySelectMenu.SelectTarget;
+import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.EntitySelectInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.StringSelectInteractionEvent;
+
+/**
+ * Replays traces recorded by {@link InteractionRecorder} against a listener, re-driving the recorded registry changes
+ * and events with the recorded timing, optionally sped up. Replayed interactables have the recorded custom IDs in
+ * hashed form and handlers that only record their latency.
+ * <p>
+ * Message interactables get a button, a string select menu and an entity select menu for each recorded custom ID.
+ * Expiries are scaled by the speed and left to the registry, so recorded expiries are not replayed explicitly. Events
+ * that targeted no registered interactable when recorded don't match anything when replayed either and are reported
+ * as missing.
+ * </p>
+ */
+@Slf4j
+@Getter
+public class InteractionReplayer {
+
+    private final InteractableListener listener;
+    private double speed = 1;
+    private Duration completionTimeout = Duration.ofSeconds(10);
+
+    @Getter(AccessLevel.NONE)
+    private final CompletionTracker tracker = new CompletionTracker();
+
+    /**
+     * Replayed interactables by hashes of the recorded interactable IDs
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, Interactable<?>> replayedInteractables = new HashMap<>();
+
+    /**
+     * Custom IDs of replayed interactables by hashes of the recorded custom IDs
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, String> replayedCustomIds = new HashMap<>();
+
+    /**
+     * Registered replayed interactables by hashes of their recorded custom IDs
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, Interactable<?>> owners = new HashMap<>();
+
+    /**
+     * Creates new {@link InteractionReplayer}
+     *
+     * @param listener Listener to send the events to
+     */
+    public InteractionReplayer(@NonNull InteractableListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the speed of the replay, e.g. 1 for the recorded speed or 10 for ten times faster
+     *
+     * @param speed Positive speed
+     * @return This replayer
+     */
+    public InteractionReplayer setSpeed(double speed) {
+        if (!(speed > 0) || Double.isInfinite(speed)) {
+            throw new IllegalArgumentException("Speed must be positive: " + speed);
+        }
+        this.speed = speed;
+        return this;
+    }
+
+    /**
+     * Sets the time to wait for handlers to finish after the last event was sent
+     *
+     * @param completionTimeout The timeout
+     * @return This replayer
+     */
+    public InteractionReplayer setCompletionTimeout(@NonNull Duration completionTimeout) {
+        this.completionTimeout = completionTimeout;
+        return this;
+    }
+
+    /**
+     * Replays the trace on the current thread. The trace is read fully before the replay starts, so reading does not
+     * distort the timing. Interactables still registered at the end of the trace are removed once the replay
+     * finishes.
+     *
+     * @param inputStream Stream of the trace, not closed by this method
+     * @return Report of the replay
+     * @throws IOException          if the trace could not be read
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public synchronized LoadReport replay(@NonNull InputStream inputStream) throws IOException, InterruptedException {
+        List<TraceRecord> records = new ArrayList<>();
+        InteractionTraceReader reader = new InteractionTraceReader(inputStream);
+        TraceRecord record;
+        while ((record = reader.next()) != null) {
+            records.add(record);
+        }
+
+        long sent = 0;
+        long expected = 0;
+        try {
+            long start = System.nanoTime();
+            tracker.start(start);
+            for (TraceRecord current : records) {
+                long scheduled = start + (long) (current.getElapsedMicros() * 1000 / speed);
+                CompletionTracker.waitUntil(scheduled);
+
+                if (current instanceof DispatchRecord) {
+                    DispatchRecord dispatch = (DispatchRecord) current;
+                    Interactable<?> owner = owners.get(dispatch.getCustomIdHash());
+                    if (owner != null && !owner.isExpired()) {
+                        expected++;
+                    }
+                    send(dispatch, scheduled);
+                    sent++;
+                } else if (current instanceof RegisterRecord) {
+                    register((RegisterRecord) current);
+                } else if (current instanceof RemoveRecord) {
+                    remove((RemoveRecord) current);
+                }
+            }
+
+            tracker.awaitCompletion(expected, completionTimeout);
+            LoadReport report = tracker.report(sent);
+            log.info("Replay of {} records finished: {}", records.size(), report);
+            return report;
+        } finally {
+            InteractableListener.removeAll(new ArrayList<>(replayedInteractables.values()));
+            replayedInteractables.clear();
+            replayedCustomIds.clear();
+            owners.clear();
+        }
+    }
+
+    /**
+     * Registers an interactable of the trace
+     *
+     * @param record The record
+     */
+    protected void register(RegisterRecord record) {
+        Interactable<?> interactable;
+        if (record.getInteractableKind() == InteractableKind.MODAL) {
+            InteractableModal modal = new InteractableModal(event -> {
+                tracker.complete(event.getIdLong());
+                return Result.KEEP;
+            });
+            for (long customIdHash : record.getCustomIdHashes()) {
+                replayedCustomIds.put(customIdHash, modal.getModalId());
+            }
+            interactable = modal;
+        } else {
+            InteractableMessage message = new InteractableMessage();
+            for (long customIdHash : record.getCustomIdHashes()) {
+                String customId = customId(customIdHash);
+                message.addInteraction(Interaction.asExistingButton(customId), event -> {
+                    tracker.complete(event.getIdLong());
+                    return Result.KEEP;
+                });
+                message.addInteraction(Interaction.asExistingStringSelectMenu(customId), event -> {
+                    tracker.complete(event.getIdLong());
+                    return Result.KEEP;
+                });
+                message.addInteraction(Interaction.asExistingEntitySelectMenu(customId, SelectTarget.USER), event -> {
+                    tracker.complete(event.getIdLong());
+                    return Result.KEEP;
+                });
+                replayedCustomIds.put(customIdHash, customId);
+            }
+            interactable = message;
+        }
+
+        interactable.setExpiryDuration(Duration.ofMillis(Math.max(1, (long) (record.getExpiryMillis() / speed))));
+        Interactable<?> previous = replayedInteractables.put(record.getInteractableHash(), interactable);
+        if (previous != null) {
+            InteractableListener.removeInteractable(previous);
+        }
+        for (long customIdHash : record.getCustomIdHashes()) {
+            owners.put(customIdHash, interactable);
+        }
+        InteractableListener.addInteractable(interactable);
+    }
+
+    /**
+     * Removes an interactable of the trace, recorded expiries are left to the registry
+     *
+     * @param record The record
+     */
+    protected void remove(RemoveRecord record) {
+        if (record.getReason() == RemovalReason.EXPIRED) {
+            return;
+        }
+        Interactable<?> interactable = replayedInteractables.remove(record.getInteractableHash());
+        if (interactable != null) {
+            owners.values().removeIf(owner -> owner == interactable);
+            InteractableListener.removeInteractable(interactable);
+        }
+    }
+
+    /**
+     * Sends an event of the trace to the listener
+     *
+     * @param record    The record
+     * @param scheduled Scheduled send time
+     */
+    protected void send(DispatchRecord record, long scheduled) {
+        String customId = replayedCustomIds.get(record.getCustomIdHash());
+        if (customId == null) {
+            customId = customId(record.getCustomIdHash());
+        }
+        long userId = record.getUserHash();
+        long guildId = record.getGuildHash();
+
+        switch (record.getInteractionType()) {
+            case BUTTON_CLICK: {
+                ButtonInteractionEvent event = SyntheticEvents.button(customId, userId, guildId);
+                listener.onButtonInteraction(tracker.track(event, scheduled));
+                break;
+            }
+            case STRING_SELECT_MENU: {
+                StringSelectInteractionEvent event = SyntheticEvents.stringSelect(customId,
+                    Collections.singletonList(customId), userId, guildId);
+                listener.onStringSelectInteraction(tracker.track(event, scheduled));
+                break;
+            }
+            case ENTITY_SELECT_MENU: {
+                EntitySelectInteractionEvent event = SyntheticEvents.entitySelect(customId, userId, guildId);
+                listener.onEntitySelectInteraction(tracker.track(event, scheduled));
+                break;
+            }
+            case MODAL_SUBMITTED: {
+                ModalInteractionEvent event = SyntheticEvents.modal(customId, userId, guildId);
+                listener.onModalInteraction(tracker.track(event, scheduled));
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unsupported interaction type: " + record.getInteractionType());
+        }
+    }
+
+    private static String customId(long customIdHash) {
+        return "replay-" + Long.toHexString(customIdHash);
+    }
+}
@@ -0,0 +1,72 @@
+package enterprises.iwakura.jdainteractables.testsupport;
+
+import java.util.Arrays;
+
+/**
+ * Thread-safe recorder of latency samples in nanoseconds. Samples are kept exactly, so percentiles are exact too.
+ */
+public class LatencyRecorder {
+
+    private static final int INITIAL_CAPACITY = 1 << 14;
+
+    private long[] samples = new long[INITIAL_CAPACITY];
+    private int count;
+
+    /**
+     * Records a sample
+     *
+     * @param nanos Latency in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    /**
+     * Gets the number of recorded samples
+     *
+     * @return Number of samples
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the recorded samples sorted ascending
+     *
+     * @return Copy of the samples
+     */
+    public synchronized long[] getSortedSamples() {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Gets the sample at the percentile of sorted samples using the nearest-rank method
+     *
+     * @param sorted     Samples sorted ascending
+     * @param percentile Percentile between 0 and 100
+     * @return The sample or zero if there are no samples
+     */
+    public static long percentile(long[] sorted, double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Removes all samples
+     */
+    public synchronized void reset() {
+        samples = new long[INITIAL_CAPACITY];
+        count = 0;
+    }
+}
@@ -0,0 +1,278 @@
+package enterprises.iwakura.jdainteractables.testsupport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import enterprises.iwakura.jdainteractables.InteractableListener;
+import enterprises.iwakura.jdainteractables.Interaction;
+import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
+import enterprises.iwakura.jdainteractables.InteractionType;
+import enterprises.iwakura.jdainteractables.components.InteractableMessage;
+import enterprises.iwakura.jdainteractables.components.InteractableModal;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.components.selections.EntitySelectMenu.SelectTarget;
+import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.EntitySelectInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.StringSelectInteractionEvent;
+
+/**
+ * Open-loop load generator of synthetic interactions, see {@link SyntheticEvents}. Fills the registry with
+ * {@link #getRegistrySize()} interactable messages, then fires events at {@link #getEventsPerSecond()} through the
+ * listener's event methods for {@link #getDuration()}, spread over the configured interaction types, users and
+ * guilds.
+ * <p>
+ * Events are sent on a fixed schedule regardless of how fast they are handled, and latency is measured from the
+ * scheduled send time, so a stalled dispatch path shows up in the tail latencies instead of slowing down the
+ * generator. Runs are reproducible for the same {@link #getSeed()}.
+ * </p>
+ */
+@Slf4j
+@Getter
+public class LoadGenerator {
+
+    private final InteractableListener listener;
+    private int eventsPerSecond = 1000;
+    private Duration duration = Duration.ofSeconds(10);
+    private int registrySize = 1000;
+    private Set<InteractionType> interactionTypes = EnumSet.of(InteractionType.BUTTON_CLICK);
+    private int userCount = 1000;
+    private int guildCount = 10;
+    private Duration completionTimeout = Duration.ofSeconds(10);
+    private long seed = 42;
+
+    @Getter(AccessLevel.NONE)
+    private final CompletionTracker tracker = new CompletionTracker();
+
+    /**
+     * Creates new {@link LoadGenerator}
+     *
+     * @param listener Listener to send the events to, should be the one registered to JDA in production
+     */
+    public LoadGenerator(@NonNull InteractableListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the number of sent events per second
+     *
+     * @param eventsPerSecond Positive rate
+     * @return This generator
+     */
+    public LoadGenerator setEventsPerSecond(int eventsPerSecond) {
+        if (eventsPerSecond <= 0) {
+            throw new IllegalArgumentException("Events per second must be positive: " + eventsPerSecond);
+        }
+        this.eventsPerSecond = eventsPerSecond;
+        return this;
+    }
+
+    /**
+     * Sets the time events are sent for
+     *
+     * @param duration Positive duration
+     * @return This generator
+     */
+    public LoadGenerator setDuration(@NonNull Duration duration) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Duration must be positive: " + duration);
+        }
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * Sets the number of interactable messages registered for the run. Each message has a button, a string select
+     * menu and an entity select menu. Modals are registered on demand, one per modal event.
+     *
+     * @param registrySize Positive number of messages
+     * @return This generator
+     */
+    public LoadGenerator setRegistrySize(int registrySize) {
+        if (registrySize <= 0) {
+            throw new IllegalArgumentException("Registry size must be positive: " + registrySize);
+        }
+        this.registrySize = registrySize;
+        return this;
+    }
+
+    /**
+     * Sets the interaction types of sent events, events are spread over the types evenly
+     *
+     * @param type  The interaction type
+     * @param types Additional interaction types
+     * @return This generator
+     */
+    public LoadGenerator setInteractionTypes(@NonNull InteractionType type, @NonNull InteractionType... types) {
+        this.interactionTypes = EnumSet.of(type, types);
+        return this;
+    }
+
+    /**
+     * Sets the number of distinct users sending events
+     *
+     * @param userCount Positive number of users
+     * @return This generator
+     */
+    public LoadGenerator setUserCount(int userCount) {
+        if (userCount <= 0) {
+            throw new IllegalArgumentException("User count must be positive: " + userCount);
+        }
+        this.userCount = userCount;
+        return this;
+    }
+
+    /**
+     * Sets the number of distinct guilds events are sent from
+     *
+     * @param guildCount Number of guilds, zero to send all events from direct messages
+     * @return This generator
+     */
+    public LoadGenerator setGuildCount(int guildCount) {
+        if (guildCount < 0) {
+            throw new IllegalArgumentException("Guild count must not be negative: " + guildCount);
+        }
+        this.guildCount = guildCount;
+        return this;
+    }
+
+    /**
+     * Sets the time to wait for handlers to finish after the last event was sent
+     *
+     * @param completionTimeout The timeout
+     * @return This generator
+     */
+    public LoadGenerator setCompletionTimeout(@NonNull Duration completionTimeout) {
+        this.completionTimeout = completionTimeout;
+        return this;
+    }
+
+    /**
+     * Sets the seed of picking users, guilds and messages of events
+     *
+     * @param seed The seed
+     * @return This generator
+     */
+    public LoadGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Runs the load on the current thread. Registered messages are removed once the run finishes.
+     *
+     * @return Report of the run
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public synchronized LoadReport run() throws InterruptedException {
+        String runId = Long.toHexString(System.nanoTime());
+        List<InteractableMessage> messages = createMessages(runId);
+        InteractableListener.registerAll(messages);
+
+        InteractionType[] types = interactionTypes.toArray(new InteractionType[0]);
+        Random random = new Random(seed);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / eventsPerSecond;
+        long total = Math.max(1, duration.toNanos() / intervalNanos);
+
+        try {
+            long start = System.nanoTime();
+            tracker.start(start);
+            for (long index = 0; index < total; index++) {
+                long scheduled = start + index * intervalNanos;
+                CompletionTracker.waitUntil(scheduled);
+
+                String prefix = "load-" + runId + "-" + random.nextInt(registrySize);
+                long userId = 1 + random.nextInt(userCount);
+                long guildId = guildCount == 0 ? 0 : 1 + random.nextInt(guildCount);
+                send(types[(int) (index % types.length)], prefix, userId, guildId, scheduled);
+            }
+
+            tracker.awaitCompletion(total, completionTimeout);
+            LoadReport report = tracker.report(total);
+            log.info("Load run finished: {}", report);
+            return report;
+        } finally {
+            InteractableListener.removeAll(messages);
+        }
+    }
+
+    /**
+     * Creates the messages of the run, each with a button, string select menu and entity select menu
+     *
+     * @param runId ID of the run, prefixing custom IDs
+     * @return The messages
+     */
+    protected List<InteractableMessage> createMessages(String runId) {
+        List<InteractableMessage> messages = new ArrayList<>(registrySize);
+        for (int index = 0; index < registrySize; index++) {
+            String prefix = "load-" + runId + "-" + index;
+            InteractableMessage message = new InteractableMessage();
+            message.addInteraction(Interaction.asExistingButton(prefix + "-button"), event -> {
+                tracker.complete(event.getIdLong());
+                return Result.KEEP;
+            });
+            message.addInteraction(Interaction.asExistingStringSelectMenu(prefix + "-string"), event -> {
+                tracker.complete(event.getIdLong());
+                return Result.KEEP;
+            });
+            message.addInteraction(Interaction.asExistingEntitySelectMenu(prefix + "-entity", SelectTarget.USER),
+                event -> {
+                    tracker.complete(event.getIdLong());
+                    return Result.KEEP;
+                });
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * Sends a single event to the listener
+     *
+     * @param type      Interaction type of the event
+     * @param prefix    Custom ID prefix of the targeted message
+     * @param userId    ID of the user
+     * @param guildId   ID of the guild, zero for direct messages
+     * @param scheduled Scheduled send time
+     */
+    protected void send(InteractionType type, String prefix, long userId, long guildId, long scheduled) {
+        switch (type) {
+            case BUTTON_CLICK: {
+                ButtonInteractionEvent event = SyntheticEvents.button(prefix + "-button", userId, guildId);
+                listener.onButtonInteraction(tracker.track(event, scheduled));
+                break;
+            }
+            case STRING_SELECT_MENU: {
+                String customId = prefix + "-string";
+                StringSelectInteractionEvent event = SyntheticEvents.stringSelect(customId,
+                    Collections.singletonList(customId), userId, guildId);
+                listener.onStringSelectInteraction(tracker.track(event, scheduled));
+                break;
+            }
+            case ENTITY_SELECT_MENU: {
+                EntitySelectInteractionEvent event = SyntheticEvents.entitySelect(prefix + "-entity", userId, guildId);
+                listener.onEntitySelectInteraction(tracker.track(event, scheduled));
+                break;
+            }
+            case MODAL_SUBMITTED: {
+                InteractableModal modal = new InteractableModal(submitted -> {
+                    tracker.complete(submitted.getIdLong());
+                    return Result.REMOVE;
+                }).registerNow();
+                ModalInteractionEvent event = SyntheticEvents.modal(modal.getModalId(), userId, guildId);
+                listener.onModalInteraction(tracker.track(event, scheduled));
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unsupported interaction type: " + type);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package enterprises.iwakura.jdainteractables.testsupport;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Result of a {@link LoadGenerator} run. Latencies are measured from the time each event was scheduled to be sent to
+ * the time its handler finished, so stalls of the dispatch path are not hidden by the generator falling behind.
+ */
+@Getter
+@RequiredArgsConstructor
+public class LoadReport {
+
+    /**
+     * Number of sent events
+     */
+    private final long sent;
+
+    /**
+     * Number of events whose handler finished
+     */
+    private final long completed;
+
+    /**
+     * Number of events dropped past their acknowledgement deadline
+     */
+    private final long dropped;
+
+    /**
+     * Time from the first scheduled event to the last finished handler
+     */
+    private final Duration elapsed;
+
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    /**
+     * Gets the number of events whose handler finished per second
+     *
+     * @return Throughput in events per second
+     */
+    public double getThroughput() {
+        long elapsedNanos = elapsed.toNanos();
+        return elapsedNanos == 0 ? 0 : completed * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * Gets the number of events neither finished nor dropped, e.g. lost or still running after the completion
+     * timeout
+     *
+     * @return Number of missing events
+     */
+    public long getMissing() {
+        return sent - completed - dropped;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+            "sent=%d completed=%d dropped=%d missing=%d throughput=%.1f/s p50=%.3fms p99=%.3fms p99.9=%.3fms "
+                + "max=%.3fms", sent, completed, dropped, getMissing(), getThroughput(), millis(p50Nanos),
+            millis(p99Nanos), millis(p999Nanos), millis(maxNanos));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000d;
+    }
+}
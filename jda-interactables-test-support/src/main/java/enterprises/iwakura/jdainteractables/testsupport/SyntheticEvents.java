@@ -0,0 +1,195 @@
+package enterprises.iwakura.jdainteractables.testsupport;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.NonNull;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.components.buttons.Button;
+import net.dv8tion.jda.api.components.buttons.ButtonStyle;
+import net.dv8tion.jda.api.components.selections.SelectOption;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.EntitySelectInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.StringSelectInteractionEvent;
+import net.dv8tion.jda.api.interactions.components.buttons.ButtonInteraction;
+import net.dv8tion.jda.api.interactions.components.selections.EntitySelectInteraction;
+import net.dv8tion.jda.api.interactions.components.selections.StringSelectInteraction;
+import net.dv8tion.jda.api.interactions.modals.ModalInteraction;
+import net.dv8tion.jda.api.utils.TimeUtil;
+
+/**
+ * Factory of synthetic interaction events, usable without a gateway connection. Events are backed by stubs answering
+ * the getters the library uses: custom IDs, clicked buttons, selected values, user and guild IDs. Other getters return
+ * defaults, empty lists or null.
+ * <p>
+ * Each event gets a fresh interaction ID whose timestamp is the current time, so acknowledgement deadlines of
+ * synthetic events behave as those of real ones. Synthetic events are already acknowledged, the library never sends
+ * requests for them.
+ * </p>
+ */
+public final class SyntheticEvents {
+
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final JDA jda = stub(JDA.class, Collections.emptyMap());
+
+    private SyntheticEvents() {
+    }
+
+    /**
+     * Creates a button click
+     *
+     * @param customId Custom ID of the button
+     * @param userId   ID of the clicking user
+     * @param guildId  ID of the guild, zero for direct messages
+     * @return The event
+     */
+    public static ButtonInteractionEvent button(@NonNull String customId, long userId, long guildId) {
+        long id = nextInteractionId();
+        Map<String, Object> answers = interactionAnswers(id, userId, guildId);
+        answers.put("getCustomId", customId);
+        answers.put("getComponentId", customId);
+        // The library matches clicks by the custom ID of the clicked button
+        Button button = Button.of(ButtonStyle.SECONDARY, customId, customId);
+        answers.put("getButton", button);
+        answers.put("getComponent", button);
+        return new ButtonInteractionEvent(jda, id, stub(ButtonInteraction.class, answers));
+    }
+
+    /**
+     * Creates a string select menu selection
+     *
+     * @param customId Custom ID of the select menu
+     * @param values   Selected values
+     * @param userId   ID of the selecting user
+     * @param guildId  ID of the guild, zero for direct messages
+     * @return The event
+     */
+    public static StringSelectInteractionEvent stringSelect(
+        @NonNull String customId,
+        @NonNull List<String> values,
+        long userId,
+        long guildId
+    ) {
+        long id = nextInteractionId();
+        List<SelectOption> options = new ArrayList<>(values.size());
+        for (String value : values) {
+            options.add(SelectOption.of(value, value));
+        }
+
+        Map<String, Object> answers = interactionAnswers(id, userId, guildId);
+        answers.put("getCustomId", customId);
+        answers.put("getComponentId", customId);
+        answers.put("getValues", Collections.unmodifiableList(new ArrayList<>(values)));
+        answers.put("getSelectedOptions", Collections.unmodifiableList(options));
+        return new StringSelectInteractionEvent(jda, id, stub(StringSelectInteraction.class, answers));
+    }
+
+    /**
+     * Creates an entity select menu selection without any selected entities
+     *
+     * @param customId Custom ID of the select menu
+     * @param userId   ID of the selecting user
+     * @param guildId  ID of the guild, zero for direct messages
+     * @return The event
+     */
+    public static EntitySelectInteractionEvent entitySelect(@NonNull String customId, long userId, long guildId) {
+        long id = nextInteractionId();
+        Map<String, Object> answers = interactionAnswers(id, userId, guildId);
+        answers.put("getCustomId", customId);
+        answers.put("getComponentId", customId);
+        return new EntitySelectInteractionEvent(jda, id, stub(EntitySelectInteraction.class, answers));
+    }
+
+    /**
+     * Creates a modal submission without any values
+     *
+     * @param modalId ID of the modal
+     * @param userId  ID of the submitting user
+     * @param guildId ID of the guild, zero for direct messages
+     * @return The event
+     */
+    public static ModalInteractionEvent modal(@NonNull String modalId, long userId, long guildId) {
+        long id = nextInteractionId();
+        Map<String, Object> answers = interactionAnswers(id, userId, guildId);
+        answers.put("getModalId", modalId);
+        return new ModalInteractionEvent(jda, id, stub(ModalInteraction.class, answers));
+    }
+
+    /**
+     * Generates a unique interaction ID created now
+     *
+     * @return The interaction ID
+     */
+    public static long nextInteractionId() {
+        long timestamp = System.currentTimeMillis() - TimeUtil.DISCORD_EPOCH;
+        return (timestamp << TimeUtil.TIMESTAMP_OFFSET) | (sequence.incrementAndGet() & 0x3FFFFF);
+    }
+
+    private static Map<String, Object> interactionAnswers(long id, long userId, long guildId) {
+        Map<String, Object> userAnswers = new HashMap<>();
+        userAnswers.put("getIdLong", userId);
+        userAnswers.put("getId", Long.toUnsignedString(userId));
+
+        Map<String, Object> answers = new HashMap<>();
+        answers.put("getJDA", jda);
+        answers.put("getIdLong", id);
+        answers.put("getId", Long.toUnsignedString(id));
+        answers.put("getUser", stub(User.class, userAnswers));
+        answers.put("isAcknowledged", true);
+
+        if (guildId != 0) {
+            Map<String, Object> guildAnswers = new HashMap<>();
+            guildAnswers.put("getIdLong", guildId);
+            guildAnswers.put("getId", Long.toUnsignedString(guildId));
+            answers.put("getGuild", stub(Guild.class, guildAnswers));
+            answers.put("isFromGuild", true);
+        }
+        return answers;
+    }
+
+    /**
+     * Creates a stub of the interface answering getters by their names and returning defaults otherwise
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Object> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            String name = method.getName();
+            if (method.getParameterCount() == 0 && answers.containsKey(name)) {
+                return answers.get(name);
+            }
+            switch (name) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Synthetic " + type.getSimpleName();
+                default:
+                    break;
+            }
+
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+                return false;
+            }
+            if (returnType == int.class) {
+                return 0;
+            }
+            if (returnType == long.class) {
+                return 0L;
+            }
+            if (returnType == List.class) {
+                return Collections.emptyList();
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package enterprises.iwakura.jdainteractables.testsupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import enterprises.iwakura.jdainteractables.InteractableListener;
+import enterprises.iwakura.jdainteractables.InteractionRecorder;
+import enterprises.iwakura.jdainteractables.InteractionType;
+
+public class InteractionReplayerTest {
+
+    @Test
+    public void testRecordedLoadIsReplayed() throws Exception {
+        ByteArrayOutputStream trace = new ByteArrayOutputStream();
+        LoadReport recorded;
+        try (InteractableListener listener = new InteractableListener()) {
+            InteractionRecorder recorder = new InteractionRecorder(trace);
+            listener.setInteractionRecorder(recorder);
+            recorded = new LoadGenerator(listener)
+                .setEventsPerSecond(1000)
+                .setDuration(Duration.ofMillis(500))
+                .setRegistrySize(100)
+                .setInteractionTypes(InteractionType.BUTTON_CLICK, InteractionType.STRING_SELECT_MENU)
+                .run();
+            listener.setInteractionRecorder(null);
+            recorder.close();
+        }
+
+        try (InteractableListener listener = new InteractableListener()) {
+            LoadReport replayed = new InteractionReplayer(listener)
+                .setSpeed(5)
+                .replay(new ByteArrayInputStream(trace.toByteArray()));
+
+            assertEquals(recorded.getSent(), replayed.getSent(), replayed.toString());
+            assertEquals(replayed.getSent(), replayed.getCompleted(), replayed.toString());
+        }
+    }
+}
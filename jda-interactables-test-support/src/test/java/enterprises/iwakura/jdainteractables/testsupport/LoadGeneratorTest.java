@@ -0,0 +1,28 @@
+package enterprises.iwakura.jdainteractables.testsupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import enterprises.iwakura.jdainteractables.InteractableListener;
+import enterprises.iwakura.jdainteractables.InteractionType;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void testAllEventsAreHandled() throws InterruptedException {
+        try (InteractableListener listener = new InteractableListener()) {
+            LoadReport report = new LoadGenerator(listener)
+                .setEventsPerSecond(2000)
+                .setDuration(Duration.ofSeconds(1))
+                .setRegistrySize(500)
+                .setInteractionTypes(InteractionType.BUTTON_CLICK, InteractionType.STRING_SELECT_MENU,
+                    InteractionType.ENTITY_SELECT_MENU, InteractionType.MODAL_SUBMITTED)
+                .run();
+
+            assertEquals(report.getSent(), report.getCompleted(), report.toString());
+        }
+    }
+}
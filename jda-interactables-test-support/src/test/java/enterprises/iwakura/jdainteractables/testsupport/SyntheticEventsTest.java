@@ -0,0 +1,21 @@
+package enterprises.iwakura.jdainteractables.testsupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import enterprises.iwakura.jdainteractables.InteractionEventContext;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+
+public class SyntheticEventsTest {
+
+    @Test
+    public void testButtonAnswersClickedButton() {
+        ButtonInteractionEvent event = SyntheticEvents.button("vote-yes", 1, 2);
+
+        assertEquals("vote-yes", event.getButton().getCustomId());
+        assertEquals("vote-yes", event.getComponent().getCustomId());
+        assertEquals("vote-yes", new InteractionEventContext(event).getCustomId());
+        assertEquals(1, event.getUser().getIdLong());
+    }
+}
@@ -0,0 +1,123 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dispatch lane of {@link InteractableListener} with its own FIFO queue and concurrency budget. At most
+ * {@link #getMaxConcurrency()} events of the lane are processed at once; the rest wait in the lane's queue, so a burst
+ * in one lane never delays events of other lanes. See
+ * {@link InteractableListener#setDispatchLane(InteractionType, DispatchLane)} and
+ * {@link InteractableListener#setPriorityLane(int, DispatchLane)}.
+ * <p>
+ * Events are processed on the underlying executor. Lanes can share an executor as long as it does not queue tasks
+ * itself, e.g. {@link java.util.concurrent.Executors#newCachedThreadPool()}; otherwise, give each lane its own one.
+ * </p>
+ */
+@Slf4j
+@ToString(of = {"name", "maxConcurrency"})
+public class DispatchLane implements Executor {
+
+    @Getter
+    private final String name;
+    @Getter
+    private final int maxConcurrency;
+    @Getter
+    private final Executor executor;
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * Creates new {@link DispatchLane}
+     *
+     * @param name           Name of the lane used in logs
+     * @param maxConcurrency Maximum number of events processed at once
+     * @param executor       Executor processing the events
+     */
+    public DispatchLane(@NonNull String name, int maxConcurrency, @NonNull Executor executor) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Max concurrency must be positive: " + maxConcurrency);
+        }
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.executor = executor;
+    }
+
+    /**
+     * Queues the task and runs it once the lane's budget allows. If the underlying executor rejects the task, it runs
+     * on the calling thread.
+     *
+     * @param task The task
+     */
+    @Override
+    public void execute(@NonNull Runnable task) {
+        queue.offer(task);
+        schedule();
+    }
+
+    /**
+     * Gets the number of tasks waiting in the lane's queue. This is not a constant-time operation.
+     *
+     * @return Number of queued tasks
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of tasks currently running
+     *
+     * @return Number of running tasks
+     */
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    /**
+     * Submits queued tasks to the executor while the budget allows
+     */
+    protected void schedule() {
+        while (!queue.isEmpty()) {
+            int current = running.get();
+            if (current >= maxConcurrency) {
+                return;
+            }
+            if (!running.compareAndSet(current, current + 1)) {
+                continue;
+            }
+
+            Runnable task = queue.poll();
+            if (task == null) {
+                // Taken by another thread in the meantime
+                running.decrementAndGet();
+                continue;
+            }
+
+            try {
+                executor.execute(() -> runAndContinue(task));
+            } catch (RejectedExecutionException exception) {
+                log.warn("Executor of dispatch lane {} rejected a task, running it on the calling thread", name);
+                runAndContinue(task);
+                return;
+            }
+        }
+    }
+
+    private void runAndContinue(Runnable task) {
+        try {
+            task.run();
+        } finally {
+            running.decrementAndGet();
+            schedule();
+        }
+    }
+}
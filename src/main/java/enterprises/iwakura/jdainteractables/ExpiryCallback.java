@@ -0,0 +1,63 @@
+package enterprises.iwakura.jdainteractables;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+
+/**
+ * A callback that is called when an {@link Interactable} expires or is discarded by the registry, see
+ * {@link Interactable#addExpiryCallback(ExpiryCallback)}
+ */
+@FunctionalInterface
+public interface ExpiryCallback {
+
+    /**
+     * Called when the interactable expires
+     *
+     * @param reason {@link RemovalReason#EXPIRED} if the expiry duration has elapsed,
+     *               {@link RemovalReason#COLLECTED} if the owner of the interactable was garbage collected, or
+     *               {@link RemovalReason#EVICTED} if the interactable was evicted by {@link InteractableQuotas}
+     */
+    void onExpired(RemovalReason reason);
+
+    /**
+     * Wraps the callback for {@link Interactable#getExpiryCallbacks()}, which holds plain {@link Runnable}s
+     *
+     * @param callback The callback
+     * @return Runnable passing the reason to the callback when run by {@link #run(Runnable, RemovalReason)}
+     */
+    static Runnable asRunnable(ExpiryCallback callback) {
+        return new RunnableAdapter(callback);
+    }
+
+    /**
+     * Runs the expiry callback of {@link Interactable#getExpiryCallbacks()}. Callbacks added as {@link ExpiryCallback}
+     * receive the reason, plain {@link Runnable}s are just run.
+     *
+     * @param callback The callback
+     * @param reason   The reason of the removal
+     */
+    static void run(Runnable callback, RemovalReason reason) {
+        if (callback instanceof RunnableAdapter) {
+            ((RunnableAdapter) callback).callback.onExpired(reason);
+        } else {
+            callback.run();
+        }
+    }
+
+    /**
+     * {@link ExpiryCallback} stored among {@link Runnable} callbacks, run with {@link RemovalReason#EXPIRED} if run
+     * directly
+     */
+    final class RunnableAdapter implements Runnable {
+
+        private final ExpiryCallback callback;
+
+        private RunnableAdapter(ExpiryCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            callback.onExpired(RemovalReason.EXPIRED);
+        }
+    }
+}
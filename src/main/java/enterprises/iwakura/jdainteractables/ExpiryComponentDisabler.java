@@ -0,0 +1,334 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import enterprises.iwakura.jdainteractables.components.InteractableMessage;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.requests.RestAction;
+
+/**
+ * Disables components of expired {@link InteractableMessage}s which have
+ * {@link InteractableMessage#isDisableOnExpiry()} enabled.
+ * <p>
+ * Edits are not sent right away. They are queued per channel and each channel has a token bucket of
+ * {@link #getEditsPerBucket()} edits refilled one by one every {@link #getRefillInterval()}, matching Discord's
+ * per-channel rate limit of message edits. Queued edits are dispatched by the priority of the interactable message
+ * (higher first) and then in order of expiry. At most {@link #getMaxInFlight()} edits are in flight at once, so a mass
+ * expiry never floods JDA's request queue.
+ * </p>
+ */
+@Slf4j
+@Getter
+@Setter
+public class ExpiryComponentDisabler {
+
+    /**
+     * Default number of edits per channel that can be sent in a burst
+     */
+    public static final int DEFAULT_EDITS_PER_BUCKET = 5;
+
+    /**
+     * Default interval in which a single edit is returned to the channel's bucket
+     */
+    public static final Duration DEFAULT_REFILL_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * Default maximum number of edits in flight across all channels
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 10;
+
+    /**
+     * Interval in which queued edits are dispatched
+     */
+    protected static final long TICK_INTERVAL_MILLIS = 250;
+
+    private static final Comparator<DisableRequest> REQUEST_ORDER = Comparator
+        .comparingInt((DisableRequest request) -> -request.priority)
+        .thenComparingLong(request -> request.sequence);
+
+    protected volatile int editsPerBucket = DEFAULT_EDITS_PER_BUCKET;
+    @NonNull
+    protected volatile Duration refillInterval = DEFAULT_REFILL_INTERVAL;
+    protected volatile int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Map<Long, ChannelBucket> buckets = new HashMap<>();
+
+    /**
+     * Timer dispatching queued edits, set by {@link InteractableListener} while any listener is open
+     */
+    @Setter(AccessLevel.NONE)
+    protected volatile Timer timer;
+
+    @Setter(AccessLevel.NONE)
+    protected final InteractableMetrics metrics;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final AtomicLong sequenceCounter = new AtomicLong();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected int inFlight;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected boolean scheduled;
+
+    /**
+     * Creates new {@link ExpiryComponentDisabler}
+     *
+     * @param metrics Metrics to record sent edits to
+     */
+    public ExpiryComponentDisabler(@NonNull InteractableMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the timer dispatching queued edits. Edits still queued when the timer is replaced are dispatched by the new
+     * timer; if the timer is removed, they are dropped.
+     *
+     * @param timer The timer or null to stop dispatching
+     */
+    public synchronized void setTimer(Timer timer) {
+        this.timer = timer;
+        this.scheduled = false;
+
+        if (timer == null) {
+            int dropped = getQueuedCount();
+            if (dropped > 0) {
+                log.warn("Dropped {} queued edits disabling components of expired messages", dropped);
+            }
+            buckets.clear();
+        } else if (!buckets.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * Queues component disabling of expired interactable messages which have it enabled. Other interactables are
+     * ignored.
+     *
+     * @param expired Expired interactables
+     */
+    public void submitExpired(Collection<? extends Interactable<?>> expired) {
+        for (Interactable<?> interactable : expired) {
+            if (interactable instanceof InteractableMessage) {
+                InteractableMessage message = (InteractableMessage) interactable;
+                if (message.isDisableOnExpiry()) {
+                    submit(message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues component disabling of the interactable message. Does nothing if the message to edit is not known.
+     *
+     * @param message Interactable message
+     */
+    public void submit(@NonNull InteractableMessage message) {
+        long channelId = message.getMessageChannelId();
+        RestAction<?> action;
+        try {
+            action = message.createDisableComponentsAction();
+        } catch (Exception exception) {
+            log.error("Failed to create disable components action for interactable {}", message.getId(), exception);
+            return;
+        }
+
+        if (action == null) {
+            log.debug("Cannot disable components of interactable {}, the message is unknown", message.getId());
+            return;
+        }
+
+        DisableRequest request = new DisableRequest(message, channelId, message.getDisablePriority(), action,
+            sequenceCounter.incrementAndGet());
+
+        synchronized (this) {
+            if (timer == null) {
+                log.warn("Cannot disable components of interactable {}, no InteractableListener is open",
+                    message.getId());
+                return;
+            }
+
+            buckets.computeIfAbsent(channelId, id -> new ChannelBucket(editsPerBucket, System.nanoTime()))
+                .queue.add(request);
+            metrics.recordComponentDisableQueued();
+
+            if (!scheduled) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Schedules dispatching of queued edits on the timer. Must be called while holding the lock of this disabler.
+     *
+     * @throws IllegalStateException if there is no timer, i.e. no {@link InteractableListener} is open
+     */
+    protected void schedule() {
+        if (timer == null) {
+            throw new IllegalStateException("No timer to dispatch edits, no InteractableListener is open");
+        }
+
+        scheduled = true;
+        Timer scheduledTimer = timer;
+        scheduledTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                if (timer != scheduledTimer) {
+                    cancel();
+                    return;
+                }
+                try {
+                    dispatch();
+                } catch (Exception exception) {
+                    log.error("Error while disabling components of expired interactables", exception);
+                }
+            }
+        }, TICK_INTERVAL_MILLIS, TICK_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Gets the number of queued edits across all channels
+     *
+     * @return Number of queued edits
+     */
+    public synchronized int getQueuedCount() {
+        int count = 0;
+        for (ChannelBucket bucket : buckets.values()) {
+            count += bucket.queue.size();
+        }
+        return count;
+    }
+
+    /**
+     * Dispatches queued edits allowed by the channel buckets and the in-flight limit
+     */
+    protected void dispatch() {
+        List<DisableRequest> ready = new ArrayList<>();
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            long refillNanos = Math.max(1, refillInterval.toNanos());
+            PriorityQueue<ChannelBucket> eligible = new PriorityQueue<>(
+                Comparator.comparing((ChannelBucket bucket) -> bucket.queue.peek(), REQUEST_ORDER));
+
+            Iterator<ChannelBucket> iterator = buckets.values().iterator();
+            while (iterator.hasNext()) {
+                ChannelBucket bucket = iterator.next();
+                bucket.refill(now, refillNanos, editsPerBucket);
+
+                if (bucket.queue.isEmpty()) {
+                    if (bucket.tokens >= editsPerBucket) {
+                        // Fully refilled and idle, no need to keep it around
+                        iterator.remove();
+                    }
+                } else if (bucket.tokens > 0) {
+                    eligible.add(bucket);
+                }
+            }
+
+            while (inFlight < maxInFlight && !eligible.isEmpty()) {
+                ChannelBucket bucket = eligible.poll();
+                ready.add(bucket.queue.poll());
+                bucket.tokens--;
+                inFlight++;
+
+                if (bucket.tokens > 0 && !bucket.queue.isEmpty()) {
+                    eligible.add(bucket);
+                }
+            }
+        }
+
+        for (DisableRequest request : ready) {
+            try {
+                request.action.queue(
+                    success -> complete(request, null),
+                    failure -> complete(request, failure)
+                );
+            } catch (Exception exception) {
+                complete(request, exception);
+            }
+        }
+    }
+
+    private void complete(DisableRequest request, Throwable throwable) {
+        synchronized (this) {
+            inFlight--;
+        }
+        metrics.recordComponentDisable(throwable != null);
+        if (throwable != null) {
+            log.debug("Failed to disable components of interactable {}", request.message.getId(), throwable);
+        }
+    }
+
+    /**
+     * Queued edits and the token bucket of a single channel
+     */
+    protected static class ChannelBucket {
+
+        protected final PriorityQueue<DisableRequest> queue = new PriorityQueue<>(REQUEST_ORDER);
+        protected int tokens;
+        protected long lastRefillNanos;
+
+        protected ChannelBucket(int tokens, long lastRefillNanos) {
+            this.tokens = tokens;
+            this.lastRefillNanos = lastRefillNanos;
+        }
+
+        protected void refill(long now, long refillNanos, int capacity) {
+            long refills = (now - lastRefillNanos) / refillNanos;
+            if (refills <= 0) {
+                return;
+            }
+
+            if (tokens + refills >= capacity) {
+                tokens = capacity;
+                lastRefillNanos = now;
+            } else {
+                tokens += (int) refills;
+                lastRefillNanos += refills * refillNanos;
+            }
+        }
+    }
+
+    /**
+     * Queued edit disabling components of a single message
+     */
+    protected static class DisableRequest {
+
+        protected final InteractableMessage message;
+        protected final long channelId;
+        protected final int priority;
+        protected final RestAction<?> action;
+        protected final long sequence;
+
+        protected DisableRequest(InteractableMessage message, long channelId, int priority, RestAction<?> action,
+            long sequence) {
+            this.message = message;
+            this.channelId = channelId;
+            this.priority = priority;
+            this.action = action;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Second stage of the expiry of interactables. Expired interactables are detached from the registry of
+ * {@link InteractableListener} on the timer thread and handed over to this pipeline, which runs their expiry callbacks
+ * on the {@link #getExecutor()}.
+ * <p>
+ * Callbacks of a single interactable run in order. A callback that exceeds the {@link #getCallbackTimeout()} is
+ * interrupted and the remaining callbacks continue on another thread, so a slow callback never delays other
+ * callbacks. Latency, failures and timeouts of callbacks are recorded in {@link InteractableMetrics}.
+ * </p><p>
+ * Callbacks never run on the thread submitting them, which is usually the shared timer thread. When the executor
+ * rejects callbacks of an interactable, e.g. because its queue is full after a mass expiry, they are dropped and
+ * counted in {@link InteractableMetrics#getExpiryRunsRejected()}.
+ * </p>
+ */
+@Slf4j
+@Getter
+@Setter
+public class ExpiryPipeline {
+
+    /**
+     * Default timeout of a single expiry callback
+     */
+    public static final Duration DEFAULT_CALLBACK_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Number of threads of the default executor
+     */
+    public static final int DEFAULT_THREADS = 8;
+
+    /**
+     * Capacity of the queue of the default executor, in interactables whose callbacks wait for a thread
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    /**
+     * Executor running expiry callbacks, bounded pool of {@link #DEFAULT_THREADS} daemon threads with a queue of
+     * {@link #DEFAULT_QUEUE_CAPACITY} by default
+     */
+    @NonNull
+    protected volatile Executor executor = createDefaultExecutor();
+
+    /**
+     * Timeout of a single expiry callback
+     */
+    @NonNull
+    protected Duration callbackTimeout = DEFAULT_CALLBACK_TIMEOUT;
+
+    /**
+     * Timer used to enforce callback timeouts, timeouts are not enforced if null
+     */
+    protected volatile Timer timeoutTimer;
+
+    @Setter(AccessLevel.NONE)
+    protected final InteractableMetrics metrics;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final AtomicInteger pendingRuns = new AtomicInteger();
+
+    /**
+     * Creates new {@link ExpiryPipeline}
+     *
+     * @param metrics Metrics to record callback latency, failures and timeouts to
+     */
+    public ExpiryPipeline(@NonNull InteractableMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Submits expired interactables. Their expiry callbacks are run asynchronously.
+     *
+     * @param expired Expired interactables, already detached from the registry
+     */
+    public void submit(Collection<? extends Interactable<?>> expired) {
+        submit(expired, RemovalReason.EXPIRED);
+    }
+
+    /**
+     * Submits expired interactables. Their expiry callbacks are run asynchronously with the reason.
+     *
+     * @param expired Expired interactables, already detached from the registry
+     * @param reason  {@link RemovalReason#EXPIRED}, {@link RemovalReason#COLLECTED}, {@link RemovalReason#EVICTED} or
+     *                {@link RemovalReason#MEMORY_PRESSURE}
+     */
+    public void submit(Collection<? extends Interactable<?>> expired, @NonNull RemovalReason reason) {
+        switch (reason) {
+            case COLLECTED:
+                metrics.recordCollected(expired.size());
+                break;
+            case EVICTED:
+                metrics.recordEvicted(expired.size());
+                break;
+            case MEMORY_PRESSURE:
+                metrics.recordPressureEvicted(expired.size());
+                break;
+            default:
+                metrics.recordExpired(expired.size());
+                break;
+        }
+        for (Interactable<?> interactable : expired) {
+            List<Runnable> callbacks;
+            synchronized (interactable.getExpiryCallbacks()) {
+                if (interactable.getExpiryCallbacks().isEmpty()) {
+                    continue;
+                }
+                callbacks = new ArrayList<>(interactable.getExpiryCallbacks());
+            }
+            execute(new ExpiryRun(interactable, callbacks, reason, 0));
+        }
+    }
+
+    /**
+     * Executes the run on the executor. If the executor rejects it, the run is dropped, as the current thread is
+     * usually the shared timer thread which must not be blocked by callbacks.
+     *
+     * @param run The run
+     */
+    protected void execute(ExpiryRun run) {
+        pendingRuns.incrementAndGet();
+        try {
+            executor.execute(run);
+        } catch (RuntimeException exception) {
+            completeRun();
+            metrics.recordExpiryRunRejected();
+            log.warn("Expiry executor rejected callbacks #{}-{} of interactable {}, dropping them: {}",
+                run.startIndex + 1, run.callbacks.size(), run.interactable.getId(), exception.toString());
+        }
+    }
+
+    /**
+     * Gets the number of interactables whose expiry callbacks are being run or waiting to be run
+     *
+     * @return Number of pending interactables
+     */
+    public int getPendingCount() {
+        return pendingRuns.get();
+    }
+
+    /**
+     * Waits until all submitted expiry callbacks have finished
+     *
+     * @param timeout Maximum time to wait
+     * @return true if all callbacks have finished, false if the timeout has elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(@NonNull Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (pendingRuns) {
+            while (pendingRuns.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(pendingRuns, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases threads of the default executor. The pipeline stays usable, new threads are created on demand.
+     * Executors set using {@link #setExecutor(Executor)} are not shut down.
+     */
+    public void shutdown() {
+        Executor current = executor;
+        if (current instanceof ExpiryExecutor) {
+            executor = createDefaultExecutor();
+            ((ExpiryExecutor) current).shutdown();
+        }
+    }
+
+    private void completeRun() {
+        if (pendingRuns.decrementAndGet() == 0) {
+            synchronized (pendingRuns) {
+                pendingRuns.notifyAll();
+            }
+        }
+    }
+
+    private static Executor createDefaultExecutor() {
+        return new ExpiryExecutor();
+    }
+
+    /**
+     * Runs expiry callbacks of a single interactable in order, starting at specified index
+     */
+    protected class ExpiryRun implements Runnable {
+
+        protected final Interactable<?> interactable;
+        protected final List<Runnable> callbacks;
+        protected final RemovalReason reason;
+        protected final int startIndex;
+
+        protected ExpiryRun(
+            Interactable<?> interactable,
+            List<Runnable> callbacks,
+            RemovalReason reason,
+            int startIndex
+        ) {
+            this.interactable = interactable;
+            this.callbacks = callbacks;
+            this.reason = reason;
+            this.startIndex = startIndex;
+        }
+
+        @Override
+        public void run() {
+            try {
+                runCallbacks();
+            } finally {
+                completeRun();
+            }
+        }
+
+        private void runCallbacks() {
+            for (int index = startIndex; index < callbacks.size(); index++) {
+                CallbackTimeout timeout = new CallbackTimeout(this, index + 1, Thread.currentThread());
+                scheduleTimeout(timeout);
+
+                long start = System.nanoTime();
+                boolean failed = false;
+                try {
+                    ExpiryCallback.run(callbacks.get(index), reason);
+                } catch (Throwable throwable) {
+                    failed = true;
+                    log.error("Error while running onExpire runnable for interactable {}", interactable.getId(),
+                        throwable);
+                }
+                long elapsed = System.nanoTime() - start;
+
+                if (!timeout.complete()) {
+                    // Timed out, the remaining callbacks were handed over to another thread
+                    Thread.interrupted();
+                    return;
+                }
+                metrics.recordExpiryCallback(elapsed, failed);
+            }
+        }
+    }
+
+    /**
+     * Schedules the timeout of a callback. If there is no timer, or it has been cancelled, the timeout is not enforced.
+     *
+     * @param timeout The timeout
+     */
+    protected void scheduleTimeout(CallbackTimeout timeout) {
+        Timer timer = timeoutTimer;
+        if (timer == null) {
+            return;
+        }
+        try {
+            timer.schedule(timeout, callbackTimeout.toMillis());
+        } catch (IllegalStateException exception) {
+            log.debug("Timer was cancelled, timeout of expiry callback is not enforced");
+        }
+    }
+
+    /**
+     * Timeout of a single callback. Whichever completes first, the callback or the timeout, wins.
+     */
+    protected class CallbackTimeout extends TimerTask {
+
+        protected final ExpiryRun run;
+        protected final int nextIndex;
+        protected final Thread thread;
+        protected boolean done;
+
+        protected CallbackTimeout(ExpiryRun run, int nextIndex, Thread thread) {
+            this.run = run;
+            this.nextIndex = nextIndex;
+            this.thread = thread;
+        }
+
+        /**
+         * Marks the callback as completed
+         *
+         * @return true if the callback has completed in time, false if it has timed out
+         */
+        protected synchronized boolean complete() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            cancel();
+            return true;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                // Interrupted while holding the lock, so the interrupt can't leak past complete()
+                thread.interrupt();
+            }
+
+            metrics.recordExpiryCallbackTimeout();
+            log.warn("Expiry callback #{} of interactable {} has exceeded timeout of {} ms, continuing with the rest",
+                nextIndex, run.interactable.getId(), callbackTimeout.toMillis());
+
+            if (nextIndex < run.callbacks.size()) {
+                execute(new ExpiryRun(run.interactable, run.callbacks, run.reason, nextIndex));
+            }
+        }
+    }
+
+    /**
+     * Default executor, bounded pool of daemon threads with a bounded queue. Idle threads are released after a minute.
+     */
+    protected static class ExpiryExecutor extends ThreadPoolExecutor {
+
+        protected ExpiryExecutor() {
+            super(DEFAULT_THREADS, DEFAULT_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(DEFAULT_QUEUE_CAPACITY), new ExpiryThreadFactory());
+            allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Creates daemon threads named Interactable-Expiry-N
+     */
+    protected static class ExpiryThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Interactable-Expiry-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
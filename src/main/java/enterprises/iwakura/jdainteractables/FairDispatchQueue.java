@@ -0,0 +1,165 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongToDoubleFunction;
+
+import lombok.NonNull;
+
+/**
+ * Queue of pending events shared fairly among tenants, e.g. guilds, using deficit round-robin. Each tenant has its own
+ * queue ordered by the elements' natural order. Tenants with pending elements take turns; in each turn, a tenant earns
+ * credit equal to its weight and is served one element per unit of credit, so a tenant with weight 2 is served twice
+ * as often as a tenant with weight 1. A tenant flooding the queue therefore delays only its own elements, and the
+ * latency of other tenants is bounded by the number of active tenants rather than by the length of the queue.
+ * <p>
+ * Weights below one accumulate credit over multiple turns. Rounds in which no tenant would be served are skipped at
+ * once, so tiny weights don't make {@link #poll()} spin.
+ * </p><p>
+ * With a single tenant, the queue is simply ordered by the elements' natural order.
+ * </p>
+ *
+ * @param <E> Type of the elements
+ */
+public class FairDispatchQueue<E extends Comparable<? super E>> {
+
+    /**
+     * Default weight of a tenant
+     */
+    public static final double DEFAULT_WEIGHT = 1;
+
+    private final LongToDoubleFunction weights;
+    private final Map<Long, Tenant<E>> tenants = new HashMap<>();
+    private final ArrayDeque<Tenant<E>> activeTenants = new ArrayDeque<>();
+    private int size;
+
+    /**
+     * Creates new {@link FairDispatchQueue}
+     *
+     * @param weights Function resolving positive weights of tenants, called at the start of each turn
+     */
+    public FairDispatchQueue(@NonNull LongToDoubleFunction weights) {
+        this.weights = weights;
+    }
+
+    /**
+     * Adds the element to the tenant's queue
+     *
+     * @param tenant  The tenant
+     * @param element The element
+     */
+    public synchronized void add(long tenant, @NonNull E element) {
+        Tenant<E> state = tenants.get(tenant);
+        if (state == null) {
+            state = new Tenant<>(tenant);
+            tenants.put(tenant, state);
+            activeTenants.addLast(state);
+        }
+        state.queue.add(element);
+        size++;
+    }
+
+    /**
+     * Removes the next element, taking turns among tenants
+     *
+     * @return The element or null if the queue is empty
+     */
+    public synchronized E poll() {
+        int skipped = 0;
+        while (true) {
+            Tenant<E> current = activeTenants.peekFirst();
+            if (current == null) {
+                return null;
+            }
+
+            if (!current.inTurn) {
+                current.inTurn = true;
+                current.weight = resolveWeight(current.key);
+                current.deficit += current.weight;
+            }
+
+            if (current.deficit < 1) {
+                // Weights below one accumulate credit over multiple turns
+                endTurn(current);
+                if (++skipped == activeTenants.size()) {
+                    skipIdleRounds();
+                    skipped = 0;
+                }
+                continue;
+            }
+
+            E element = current.queue.poll();
+            current.deficit--;
+            size--;
+
+            if (current.queue.isEmpty()) {
+                // Idle tenants do not keep their credit
+                activeTenants.pollFirst();
+                tenants.remove(current.key);
+            } else if (current.deficit < 1) {
+                endTurn(current);
+            }
+            return element;
+        }
+    }
+
+    /**
+     * Gets the number of elements in the queue
+     *
+     * @return Number of elements
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of tenants with pending elements
+     *
+     * @return Number of active tenants
+     */
+    public synchronized int getActiveTenantCount() {
+        return activeTenants.size();
+    }
+
+    private void endTurn(Tenant<E> tenant) {
+        tenant.inTurn = false;
+        activeTenants.addLast(activeTenants.pollFirst());
+    }
+
+    /**
+     * Credits all active tenants with the rounds in which none of them would be served, so that the tenant closest to
+     * being served is served in the next round. Called once every active tenant has been skipped in a row.
+     */
+    private void skipIdleRounds() {
+        double rounds = Double.MAX_VALUE;
+        for (Tenant<E> tenant : activeTenants) {
+            rounds = Math.min(rounds, Math.ceil((1 - tenant.deficit) / tenant.weight));
+        }
+        if (rounds <= 1) {
+            return;
+        }
+        for (Tenant<E> tenant : activeTenants) {
+            tenant.deficit += (rounds - 1) * tenant.weight;
+        }
+    }
+
+    private double resolveWeight(long tenant) {
+        double weight = weights.applyAsDouble(tenant);
+        return weight > 0 ? weight : DEFAULT_WEIGHT;
+    }
+
+    private static final class Tenant<E> {
+
+        private final long key;
+        private final PriorityQueue<E> queue = new PriorityQueue<>();
+        private double deficit;
+        private double weight;
+        private boolean inTurn;
+
+        private Tenant(long key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.IMentionable;
+import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.components.ComponentInteraction;
+import net.dv8tion.jda.api.interactions.modals.ModalMapping;
+
+/**
+ * Interaction forwarded from the node which has received it to the node owning the matching interactable, see
+ * {@link InteractionRouter}.
+ * <p>
+ * The interaction was already acknowledged by the receiving node (deferred edit, or deferred ephemeral reply for modals
+ * without a message), so the owner node responds using {@link #getHook(JDA)}.
+ * </p>
+ */
+@Getter
+@ToString(exclude = "token")
+@RequiredArgsConstructor
+public class ForwardedInteraction {
+
+    /**
+     * Version of the binary format
+     */
+    public static final byte FORMAT_VERSION = 1;
+
+    private final InteractionType type;
+    private final int sourceNodeId;
+    private final String customId;
+    /**
+     * Selected values of select menus. IDs of the selected entities for entity select menus.
+     */
+    private final List<String> values;
+    /**
+     * Values of modal fields by their custom IDs
+     */
+    private final Map<String, String> fields;
+    private final long userId;
+    private final long guildId;
+    private final long channelId;
+    private final long messageId;
+    private final String token;
+
+    /**
+     * Creates {@link ForwardedInteraction} from the interaction event context
+     *
+     * @param ctx          The interaction event context
+     * @param sourceNodeId Node ID of this process
+     * @return {@link ForwardedInteraction}
+     */
+    public static ForwardedInteraction from(@NonNull InteractionEventContext ctx, int sourceNodeId) {
+        net.dv8tion.jda.api.interactions.Interaction interaction = ctx.getInteraction();
+
+        List<String> values = Collections.emptyList();
+        Map<String, String> fields = Collections.emptyMap();
+        long messageId = 0;
+
+        switch (ctx.getInteractionType()) {
+            case STRING_SELECT_MENU:
+                values = new ArrayList<>(ctx.getStringSelectInteractionEvent().getValues());
+                break;
+            case ENTITY_SELECT_MENU:
+                values = new ArrayList<>();
+                for (IMentionable mentionable : ctx.getEntitySelectInteractionEvent().getValues()) {
+                    values.add(mentionable.getId());
+                }
+                break;
+            case MODAL_SUBMITTED:
+                ModalInteractionEvent modalEvent = ctx.getModalInteractionEvent();
+                fields = new LinkedHashMap<>();
+                for (ModalMapping mapping : modalEvent.getValues()) {
+                    try {
+                        fields.put(mapping.getCustomId(), mapping.getAsString());
+                    } catch (IllegalStateException ignored) {
+                        // Not a text field
+                    }
+                }
+                if (modalEvent.getMessage() != null) {
+                    messageId = modalEvent.getMessage().getIdLong();
+                }
+                break;
+            default:
+                break;
+        }
+
+        if (interaction instanceof ComponentInteraction) {
+            messageId = ((ComponentInteraction) interaction).getMessageIdLong();
+        }
+
+        Guild guild = interaction.getGuild();
+        return new ForwardedInteraction(
+            ctx.getInteractionType(),
+            sourceNodeId,
+            ctx.getCustomId(),
+            values,
+            fields,
+            interaction.getUser().getIdLong(),
+            guild != null ? guild.getIdLong() : 0,
+            interaction.getChannelIdLong(),
+            messageId,
+            interaction.getToken()
+        );
+    }
+
+    /**
+     * Decodes {@link ForwardedInteraction} from its binary form
+     *
+     * @param payload The binary form created by {@link #encode()}
+     * @return {@link ForwardedInteraction}
+     * @throws IllegalArgumentException if the payload is malformed or of an unsupported version
+     */
+    public static ForwardedInteraction decode(byte[] payload) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = input.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported forwarded interaction version: " + version);
+            }
+
+            InteractionType type = InteractionType.values()[input.readUnsignedByte()];
+            int sourceNodeId = input.readShort();
+            String customId = input.readBoolean() ? input.readUTF() : null;
+
+            int valueCount = input.readUnsignedShort();
+            List<String> values = valueCount == 0 ? Collections.emptyList() : new ArrayList<>(valueCount);
+            for (int index = 0; index < valueCount; index++) {
+                values.add(input.readUTF());
+            }
+
+            int fieldCount = input.readUnsignedShort();
+            Map<String, String> fields = fieldCount == 0 ? Collections.emptyMap() : new LinkedHashMap<>();
+            for (int index = 0; index < fieldCount; index++) {
+                fields.put(input.readUTF(), input.readUTF());
+            }
+
+            return new ForwardedInteraction(type, sourceNodeId, customId, values, fields, input.readLong(),
+                input.readLong(), input.readLong(), input.readLong(), input.readUTF());
+        } catch (IOException | IndexOutOfBoundsException exception) {
+            throw new IllegalArgumentException("Malformed forwarded interaction", exception);
+        }
+    }
+
+    /**
+     * Encodes this {@link ForwardedInteraction} to its binary form
+     *
+     * @return The binary form
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(FORMAT_VERSION);
+            output.writeByte(type.ordinal());
+            output.writeShort(sourceNodeId);
+            output.writeBoolean(customId != null);
+            if (customId != null) {
+                output.writeUTF(customId);
+            }
+
+            output.writeShort(values.size());
+            for (String value : values) {
+                output.writeUTF(value);
+            }
+
+            output.writeShort(fields.size());
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                output.writeUTF(field.getKey());
+                output.writeUTF(field.getValue());
+            }
+
+            output.writeLong(userId);
+            output.writeLong(guildId);
+            output.writeLong(channelId);
+            output.writeLong(messageId);
+            output.writeUTF(token);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Creates an interaction hook of the original interaction. Since the interaction was already acknowledged, use
+     * the hook to edit the original message or to send followup messages.
+     *
+     * @param jda Any JDA instance of the bot
+     * @return {@link InteractionHook}
+     */
+    public InteractionHook getHook(@NonNull JDA jda) {
+        return InteractionHook.from(jda, token);
+    }
+}
@@ -1,19 +1,51 @@
 package enterprises.iwakura.jdainteractables;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
 import enterprises.iwakura.jdainteractables.components.Interactable;
+import enterprises.iwakura.jdainteractables.components.InteractableMessage;
+import enterprises.iwakura.jdainteractables.components.InteractableTemplate;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
@@ -25,38 +57,300 @@ import net.dv8tion.jda.api.hooks.ListenerAdapter;
  * Register this class into your JDA/ShardManager to ensure everything related to interactive in this library will
  * work.
  */
+@Slf4j
 @EqualsAndHashCode(callSuper = true)
 @Data
-public class InteractableListener extends ListenerAdapter {
+public class InteractableListener extends ListenerAdapter implements AutoCloseable {
+
+    /**
+     * Registry of interactables in the order of registration. Its monitor guards {@link #expiryEntries},
+     * {@link #expiryQueue}, {@link #customIdIndex} and {@link #unindexed} as well.
+     */
+    protected final static Set<Interactable<?>> interactables = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    /**
+     * Interactables by their custom IDs known on registration (see {@link Interactable#getCustomIds()}), so most
+     * interactions are dispatched without scanning the registry
+     */
+    protected final static Map<String, Interactable<?>> customIdIndex = new HashMap<>();
+
+    /**
+     * Registered interactables the {@link #customIdIndex} may not route events to: ones without custom IDs and ones
+     * shadowed by a later interactable with the same custom ID. Dispatching scans only these if the index misses.
+     */
+    protected final static Set<Interactable<?>> unindexed = new LinkedHashSet<>();
+    protected final static Map<Interactable<?>, ExpiryEntry> expiryEntries = new IdentityHashMap<>();
+    protected final static TreeSet<ExpiryEntry> expiryQueue = new TreeSet<>();
+    protected final static Map<Interactable<?>, OwnerReference> ownerReferences = new IdentityHashMap<>();
+    protected final static ReferenceQueue<Object> collectedOwners = new ReferenceQueue<>();
+    protected final static Map<String, InteractableTemplate> templates = new ConcurrentHashMap<>();
+    protected final static List<InteractableRegistryListener> registryListeners = new CopyOnWriteArrayList<>();
+    protected final static InteractableMetrics metrics = new InteractableMetrics();
+    protected final static ExpiryPipeline expiryPipeline = new ExpiryPipeline(metrics);
+    protected final static ExpiryComponentDisabler componentDisabler = new ExpiryComponentDisabler(metrics);
+    protected final static SlowHandlerDetector slowHandlerDetector = new SlowHandlerDetector(metrics);
+    protected final static InteractableQuotas quotas = new InteractableQuotas();
+    protected final static MemoryPressureMonitor memoryPressureMonitor = new MemoryPressureMonitor(metrics);
+
+    /**
+     * Timer checking for expired interactables, shared by all open listeners. Guarded by the class monitor.
+     */
+    protected static Timer expireCheckerTimer;
+
+    /**
+     * Number of open listeners, the timer is cancelled when the last one is closed. Guarded by the class monitor.
+     */
+    protected static int openListeners;
+
+    /**
+     * Tenant of interactions outside guilds for fair queuing, see {@link #setFairQueuing(boolean)}
+     */
+    public static final long DIRECT_MESSAGES_TENANT = 0;
+
+    /**
+     * Minimum interval between warnings about stale events and a skewed clock
+     */
+    protected static final long STALE_WARNING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private static final Interactable<?>[] NO_INTERACTABLES = new Interactable<?>[0];
+
+    /**
+     * Default timeout of {@link #close()} waiting for in-flight handlers and expiry callbacks
+     */
+    public static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(30);
 
-    protected final static List<Interactable<?>> interactables = Collections.synchronizedList(new ArrayList<>());
-    protected final static Timer expireCheckerTimer = new Timer("Interactable-Expire-Checker");
     protected Executor eventProcessor;
 
+    /**
+     * Whether the {@link #eventProcessor} was created by this listener and should be shut down on {@link #close()}
+     */
+    @Setter(AccessLevel.NONE)
+    protected final boolean ownsEventProcessor;
+
+    /**
+     * Lifecycle state of this listener
+     */
+    @Setter(AccessLevel.NONE)
+    protected volatile State state = State.RUNNING;
+
+    /**
+     * Number of events being dispatched by this listener
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Node to forward new interactions to while this listener is paused, see {@link #setDrainTargetNodeId(int)}
+     */
+    protected volatile int drainTargetNodeId = InteractionIds.NO_NODE;
+
+    /**
+     * Router forwarding interactions owned by other nodes, see {@link #setInteractionRouter(InteractionRouter)}
+     */
+    protected volatile InteractionRouter interactionRouter;
+
+    /**
+     * Whether events which passed their acknowledgement deadline while queued are dropped instead of dispatched, see
+     * {@link InteractionEventContext#getDeadlineMillis()} and {@link PendingEvent#isStale(long)}
+     */
+    protected volatile boolean dropStaleEvents = true;
+
+    /**
+     * Number of stale events dropped since the last warning about them
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final AtomicInteger unreportedStaleEvents = new AtomicInteger();
+
+    /**
+     * Time of the last warning about stale events in {@link System#nanoTime()}
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final AtomicLong lastStaleWarningNanos = new AtomicLong(System.nanoTime() - STALE_WARNING_INTERVAL_NANOS);
+
+    /**
+     * Time of the last warning about events past their deadline on arrival in {@link System#nanoTime()}
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final AtomicLong lastSkewWarningNanos = new AtomicLong(System.nanoTime() - STALE_WARNING_INTERVAL_NANOS);
+
+    /**
+     * Events waiting for dispatch by executors, ordered by their deadlines and shared fairly among guilds if
+     * {@link #isFairQueuing()} is enabled
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Map<Executor, FairDispatchQueue<PendingEvent>> pendingEvents = new ConcurrentHashMap<>();
+
+    /**
+     * Whether pending events are shared fairly among guilds, see {@link #setFairQueuing(boolean)}
+     */
+    protected volatile boolean fairQueuing;
+
+    /**
+     * Weights of guilds for fair queuing, see {@link #setGuildWeight(long, double)}
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Map<Long, Double> guildWeights = new ConcurrentHashMap<>();
+
+    /**
+     * Recorder of received events and registry changes, see {@link #setInteractionRecorder(InteractionRecorder)}
+     */
+    @Setter(AccessLevel.NONE)
+    protected volatile InteractionRecorder interactionRecorder;
+
+    /**
+     * Dispatch lanes by interaction types, see {@link #setDispatchLane(InteractionType, DispatchLane)}
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final Map<InteractionType, DispatchLane> dispatchLanes = new ConcurrentHashMap<>();
+
+    /**
+     * Dispatch lanes by minimum priorities of interactables, see {@link #setPriorityLane(int, DispatchLane)}
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final NavigableMap<Integer, DispatchLane> priorityLanes = new ConcurrentSkipListMap<>();
+
     /**
      * Creates new instance of {@link InteractableListener}
      *
      * @param eventProcessor Executor to process events, for example {@link Executors#newCachedThreadPool()}
      */
     public InteractableListener(Executor eventProcessor) {
-        this.eventProcessor = eventProcessor;
-        scheduleExpireCheckerTimer();
+        this(eventProcessor, false);
     }
 
     /**
-     * Creates new instance of {@link InteractableListener} with cached thread pool as event processor
+     * Creates new instance of {@link InteractableListener} with cached thread pool as event processor. The pool is
+     * shut down when the listener is closed.
      */
     public InteractableListener() {
-        this(Executors.newCachedThreadPool());
+        this(Executors.newCachedThreadPool(), true);
+    }
+
+    private InteractableListener(Executor eventProcessor, boolean ownsEventProcessor) {
+        this.eventProcessor = eventProcessor;
+        this.ownsEventProcessor = ownsEventProcessor;
+        scheduleExpireCheckerTimer();
     }
 
     /**
-     * Adds interactable to the list
+     * Adds interactable to the list. If the interactable exceeds the {@link #getQuotas()}, the oldest interactables of
+     * its scope are evicted first, or the registration is rejected, depending on the quota policy.
      *
      * @param interactable {@link Interactable}
+     * @throws QuotaExceededException if the interactable exceeds the quotas and the policy rejects it
      */
     public static void addInteractable(Interactable<?> interactable) {
-        interactables.add(interactable);
+        register(Collections.singletonList(interactable), null);
+    }
+
+    /**
+     * Adds interactable to the list, tied to the lifetime of its owner. The registry references the owner only weakly;
+     * once the owner is garbage collected, the interactable is removed within a second and its expiry callbacks run
+     * with {@link RemovalReason#COLLECTED}, without waiting for its expiry duration.
+     * <p>
+     * The interactable, its handlers and rules must not reference the owner strongly, otherwise the registry keeps
+     * the owner alive until the interactable expires.
+     * </p>
+     *
+     * @param interactable {@link Interactable}
+     * @param owner        Owner of the interactable, e.g. a session object
+     * @throws QuotaExceededException if the interactable exceeds the quotas and the policy rejects it
+     */
+    public static void addInteractable(@NonNull Interactable<?> interactable, @NonNull Object owner) {
+        register(Collections.singletonList(interactable), owner);
+    }
+
+    /**
+     * Adds all interactables to the list at once. The list is locked only once and registry listeners are notified
+     * with a single batch, which is considerably cheaper than calling {@link #addInteractable(Interactable)} for each
+     * interactable.
+     * <p>
+     * Interactables rejected by the {@link #getQuotas()} are skipped; the rest of the batch is registered before
+     * {@link QuotaExceededException} listing the rejected ones is thrown.
+     * </p>
+     *
+     * @param newInteractables Collection of {@link Interactable}s
+     * @throws QuotaExceededException if some interactables exceed the quotas and the policy rejects them
+     */
+    public static void registerAll(Collection<? extends Interactable<?>> newInteractables) {
+        if (newInteractables.isEmpty()) {
+            return;
+        }
+        register(newInteractables, null);
+    }
+
+    /**
+     * Registers the interactables, evicting interactables over the quotas
+     *
+     * @param newInteractables Interactables to register
+     * @param owner            Owner of the interactables or null
+     */
+    protected static void register(Collection<? extends Interactable<?>> newInteractables, Object owner) {
+        List<Interactable<?>> batch = new ArrayList<>(newInteractables.size());
+        Set<Interactable<?>> evicted = Collections.newSetFromMap(new IdentityHashMap<>());
+        QuotaExceededException rejection = null;
+        List<Interactable<?>> rejected = null;
+
+        synchronized (interactables) {
+            for (Interactable<?> interactable : newInteractables) {
+                if (interactables.contains(interactable)) {
+                    continue;
+                }
+
+                try {
+                    quotas.admit(interactable, evicted);
+                } catch (QuotaExceededException exception) {
+                    if (rejected == null) {
+                        rejection = exception;
+                        rejected = new ArrayList<>();
+                    }
+                    rejected.add(interactable);
+                    continue;
+                }
+
+                for (Interactable<?> victim : evicted) {
+                    if (interactables.remove(victim)) {
+                        detach(victim);
+                    }
+                }
+
+                interactables.add(interactable);
+                attach(interactable);
+                if (owner != null) {
+                    ownerReferences.put(interactable, new OwnerReference(owner, interactable));
+                }
+                batch.add(interactable);
+            }
+
+            if (!batch.isEmpty()) {
+                notifyRegistered(batch);
+            }
+            if (!evicted.isEmpty()) {
+                notifyRemoved(evicted, RemovalReason.EVICTED);
+            }
+        }
+
+        if (!evicted.isEmpty()) {
+            List<Interactable<?>> victims = new ArrayList<>(evicted);
+            expiryPipeline.submit(victims, RemovalReason.EVICTED);
+            componentDisabler.submitExpired(victims);
+        }
+        if (rejected != null) {
+            metrics.recordQuotaRejected(rejected.size());
+            if (rejected.size() == 1) {
+                throw rejection;
+            }
+            throw new QuotaExceededException(rejected.size() + " interactables exceed the quotas, first: "
+                + rejection.getMessage(), rejected);
+        }
     }
 
     /**
@@ -75,86 +369,1436 @@ public class InteractableListener extends ListenerAdapter {
      */
     @Deprecated
     public static void removeInteractable(Interactable<?> interactable) {
-        interactables.remove(interactable);
+        synchronized (interactables) {
+            if (interactables.remove(interactable)) {
+                detach(interactable);
+                notifyRemoved(Collections.singletonList(interactable), RemovalReason.REMOVED);
+            }
+        }
     }
 
     /**
-     * Gets unmodifiable list of all interactables
+     * Removes all specified interactables from the list at once. Expiry callbacks are not run.
      *
-     * @return Unmodifiable list of all interactables
+     * @param toRemove Collection of {@link Interactable}s to remove
+     * @return Number of removed interactables
      */
-    public static List<Interactable<?>> getInteractables() {
-        return Collections.unmodifiableList(interactables);
+    public static int removeAll(Collection<? extends Interactable<?>> toRemove) {
+        if (toRemove.isEmpty()) {
+            return 0;
+        }
+
+        Set<Interactable<?>> identitySet = Collections.newSetFromMap(new IdentityHashMap<>(toRemove.size()));
+        identitySet.addAll(toRemove);
+        return removeAll(identitySet::contains);
     }
 
     /**
-     * Registers timer to check for expired interactables every second
+     * Removes all interactables matching the predicate from the list at once. Expiry callbacks are not run.
+     *
+     * @param predicate Predicate to match interactables to remove
+     * @return Number of removed interactables
      */
-    protected void scheduleExpireCheckerTimer() {
-        expireCheckerTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                interactables.removeIf(interactable -> {
-                    boolean expired = interactable.isExpired();
-                    if (expired) {
-                        interactable.runExpiryCallbacks();
-                    }
-                    return expired;
-                });
+    public static int removeAll(Predicate<? super Interactable<?>> predicate) {
+        List<Interactable<?>> removed = new ArrayList<>();
+        synchronized (interactables) {
+            interactables.removeIf(interactable -> {
+                if (predicate.test(interactable)) {
+                    detach(interactable);
+                    removed.add(interactable);
+                    return true;
+                }
+                return false;
+            });
+            if (!removed.isEmpty()) {
+                notifyRemoved(removed, RemovalReason.REMOVED);
             }
-        }, 0, 1000);
+        }
+        return removed.size();
     }
 
-    @Override
-    public void onButtonInteraction(ButtonInteractionEvent event) {
-        if (ensureValidUser(event.getUser())) {
-            processEvent(new InteractionEventContext(event));
+    /**
+     * Adds listener of registry changes
+     *
+     * @param listener {@link InteractableRegistryListener}
+     */
+    public static void addRegistryListener(InteractableRegistryListener listener) {
+        registryListeners.add(listener);
+    }
+
+    /**
+     * Removes listener of registry changes
+     *
+     * @param listener {@link InteractableRegistryListener}
+     */
+    public static void removeRegistryListener(InteractableRegistryListener listener) {
+        registryListeners.remove(listener);
+    }
+
+    /**
+     * Notifies registry listeners about registered interactables. Must be called while holding the registry lock.
+     *
+     * @param registered Registered interactables
+     */
+    protected static void notifyRegistered(Collection<? extends Interactable<?>> registered) {
+        for (InteractableRegistryListener listener : registryListeners) {
+            try {
+                listener.onRegistered(registered);
+            } catch (Exception exception) {
+                log.error("Registry listener {} failed to process registered interactables", listener, exception);
+            }
         }
     }
 
-    @Override
-    public void onStringSelectInteraction(StringSelectInteractionEvent event) {
-        if (ensureValidUser(event.getUser())) {
-            processEvent(new InteractionEventContext(event));
+    /**
+     * Completes the interaction publishers of removed interactables and notifies registry listeners. Must be called
+     * while holding the registry lock.
+     *
+     * @param removed Removed interactables
+     * @param reason  The reason of removal
+     */
+    protected static void notifyRemoved(Collection<? extends Interactable<?>> removed, RemovalReason reason) {
+        for (Interactable<?> interactable : removed) {
+            interactable.closeInteractionPublisher();
+        }
+        for (InteractableRegistryListener listener : registryListeners) {
+            try {
+                listener.onRemoved(removed, reason);
+            } catch (Exception exception) {
+                log.error("Registry listener {} failed to process removed interactables", listener, exception);
+            }
         }
     }
 
-    @Override
-    public void onEntitySelectInteraction(EntitySelectInteractionEvent event) {
-        if (ensureValidUser(event.getUser())) {
-            processEvent(new InteractionEventContext(event));
+    /**
+     * Reschedules the expiry of the interactable, e.g. after its expiry duration has changed. Does nothing if the
+     * interactable is not registered.
+     *
+     * @param interactable {@link Interactable}
+     */
+    public static void rescheduleExpiry(Interactable<?> interactable) {
+        synchronized (interactables) {
+            if (interactables.contains(interactable)) {
+                cancelExpiry(interactable);
+                scheduleExpiry(interactable);
+            }
         }
     }
 
-    @Override
-    public void onModalInteraction(ModalInteractionEvent event) {
-        if (ensureValidUser(event.getUser())) {
-            processEvent(new InteractionEventContext(event));
+    /**
+     * Adds the interactable to the expiry queue. Must be called while holding the registry lock.
+     *
+     * @param interactable {@link Interactable}
+     */
+    protected static void scheduleExpiry(Interactable<?> interactable) {
+        scheduleExpiry(interactable, interactable.getExpiresAtMillis());
+    }
+
+    /**
+     * Adds the interactable to the expiry queue with specified deadline. Must be called while holding the registry
+     * lock.
+     *
+     * @param interactable {@link Interactable}
+     * @param deadline     Time in milliseconds since the epoch when the interactable should be checked for expiry
+     */
+    protected static void scheduleExpiry(Interactable<?> interactable, long deadline) {
+        ExpiryEntry entry = new ExpiryEntry(interactable, deadline);
+        expiryEntries.put(interactable, entry);
+        expiryQueue.add(entry);
+    }
+
+    /**
+     * Prepares the interactable added to the registry for dispatching, expiry and quotas. Must be called while holding
+     * the registry lock.
+     *
+     * @param interactable {@link Interactable}
+     */
+    protected static void attach(Interactable<?> interactable) {
+        interactable.freeze();
+        scheduleExpiry(interactable);
+        indexCustomIds(interactable);
+        quotas.track(interactable);
+    }
+
+    /**
+     * Cleans up the interactable removed from the registry. Must be called while holding the registry lock.
+     *
+     * @param interactable {@link Interactable}
+     */
+    protected static void detach(Interactable<?> interactable) {
+        cancelExpiry(interactable);
+        unindexCustomIds(interactable);
+        releaseOwner(interactable);
+        quotas.untrack(interactable);
+    }
+
+    /**
+     * Adds custom IDs of the interactable into the {@link #customIdIndex}, or the interactable into {@link #unindexed}
+     * if it has none. Interactables shadowed by the custom IDs are moved to {@link #unindexed}. Must be called while
+     * holding the registry lock.
+     *
+     * @param interactable {@link Interactable}
+     */
+    protected static void indexCustomIds(Interactable<?> interactable) {
+        boolean indexed = false;
+        for (String customId : interactable.getCustomIds()) {
+            Interactable<?> shadowed = customIdIndex.put(customId, interactable);
+            if (shadowed != null && shadowed != interactable) {
+                unindexed.add(shadowed);
+            }
+            indexed = true;
+        }
+        if (indexed) {
+            unindexed.remove(interactable);
+        } else {
+            unindexed.add(interactable);
         }
     }
 
     /**
-     * Processes the interaction event
+     * Removes custom IDs of the interactable from the {@link #customIdIndex} and the interactable from
+     * {@link #unindexed}. Must be called while holding the registry lock.
      *
-     * @param ctx The interaction event to process
+     * @param interactable {@link Interactable}
      */
-    protected void processEvent(InteractionEventContext ctx) {
-        eventProcessor.execute(() -> {
-            synchronized (interactables) {
-                Iterator<Interactable<?>> iterator = interactables.iterator();
-                while (iterator.hasNext()) {
-                    Interactable<?> interactable = iterator.next();
-                    Result result = interactable.process(ctx);
-                    if (result != Result.NOT_PROCESSED) {
-                        if (result == Result.REMOVE) {
-                            iterator.remove();
-                        }
-                        // Exit early since the event has been processed
-                        break;
-                    }
-                }
+    protected static void unindexCustomIds(Interactable<?> interactable) {
+        for (String customId : interactable.getCustomIds()) {
+            customIdIndex.remove(customId, interactable);
+        }
+        unindexed.remove(interactable);
+    }
+
+    /**
+     * Indexes custom IDs of the registered interactable again, called when its interactions change after
+     * registration. Does nothing if the interactable is not registered.
+     *
+     * @param interactable {@link Interactable}
+     */
+    public static void reindexCustomIds(@NonNull Interactable<?> interactable) {
+        synchronized (interactables) {
+            if (interactables.contains(interactable)) {
+                indexCustomIds(interactable);
             }
-        });
+        }
+    }
+
+    /**
+     * Forgets the owner of the interactable, if any. Must be called while holding the registry lock.
+     *
+     * @param interactable {@link Interactable}
+     */
+    protected static void releaseOwner(Interactable<?> interactable) {
+        OwnerReference reference = ownerReferences.remove(interactable);
+        if (reference != null) {
+            reference.clear();
+        }
+    }
+
+    /**
+     * Removes the interactable from the expiry queue. Must be called while holding the registry lock.
+     *
+     * @param interactable {@link Interactable}
+     */
+    protected static void cancelExpiry(Interactable<?> interactable) {
+        ExpiryEntry entry = expiryEntries.remove(interactable);
+        if (entry != null) {
+            expiryQueue.remove(entry);
+        }
+    }
+
+    /**
+     * Gets unmodifiable snapshot of all interactables in the order of registration. The registry is locked only while
+     * the interactables are copied, so the snapshot is safe to iterate while dispatching goes on.
+     *
+     * @return Unmodifiable list of all interactables
+     */
+    public static List<Interactable<?>> getInteractables() {
+        return Collections.unmodifiableList(Arrays.asList(interactables.toArray(new Interactable<?>[0])));
+    }
+
+    /**
+     * Captures counts and nominal bytes of the registered interactables, keeping the
+     * {@link RegistryIntrospection#DEFAULT_TOP_COUNT} heaviest ones
+     *
+     * @return The {@link RegistryIntrospection}
+     */
+    public static RegistryIntrospection introspect() {
+        return introspect(RegistryIntrospection.DEFAULT_TOP_COUNT);
+    }
+
+    /**
+     * Captures counts and nominal bytes of the registered interactables. The registry is locked only while
+     * the interactables are copied; the statistics are computed on the calling thread afterward.
+     *
+     * @param topCount Number of the heaviest interactables to keep
+     * @return The {@link RegistryIntrospection}
+     */
+    public static RegistryIntrospection introspect(int topCount) {
+        Interactable<?>[] snapshot = interactables.toArray(new Interactable<?>[0]);
+        return new RegistryIntrospection(snapshot, topCount, System.currentTimeMillis());
+    }
+
+    /**
+     * Gets metrics of the listener
+     *
+     * @return {@link InteractableMetrics}
+     */
+    public static InteractableMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the pipeline running expiry callbacks. Use it to configure the executor and callback timeout.
+     *
+     * @return {@link ExpiryPipeline}
+     */
+    public static ExpiryPipeline getExpiryPipeline() {
+        return expiryPipeline;
+    }
+
+    /**
+     * Adds interactable template. Templates are shared by any number of messages and never expire.
+     *
+     * @param template {@link InteractableTemplate}
+     * @throws IllegalArgumentException if another template with the same key is already registered
+     */
+    public static void addTemplate(InteractableTemplate template) {
+        InteractableTemplate existing = templates.putIfAbsent(template.getKey(), template);
+        if (existing != null && existing != template) {
+            throw new IllegalArgumentException("Template with key " + template.getKey() + " is already registered");
+        }
+    }
+
+    /**
+     * Removes interactable template
+     *
+     * @param template {@link InteractableTemplate}
+     */
+    public static void removeTemplate(InteractableTemplate template) {
+        templates.remove(template.getKey(), template);
+    }
+
+    /**
+     * Gets unmodifiable map of all templates by their keys
+     *
+     * @return Unmodifiable map of all templates
+     */
+    public static Map<String, InteractableTemplate> getTemplates() {
+        return Collections.unmodifiableMap(templates);
+    }
+
+    /**
+     * Writes a snapshot of live interactables with a handler key, e.g. on shutdown. See {@link RegistrySnapshot}.
+     *
+     * @param outputStream Stream to write to, not closed by this method
+     * @return Number of written interactables
+     * @throws IOException if the snapshot could not be written
+     */
+    public static int writeSnapshot(OutputStream outputStream) throws IOException {
+        return RegistrySnapshot.write(getInteractables(), outputStream);
+    }
+
+    /**
+     * Restores interactables from the snapshot and registers them in bulk. Call it on startup before connecting to
+     * the gateway, so restored interactables are ready once interactions arrive.
+     *
+     * @param inputStream Stream to read from, not closed by this method
+     * @param restorers   Restorers by handler keys
+     * @return Number of restored interactables
+     * @throws IOException if the snapshot could not be read
+     */
+    public static int restoreSnapshot(
+        InputStream inputStream,
+        Map<String, ? extends RegistrySnapshot.Restorer> restorers
+    ) throws IOException {
+        List<Interactable<?>> restored = RegistrySnapshot.read(inputStream, restorers);
+        registerAll(restored);
+        return restored.size();
+    }
+
+    /**
+     * Gets the disabler of components of expired interactable messages. Use it to configure rate limits of the edits.
+     *
+     * @return {@link ExpiryComponentDisabler}
+     */
+    public static ExpiryComponentDisabler getComponentDisabler() {
+        return componentDisabler;
+    }
+
+    /**
+     * Gets the watchdog of slow interaction handlers. It's disabled by default, enable it using
+     * {@link SlowHandlerDetector#setThreshold(Duration)}.
+     *
+     * @return {@link SlowHandlerDetector}
+     */
+    public static SlowHandlerDetector getSlowHandlerDetector() {
+        return slowHandlerDetector;
+    }
+
+    /**
+     * Gets the caps on live interactables per user, guild and channel
+     *
+     * @return The {@link InteractableQuotas}
+     */
+    public static InteractableQuotas getQuotas() {
+        return quotas;
+    }
+
+    /**
+     * Gets the monitor shortening expiry of interactables while the heap is running low
+     *
+     * @return The {@link MemoryPressureMonitor}
+     */
+    public static MemoryPressureMonitor getMemoryPressureMonitor() {
+        return memoryPressureMonitor;
+    }
+
+    /**
+     * Registers timer to check for expired interactables every second. The timer is shared by all open listeners; it
+     * is created by the first one and cancelled when the last one is closed.
+     */
+    protected void scheduleExpireCheckerTimer() {
+        synchronized (InteractableListener.class) {
+            if (openListeners++ > 0) {
+                return;
+            }
+
+            expireCheckerTimer = new Timer("Interactable-Expire-Checker", true);
+            expiryPipeline.setTimeoutTimer(expireCheckerTimer);
+            componentDisabler.setTimer(expireCheckerTimer);
+            expireCheckerTimer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    sweepExpired();
+                }
+            }, 0, 1000);
+        }
+    }
+
+    /**
+     * Releases the shared timer if this was the last open listener
+     */
+    protected void releaseExpireCheckerTimer() {
+        synchronized (InteractableListener.class) {
+            if (--openListeners > 0) {
+                return;
+            }
+
+            expireCheckerTimer.cancel();
+            expireCheckerTimer = null;
+            expiryPipeline.setTimeoutTimer(null);
+            componentDisabler.setTimer(null);
+            expiryPipeline.shutdown();
+        }
+    }
+
+    /**
+     * Detaches expired interactables and hands them over to the expiry pipeline
+     */
+    protected static void sweepExpired() {
+        try {
+            long start = System.nanoTime();
+            List<Interactable<?>> expired = detachExpired();
+            expiryPipeline.submit(expired);
+            componentDisabler.submitExpired(expired);
+
+            List<Interactable<?>> collected = detachCollected();
+            if (!collected.isEmpty()) {
+                expiryPipeline.submit(collected, RemovalReason.COLLECTED);
+                componentDisabler.submitExpired(collected);
+            }
+
+            List<Interactable<?>> pressured = detachUnderPressure();
+            if (!pressured.isEmpty()) {
+                expiryPipeline.submit(pressured, RemovalReason.MEMORY_PRESSURE);
+                componentDisabler.submitExpired(pressured);
+            }
+
+            InteractionTracer tracer = InteractionTracing.getTracer();
+            if (tracer != null) {
+                tracer.recordExpirySweep(System.nanoTime() - start, expired.size(), interactables.size());
+            }
+        } catch (Exception exception) {
+            log.error("Error while checking for expired interactables", exception);
+        }
+    }
+
+    /**
+     * Stops dispatching new interactions. While paused, new interactions are forwarded to the
+     * {@link #getDrainTargetNodeId()} if set, or acknowledged otherwise, so users never see "This interaction failed".
+     * Interactions already being dispatched are not affected.
+     */
+    public void pause() {
+        synchronized (inFlight) {
+            if (state == State.RUNNING) {
+                state = State.PAUSED;
+            }
+        }
+    }
+
+    /**
+     * Resumes dispatching of new interactions after {@link #pause()}
+     *
+     * @throws IllegalStateException if the listener is draining or closed
+     */
+    public void resume() {
+        synchronized (inFlight) {
+            if (state == State.DRAINING || state == State.CLOSED) {
+                throw new IllegalStateException("Cannot resume " + state.name().toLowerCase() + " listener");
+            }
+            state = State.RUNNING;
+        }
+    }
+
+    /**
+     * Pauses the listener and waits until in-flight handlers and pending expiry callbacks have finished. Interactables
+     * expired in the meantime are swept before waiting for their callbacks.
+     *
+     * @param timeout Maximum time to wait
+     * @return true if everything has finished, false if the timeout has elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean drain(@NonNull Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (inFlight) {
+            if (state == State.RUNNING || state == State.PAUSED) {
+                state = State.DRAINING;
+            }
+
+            while (inFlight.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    log.warn("Timed out while draining, {} interactions are still being processed", inFlight.get());
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(inFlight, remaining);
+            }
+        }
+
+        sweepExpired();
+        boolean idle = expiryPipeline.awaitIdle(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+        if (!idle) {
+            log.warn("Timed out while draining, expiry callbacks of {} interactables are still running",
+                expiryPipeline.getPendingCount());
+        }
+        return idle;
+    }
+
+    /**
+     * Drains the listener using {@link #DEFAULT_DRAIN_TIMEOUT} and releases its resources: the event processor created
+     * by this listener is shut down and the shared timer is cancelled if this was the last open listener. Remove the
+     * listener from JDA as well. Closing an already closed listener does nothing.
+     */
+    @Override
+    public void close() {
+        if (state == State.CLOSED) {
+            return;
+        }
+
+        try {
+            drain(DEFAULT_DRAIN_TIMEOUT);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (inFlight) {
+            if (state == State.CLOSED) {
+                return;
+            }
+            state = State.CLOSED;
+        }
+
+        if (interactionRouter != null) {
+            interactionRouter.unregister(InteractionIds.getNodeId());
+        }
+        setInteractionRecorder(null);
+        if (ownsEventProcessor && eventProcessor instanceof ExecutorService) {
+            ((ExecutorService) eventProcessor).shutdown();
+        }
+        releaseExpireCheckerTimer();
+    }
+
+    /**
+     * Marks the start of dispatching an event
+     *
+     * @param allowWhilePaused Whether the event should be dispatched even when the listener is paused or draining
+     * @return true if the event should be dispatched, false if it should be rejected
+     */
+    protected boolean beginDispatch(boolean allowWhilePaused) {
+        inFlight.incrementAndGet();
+        State current = state;
+        if (current == State.RUNNING || (allowWhilePaused && current != State.CLOSED)) {
+            return true;
+        }
+        endDispatch();
+        return false;
+    }
+
+    /**
+     * Marks the end of dispatching an event
+     */
+    protected void endDispatch() {
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (inFlight) {
+                inFlight.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Handles an event that is not dispatched because the listener is not running. The event is forwarded to the
+     * {@link #getDrainTargetNodeId()} if set, or acknowledged otherwise.
+     *
+     * @param ctx The interaction event
+     */
+    protected void rejectEvent(InteractionEventContext ctx) {
+        int targetNodeId = drainTargetNodeId;
+        if (targetNodeId == InteractionIds.NO_NODE || !forward(ctx, targetNodeId)) {
+            ctx.acknowledge();
+        }
+    }
+
+    /**
+     * Detaches expired interactables from the registry. Only the interactables due for expiry are visited, so the
+     * cost depends on the number of expired interactables rather than on the size of the registry.
+     *
+     * @return Detached expired interactables
+     */
+    protected static List<Interactable<?>> detachExpired() {
+        long now = System.currentTimeMillis();
+        List<Interactable<?>> expired = new ArrayList<>();
+        synchronized (interactables) {
+            while (!expiryQueue.isEmpty() && expiryQueue.first().deadline <= now) {
+                ExpiryEntry entry = expiryQueue.pollFirst();
+                Interactable<?> interactable = entry.interactable;
+                expiryEntries.remove(interactable);
+
+                if (!interactable.isExpired()) {
+                    // Expiry was postponed without rescheduling (e.g. overridden #isExpired()), check again later
+                    scheduleExpiry(interactable, Math.max(interactable.getExpiresAtMillis(), now + 1000));
+                    continue;
+                }
+
+                interactables.remove(interactable);
+                detach(interactable);
+                expired.add(interactable);
+            }
+
+            if (!expired.isEmpty()) {
+                notifyRemoved(expired, RemovalReason.EXPIRED);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Detaches interactables whose owners were garbage collected, see {@link #addInteractable(Interactable, Object)}
+     *
+     * @return Detached interactables
+     */
+    protected static List<Interactable<?>> detachCollected() {
+        Reference<?> polled = collectedOwners.poll();
+        if (polled == null) {
+            return Collections.emptyList();
+        }
+
+        List<Interactable<?>> collected = new ArrayList<>();
+        synchronized (interactables) {
+            for (; polled != null; polled = collectedOwners.poll()) {
+                OwnerReference reference = (OwnerReference) polled;
+                Interactable<?> interactable = reference.interactable;
+                // The interactable may have been removed, or even re-registered with another owner, in the meantime
+                if (ownerReferences.get(interactable) != reference) {
+                    continue;
+                }
+
+                interactables.remove(interactable);
+                detach(interactable);
+                collected.add(interactable);
+            }
+
+            if (!collected.isEmpty()) {
+                notifyRemoved(collected, RemovalReason.COLLECTED);
+            }
+        }
+        return collected;
+    }
+
+    /**
+     * Detaches idle interactables past their expiry shortened by the {@link #memoryPressureMonitor}, if the heap is
+     * under pressure. Candidates are selected from a copy of the registry, so the registry is locked only to copy and
+     * detach them.
+     *
+     * @return Detached interactables
+     */
+    protected static List<Interactable<?>> detachUnderPressure() {
+        if (!memoryPressureMonitor.check()) {
+            return Collections.emptyList();
+        }
+
+        long now = System.currentTimeMillis();
+        List<Interactable<?>> selected = memoryPressureMonitor.selectEvictions(
+            interactables.toArray(new Interactable<?>[0]), now);
+        if (selected.isEmpty()) {
+            return selected;
+        }
+
+        List<Interactable<?>> detached = new ArrayList<>(selected.size());
+        synchronized (interactables) {
+            for (Interactable<?> interactable : selected) {
+                // Skip interactables used since they were selected
+                if (memoryPressureMonitor.isEvictable(interactable, now) && interactables.remove(interactable)) {
+                    detach(interactable);
+                    detached.add(interactable);
+                }
+            }
+
+            if (!detached.isEmpty()) {
+                notifyRemoved(detached, RemovalReason.MEMORY_PRESSURE);
+            }
+        }
+        return detached;
+    }
+
+    @Override
+    public void onButtonInteraction(ButtonInteractionEvent event) {
+        if (ensureValidUser(event.getUser())) {
+            processEvent(new InteractionEventContext(event));
+        }
+    }
+
+    @Override
+    public void onStringSelectInteraction(StringSelectInteractionEvent event) {
+        if (ensureValidUser(event.getUser())) {
+            processEvent(new InteractionEventContext(event));
+        }
+    }
+
+    @Override
+    public void onEntitySelectInteraction(EntitySelectInteractionEvent event) {
+        if (ensureValidUser(event.getUser())) {
+            processEvent(new InteractionEventContext(event));
+        }
+    }
+
+    @Override
+    public void onModalInteraction(ModalInteractionEvent event) {
+        if (ensureValidUser(event.getUser())) {
+            processEvent(new InteractionEventContext(event));
+        }
+    }
+
+    /**
+     * Sets the router forwarding interactions between nodes. Interactions whose custom ID is owned by another node
+     * (see {@link InteractionIds}) are acknowledged and forwarded to the owner node, and interactions forwarded to
+     * this node are processed by {@link Interactable#processForwarded(ForwardedInteraction)}. The node ID must be set
+     * using {@link InteractionIds#setNodeId(int)} beforehand.
+     *
+     * @param interactionRouter The router, or null to disable forwarding
+     * @throws IllegalStateException if the node ID of this process is not set
+     */
+    public void setInteractionRouter(InteractionRouter interactionRouter) {
+        int nodeId = InteractionIds.getNodeId();
+        if (interactionRouter != null && nodeId == InteractionIds.NO_NODE) {
+            throw new IllegalStateException("Node ID must be set using InteractionIds#setNodeId() before routing");
+        }
+
+        InteractionRouter previous = this.interactionRouter;
+        if (previous != null) {
+            previous.unregister(nodeId);
+        }
+
+        this.interactionRouter = interactionRouter;
+        if (interactionRouter != null) {
+            interactionRouter.register(nodeId, this::receiveForwarded);
+        }
+    }
+
+    /**
+     * Processes the interaction event
+     *
+     * @param ctx The interaction event to process
+     */
+    protected void processEvent(InteractionEventContext ctx) {
+        InteractionRecorder recorder = interactionRecorder;
+        if (recorder != null) {
+            recorder.recordDispatch(ctx);
+        }
+
+        ctx.setSampled(InteractionTracing.shouldSample());
+        if (!beginDispatch(false)) {
+            rejectEvent(ctx);
+            return;
+        }
+
+        // Ended on the event processor's thread
+        InteractionSpan queueSpan = InteractionTracing.trace(TraceStage.QUEUE, ctx);
+        Executor executor = selectExecutor(ctx);
+        FairDispatchQueue<PendingEvent> queue = pendingEvents.computeIfAbsent(executor,
+            ignored -> new FairDispatchQueue<>(this::getGuildWeight));
+        queue.add(fairQueuing ? resolveTenant(ctx) : 0, new PendingEvent(ctx, queueSpan));
+
+        try {
+            // Each task dispatches the pending event with the earliest deadline, not necessarily this one
+            executor.execute(() -> dispatchNextPending(queue));
+        } catch (RejectedExecutionException exception) {
+            PendingEvent rejected = queue.poll();
+            if (rejected != null) {
+                rejected.queueSpan.recordException(exception);
+                rejected.queueSpan.end();
+                endDispatch();
+                rejectEvent(rejected.ctx);
+            }
+        }
+    }
+
+    /**
+     * Sets the recorder of events received by this listener and of registry changes, see {@link InteractionRecorder}.
+     * The currently registered interactables are recorded as registered first, so the trace is complete for replay.
+     * The previous recorder is detached but not closed.
+     *
+     * @param interactionRecorder The recorder or null to stop recording
+     */
+    public void setInteractionRecorder(InteractionRecorder interactionRecorder) {
+        synchronized (interactables) {
+            InteractionRecorder previous = this.interactionRecorder;
+            if (previous != null) {
+                removeRegistryListener(previous);
+            }
+
+            this.interactionRecorder = interactionRecorder;
+            if (interactionRecorder != null) {
+                if (!interactables.isEmpty()) {
+                    interactionRecorder.onRegistered(new ArrayList<>(interactables));
+                }
+                addRegistryListener(interactionRecorder);
+            }
+        }
+    }
+
+    /**
+     * Enables fair queuing of pending events among guilds. Each guild, and direct messages as a whole, get their own
+     * queue, and the queues take turns using deficit round-robin weighted by {@link #setGuildWeight(long, double)}.
+     * A guild flooding the listener with interactions then delays only its own interactions. Events of a single guild
+     * are still dispatched by their deadlines.
+     *
+     * @param fairQueuing true to enable fair queuing
+     */
+    public void setFairQueuing(boolean fairQueuing) {
+        this.fairQueuing = fairQueuing;
+    }
+
+    /**
+     * Sets the weight of the guild for fair queuing. A guild with weight 2 is served twice as often as a guild with
+     * the default weight 1 while both have pending events.
+     *
+     * @param guildId The guild ID, or {@link #DIRECT_MESSAGES_TENANT} for direct messages
+     * @param weight  Positive weight
+     */
+    public void setGuildWeight(long guildId, double weight) {
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        }
+        guildWeights.put(guildId, weight);
+    }
+
+    /**
+     * Gets the weight of the guild for fair queuing
+     *
+     * @param guildId The guild ID, or {@link #DIRECT_MESSAGES_TENANT} for direct messages
+     * @return The weight, {@link FairDispatchQueue#DEFAULT_WEIGHT} if not set
+     */
+    public double getGuildWeight(long guildId) {
+        Double weight = guildWeights.get(guildId);
+        return weight != null ? weight : FairDispatchQueue.DEFAULT_WEIGHT;
+    }
+
+    /**
+     * Resolves the tenant of the event for fair queuing
+     *
+     * @param ctx The interaction event
+     * @return The guild ID or {@link #DIRECT_MESSAGES_TENANT}
+     */
+    protected long resolveTenant(InteractionEventContext ctx) {
+        Guild guild = ctx.getGuild();
+        return guild != null ? guild.getIdLong() : DIRECT_MESSAGES_TENANT;
+    }
+
+    /**
+     * Dispatches the next pending event: the one with the earliest deadline, of the guild on turn if
+     * {@link #isFairQueuing()} is enabled. Events which passed their acknowledgement deadline while queued are dropped
+     * without running any rule or handler if {@link #isDropStaleEvents()} is enabled.
+     *
+     * @param queue Queue of pending events of the executor running this method
+     */
+    protected void dispatchNextPending(FairDispatchQueue<PendingEvent> queue) {
+        PendingEvent pending = queue.poll();
+        if (pending == null) {
+            return;
+        }
+
+        pending.queueSpan.end();
+        try {
+            if (dropStaleEvents) {
+                long now = System.nanoTime();
+                if (pending.isStale(now)) {
+                    dropStale(pending, now);
+                    return;
+                }
+                if (pending.budgetNanos <= 0 && isWarningDue(lastSkewWarningNanos, now)) {
+                    log.warn("Interaction {} arrived {} ms past its acknowledgement deadline, the system clock may be "
+                        + "skewed; dispatching it anyway", pending.ctx.getCustomId(),
+                        TimeUnit.NANOSECONDS.toMillis(-pending.budgetNanos));
+                }
+            }
+            dispatch(pending.ctx);
+        } finally {
+            endDispatch();
+        }
+    }
+
+    /**
+     * Drops the event which passed its acknowledgement deadline while queued, warning about dropped events at most once
+     * per {@link #STALE_WARNING_INTERVAL_NANOS}
+     *
+     * @param pending The event
+     * @param now     Current {@link System#nanoTime()}
+     */
+    protected void dropStale(PendingEvent pending, long now) {
+        metrics.recordStaleEvent();
+        int unreported = unreportedStaleEvents.incrementAndGet();
+        if (isWarningDue(lastStaleWarningNanos, now)) {
+            unreportedStaleEvents.addAndGet(-unreported);
+            log.warn("Dropped {} interactions past their acknowledgement deadline, last {} after waiting {} ms in the "
+                + "queue; the event processor may be overloaded", unreported, pending.ctx.getCustomId(),
+                TimeUnit.NANOSECONDS.toMillis(now - pending.receivedAtNanos));
+        } else {
+            log.debug("Dropping interaction {} past its acknowledgement deadline", pending.ctx.getCustomId());
+        }
+    }
+
+    /**
+     * Claims the next warning if {@link #STALE_WARNING_INTERVAL_NANOS} has passed since the last one
+     *
+     * @param lastWarningNanos Time of the last warning
+     * @param now              Current {@link System#nanoTime()}
+     * @return true if the warning should be logged
+     */
+    protected static boolean isWarningDue(AtomicLong lastWarningNanos, long now) {
+        long last = lastWarningNanos.get();
+        return now - last >= STALE_WARNING_INTERVAL_NANOS && lastWarningNanos.compareAndSet(last, now);
+    }
+
+    /**
+     * Sets the dispatch lane of the interaction type. Events of the type are processed within the lane's own queue and
+     * concurrency budget, so e.g. a flood of button clicks can't starve modal submissions. Events of types without a
+     * lane are processed by the {@link #getEventProcessor()} directly.
+     *
+     * @param type The interaction type
+     * @param lane The lane or null to remove it
+     */
+    public void setDispatchLane(@NonNull InteractionType type, DispatchLane lane) {
+        if (lane == null) {
+            dispatchLanes.remove(type);
+        } else {
+            dispatchLanes.put(type, lane);
+        }
+    }
+
+    /**
+     * Sets the dispatch lane of the interaction type with its own concurrency budget, backed by the
+     * {@link #getEventProcessor()}
+     *
+     * @param type           The interaction type
+     * @param maxConcurrency Maximum number of events of the type processed at once
+     * @return The lane
+     */
+    public DispatchLane setDispatchLane(@NonNull InteractionType type, int maxConcurrency) {
+        DispatchLane lane = new DispatchLane(type.name(), maxConcurrency, eventProcessor);
+        setDispatchLane(type, lane);
+        return lane;
+    }
+
+    /**
+     * Gets the dispatch lane of the interaction type
+     *
+     * @param type The interaction type
+     * @return The lane or null if events of the type are processed by the event processor directly
+     */
+    public DispatchLane getDispatchLane(@NonNull InteractionType type) {
+        return dispatchLanes.get(type);
+    }
+
+    /**
+     * Sets the dispatch lane of interactables with {@link Interactable#getDispatchPriority()} of at least the minimum
+     * priority. Priority lanes take precedence over lanes of interaction types; the lane with the highest minimum
+     * priority not exceeding the interactable's priority is used. Only interactables found in the custom ID index
+     * before queueing are considered, so events of interactables without custom IDs use the lanes of their types.
+     *
+     * @param minimumPriority Minimum priority of interactables
+     * @param lane            The lane or null to remove it
+     */
+    public void setPriorityLane(int minimumPriority, DispatchLane lane) {
+        if (lane == null) {
+            priorityLanes.remove(minimumPriority);
+        } else {
+            priorityLanes.put(minimumPriority, lane);
+        }
+    }
+
+    /**
+     * Selects the executor processing the event: the priority lane of its interactable, the lane of its type, or the
+     * {@link #getEventProcessor()}
+     *
+     * @param ctx The interaction event
+     * @return The executor
+     */
+    protected Executor selectExecutor(InteractionEventContext ctx) {
+        if (!priorityLanes.isEmpty()) {
+            Interactable<?> interactable = lookupIndexed(ctx);
+            if (interactable != null) {
+                Map.Entry<Integer, DispatchLane> entry = priorityLanes.floorEntry(interactable.getDispatchPriority());
+                if (entry != null) {
+                    return entry.getValue();
+                }
+            }
+        }
+
+        DispatchLane lane = dispatchLanes.get(ctx.getInteractionType());
+        return lane != null ? lane : eventProcessor;
+    }
+
+    /**
+     * Dispatches the interaction event to the interactable it belongs to. The interactable indexed by the custom ID (or
+     * by a selected value) is tried first; if there is none or it does not process the event, the {@link #unindexed}
+     * interactables are tried in order of registration.
+     * <p>
+     * Handlers run outside the registry lock, so they can register and remove interactables freely, even from other
+     * threads. Events of a single interactable are processed one at a time, see {@link Interactable#getDispatchLock()}.
+     * </p>
+     *
+     * @param ctx The interaction event to dispatch
+     */
+    protected void dispatch(InteractionEventContext ctx) {
+        if (processTemplate(ctx) || forwardToOwner(ctx)) {
+            return;
+        }
+
+        InteractionSpan lookupSpan = InteractionTracing.trace(TraceStage.LOOKUP, ctx);
+        try {
+            Interactable<?> indexed = lookupIndexed(ctx);
+            if (indexed != null && processRegistered(indexed, ctx)) {
+                return;
+            }
+
+            for (Interactable<?> interactable : snapshotUnindexed()) {
+                if (interactable != indexed && processRegistered(interactable, ctx)) {
+                    // Exit early since the event has been processed
+                    return;
+                }
+            }
+        } catch (RuntimeException exception) {
+            lookupSpan.recordException(exception);
+            throw exception;
+        } finally {
+            lookupSpan.end();
+        }
+    }
+
+    /**
+     * Copies the {@link #unindexed} interactables, so they are processed outside the registry lock
+     *
+     * @return The interactables in order of registration
+     */
+    protected static Interactable<?>[] snapshotUnindexed() {
+        synchronized (interactables) {
+            return unindexed.isEmpty() ? NO_INTERACTABLES : unindexed.toArray(NO_INTERACTABLES);
+        }
+    }
+
+    /**
+     * Looks up the interactable the event belongs to in the {@link #customIdIndex}
+     *
+     * @param ctx The interaction event
+     * @return The interactable or null if not indexed
+     */
+    protected static Interactable<?> lookupIndexed(InteractionEventContext ctx) {
+        synchronized (interactables) {
+            String customId = ctx.getCustomId();
+            Interactable<?> indexed = customId != null ? customIdIndex.get(customId) : null;
+            if (indexed == null && ctx.isStringSelectMenuInteraction()) {
+                List<String> values = ctx.getStringSelectInteractionEvent().getValues();
+                for (int index = 0; index < values.size() && indexed == null; index++) {
+                    indexed = customIdIndex.get(values.get(index));
+                }
+            }
+            return indexed;
+        }
+    }
+
+    /**
+     * Processes the event by the interactable if it's still registered, removing it if requested by the result
+     *
+     * @param interactable {@link Interactable}
+     * @param ctx          The interaction event
+     * @return true if the interactable has processed the event, false otherwise
+     */
+    protected static boolean processRegistered(Interactable<?> interactable, InteractionEventContext ctx) {
+        synchronized (interactable.getDispatchLock()) {
+            // Skipped if removed while waiting for other handlers of the interactable
+            return interactable.awaitLateHandlers() && isRegistered(interactable)
+                && applyResult(interactable, interactable.process(ctx));
+        }
+    }
+
+    /**
+     * Processes the forwarded interaction by the interactable if it's still registered, removing it if requested by
+     * the result
+     *
+     * @param interactable {@link Interactable}
+     * @param forwarded    The forwarded interaction
+     * @return true if the interactable has processed the interaction, false otherwise
+     */
+    protected static boolean processRegistered(Interactable<?> interactable, ForwardedInteraction forwarded) {
+        synchronized (interactable.getDispatchLock()) {
+            return interactable.awaitLateHandlers() && isRegistered(interactable)
+                && applyResult(interactable, interactable.processForwarded(forwarded));
+        }
+    }
+
+    /**
+     * @param interactable {@link Interactable}
+     * @return true if the interactable is in the registry
+     */
+    protected static boolean isRegistered(Interactable<?> interactable) {
+        synchronized (interactables) {
+            return interactables.contains(interactable);
+        }
+    }
+
+    /**
+     * Applies the result of processing by the interactable, taking the registry lock only to remove it. Must be called
+     * while holding the dispatch lock of the interactable.
+     *
+     * @param interactable {@link Interactable}
+     * @param result       The result
+     * @return true if the interactable has processed the interaction, false otherwise
+     */
+    protected static boolean applyResult(Interactable<?> interactable, Result result) {
+        if (result == Result.NOT_PROCESSED) {
+            return false;
+        }
+        interactable.markInteracted();
+        if (result == Result.REMOVE) {
+            synchronized (interactables) {
+                if (interactables.remove(interactable)) {
+                    removeProcessed(interactable);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the interactable whose handlers requested removal after the event was processed, e.g. handlers which
+     * finished past the acknowledgement deadline, see {@link InteractableMessage#setHandlerExecutor(Executor)}
+     *
+     * @param interactable {@link Interactable}
+     * @return true if the interactable was registered, false otherwise
+     */
+    public static boolean removeProcessedLate(@NonNull Interactable<?> interactable) {
+        synchronized (interactables) {
+            if (!interactables.remove(interactable)) {
+                return false;
+            }
+            removeProcessed(interactable);
+            return true;
+        }
+    }
+
+    /**
+     * Cleans up after the interactable was removed from the registry by processing. Must be called while holding the
+     * registry lock.
+     *
+     * @param interactable {@link Interactable}
+     */
+    protected static void removeProcessed(Interactable<?> interactable) {
+        detach(interactable);
+        notifyRemoved(Collections.singletonList(interactable), RemovalReason.PROCESSED);
+    }
+
+    /**
+     * Forwards the interaction event to its owner node if it's owned by another node
+     *
+     * @param ctx The interaction event
+     * @return true if the event was forwarded, false if it should be processed by this node
+     */
+    protected boolean forwardToOwner(InteractionEventContext ctx) {
+        InteractionRouter router = interactionRouter;
+        if (router == null) {
+            return false;
+        }
+
+        int localNodeId = InteractionIds.getNodeId();
+        int ownerNodeId = resolveOwnerNodeId(ctx);
+        if (ownerNodeId == InteractionIds.NO_NODE || ownerNodeId == localNodeId) {
+            return false;
+        }
+
+        forward(ctx, ownerNodeId);
+        return true;
+    }
+
+    /**
+     * Acknowledges the interaction event and forwards it to the node using the {@link #getInteractionRouter()}
+     *
+     * @param ctx    The interaction event
+     * @param nodeId The target node ID
+     * @return true if forwarded, false if there is no router or the target is this node
+     */
+    protected boolean forward(InteractionEventContext ctx, int nodeId) {
+        InteractionRouter router = interactionRouter;
+        int localNodeId = InteractionIds.getNodeId();
+        if (router == null || nodeId == localNodeId) {
+            return false;
+        }
+
+        // Acknowledge first, the target responds using the interaction hook
+        ctx.acknowledge();
+        try {
+            router.send(nodeId, ForwardedInteraction.from(ctx, localNodeId).encode());
+        } catch (Exception exception) {
+            log.warn("Failed to forward interaction {} to node {}", ctx.getCustomId(), nodeId, exception);
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the owner node ID of the interaction event from its custom ID or, for select menus with custom IDs
+     * not created by this library, from the selected values
+     *
+     * @param ctx The interaction event
+     * @return The owner node ID or {@link InteractionIds#NO_NODE} if unknown
+     */
+    protected int resolveOwnerNodeId(InteractionEventContext ctx) {
+        int ownerNodeId = InteractionIds.parseNodeId(ctx.getCustomId());
+        if (ownerNodeId == InteractionIds.NO_NODE && ctx.isStringSelectMenuInteraction()) {
+            for (String value : ctx.getStringSelectInteractionEvent().getValues()) {
+                ownerNodeId = InteractionIds.parseNodeId(value);
+                if (ownerNodeId != InteractionIds.NO_NODE) {
+                    break;
+                }
+            }
+        }
+        return ownerNodeId;
+    }
+
+    /**
+     * Receives the interaction forwarded from another node
+     *
+     * @param payload The encoded {@link ForwardedInteraction}
+     */
+    protected void receiveForwarded(byte[] payload) {
+        final ForwardedInteraction forwarded;
+        try {
+            forwarded = ForwardedInteraction.decode(payload);
+        } catch (IllegalArgumentException exception) {
+            log.warn("Received malformed forwarded interaction", exception);
+            return;
+        }
+
+        // Forwarded interactions were already acknowledged by the sender, so they are processed even while draining
+        if (!beginDispatch(true)) {
+            log.debug("Listener is closed, dropping forwarded interaction {}", forwarded);
+            return;
+        }
+
+        try {
+            eventProcessor.execute(() -> {
+                try {
+                    dispatchForwarded(forwarded);
+                } finally {
+                    endDispatch();
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            endDispatch();
+            log.warn("Event processor rejected forwarded interaction {}", forwarded);
+        }
+    }
+
+    /**
+     * Dispatches the forwarded interaction to the interactable it belongs to, the same way as
+     * {@link #dispatch(InteractionEventContext)}: the indexed interactable first, then the {@link #unindexed} ones.
+     * Handlers run under the dispatch lock of the interactable and outside the registry lock.
+     *
+     * @param forwarded The forwarded interaction
+     */
+    protected void dispatchForwarded(ForwardedInteraction forwarded) {
+        Interactable<?> indexed = lookupIndexed(forwarded);
+        if (indexed != null && processRegistered(indexed, forwarded)) {
+            return;
+        }
+
+        for (Interactable<?> interactable : snapshotUnindexed()) {
+            if (interactable != indexed && processRegistered(interactable, forwarded)) {
+                return;
+            }
+        }
+        log.debug("No interactable processed forwarded interaction {}", forwarded);
+    }
+
+    /**
+     * Looks up the interactable the forwarded interaction belongs to in the {@link #customIdIndex}
+     *
+     * @param forwarded The forwarded interaction
+     * @return The interactable or null if not indexed
+     */
+    protected static Interactable<?> lookupIndexed(ForwardedInteraction forwarded) {
+        synchronized (interactables) {
+            String customId = forwarded.getCustomId();
+            Interactable<?> indexed = customId != null ? customIdIndex.get(customId) : null;
+            if (indexed == null && forwarded.getType() == InteractionType.STRING_SELECT_MENU) {
+                List<String> values = forwarded.getValues();
+                for (int index = 0; index < values.size() && indexed == null; index++) {
+                    indexed = customIdIndex.get(values.get(index));
+                }
+            }
+            return indexed;
+        }
+    }
+
+    /**
+     * Processes the interaction event with the template its custom ID belongs to, if any
+     *
+     * @param ctx The interaction event to process
+     * @return true if the event was processed by a template, false otherwise
+     */
+    protected boolean processTemplate(InteractionEventContext ctx) {
+        String key = InteractableTemplate.parseKey(ctx.getCustomId());
+        if (key == null) {
+            return false;
+        }
+
+        InteractableTemplate template = templates.get(key);
+        if (template == null) {
+            return false;
+        }
+
+        return template.process(ctx) != Result.NOT_PROCESSED;
+    }
+
+    /**
+     * Lifecycle state of {@link InteractableListener}
+     */
+    public enum State {
+        /**
+         * Dispatching interactions
+         */
+        RUNNING,
+
+        /**
+         * New interactions are forwarded or acknowledged without dispatching, see {@link #pause()}
+         */
+        PAUSED,
+
+        /**
+         * Paused and waiting for in-flight handlers and expiry callbacks, see {@link #drain(Duration)}
+         */
+        DRAINING,
+
+        /**
+         * Closed, resources were released, see {@link #close()}
+         */
+        CLOSED
+    }
+
+    /**
+     * Entry of the expiry queue, ordered by deadline and then by order of scheduling
+     */
+    protected static final class ExpiryEntry implements Comparable<ExpiryEntry> {
+
+        private static final AtomicLong sequenceCounter = new AtomicLong();
+
+        protected final Interactable<?> interactable;
+        protected final long deadline;
+        protected final long sequence = sequenceCounter.incrementAndGet();
+
+        protected ExpiryEntry(Interactable<?> interactable, long deadline) {
+            this.interactable = interactable;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(ExpiryEntry other) {
+            int result = Long.compare(deadline, other.deadline);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Weak reference to the owner of a registered interactable, enqueued to {@link #collectedOwners} once the owner is
+     * garbage collected
+     */
+    protected static final class OwnerReference extends WeakReference<Object> {
+
+        private final Interactable<?> interactable;
+
+        private OwnerReference(Object owner, Interactable<?> interactable) {
+            super(owner, collectedOwners);
+            this.interactable = interactable;
+        }
+    }
+
+    /**
+     * Event waiting for dispatch, ordered by the acknowledgement deadline and then by order of arrival
+     */
+    protected static final class PendingEvent implements Comparable<PendingEvent> {
+
+        private static final AtomicLong sequenceCounter = new AtomicLong();
+
+        protected final InteractionEventContext ctx;
+        protected final InteractionSpan queueSpan;
+        protected final long deadline;
+        protected final long sequence = sequenceCounter.incrementAndGet();
+
+        /**
+         * Local time of receipt in {@link System#nanoTime()}, unaffected by the system clock
+         */
+        protected final long receivedAtNanos = System.nanoTime();
+
+        /**
+         * Time left until the deadline on receipt, at most
+         * {@link InteractionEventContext#ACKNOWLEDGEMENT_DEADLINE_MILLIS}; not positive if the event arrived after it
+         */
+        protected final long budgetNanos;
+
+        protected PendingEvent(InteractionEventContext ctx, InteractionSpan queueSpan) {
+            this.ctx = ctx;
+            this.queueSpan = queueSpan;
+            this.deadline = ctx.getDeadlineMillis();
+            long remainingMillis = Math.min(deadline - System.currentTimeMillis(),
+                InteractionEventContext.ACKNOWLEDGEMENT_DEADLINE_MILLIS);
+            this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(remainingMillis);
+        }
+
+        /**
+         * Checks if the event passed its deadline while queued. Only the clocks are compared on receipt, the time spent
+         * in the queue is measured locally; events past their deadline on arrival are never stale, as their deadline
+         * is likely off due to a skewed system clock.
+         *
+         * @param now Current {@link System#nanoTime()}
+         * @return true if the event is stale
+         */
+        protected boolean isStale(long now) {
+            return budgetNanos > 0 && now - receivedAtNanos >= budgetNanos;
+        }
+
+        @Override
+        public int compareTo(PendingEvent other) {
+            int result = Long.compare(deadline, other.deadline);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
     }
 
     /**
@@ -0,0 +1,296 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the {@link InteractableListener}. All counters are cumulative since the start of the application and
+ * cheap to update from multiple threads.
+ */
+public class InteractableMetrics {
+
+    protected final LongAdder expiredInteractables = new LongAdder();
+    protected final LongAdder collectedInteractables = new LongAdder();
+    protected final LongAdder evictedInteractables = new LongAdder();
+    protected final LongAdder quotaRejections = new LongAdder();
+    protected final LongAdder pressureEvictedInteractables = new LongAdder();
+    protected final LongAdder memoryPressureEpisodes = new LongAdder();
+    protected final LongAdder expiryCallbacks = new LongAdder();
+    protected final LongAdder expiryCallbackFailures = new LongAdder();
+    protected final LongAdder expiryCallbackTimeouts = new LongAdder();
+    protected final LongAdder expiryRunsRejected = new LongAdder();
+    protected final LongAdder expiryCallbackNanos = new LongAdder();
+    protected final LongAccumulator expiryCallbackMaxNanos = new LongAccumulator(Math::max, 0);
+    protected final LongAdder componentDisablesQueued = new LongAdder();
+    protected final LongAdder componentDisables = new LongAdder();
+    protected final LongAdder componentDisableFailures = new LongAdder();
+    protected final LongAdder slowHandlers = new LongAdder();
+    protected final LongAdder staleEvents = new LongAdder();
+
+    /**
+     * Records expired interactables
+     *
+     * @param count Number of expired interactables
+     */
+    public void recordExpired(int count) {
+        expiredInteractables.add(count);
+    }
+
+    /**
+     * Records interactables removed because their owners were garbage collected
+     *
+     * @param count Number of collected interactables
+     */
+    public void recordCollected(int count) {
+        collectedInteractables.add(count);
+    }
+
+    /**
+     * Records interactables evicted by {@link InteractableQuotas}
+     *
+     * @param count Number of evicted interactables
+     */
+    public void recordEvicted(int count) {
+        evictedInteractables.add(count);
+    }
+
+    /**
+     * Records interactables evicted by {@link MemoryPressureMonitor}
+     *
+     * @param count Number of evicted interactables
+     */
+    public void recordPressureEvicted(int count) {
+        pressureEvictedInteractables.add(count);
+    }
+
+    /**
+     * Records the start of a period of memory pressure detected by {@link MemoryPressureMonitor}
+     */
+    public void recordMemoryPressureEpisode() {
+        memoryPressureEpisodes.increment();
+    }
+
+    /**
+     * Records interactables rejected by {@link InteractableQuotas}
+     *
+     * @param count Number of rejected interactables
+     */
+    public void recordQuotaRejected(int count) {
+        quotaRejections.add(count);
+    }
+
+    /**
+     * Records a finished expiry callback
+     *
+     * @param nanos  Duration of the callback in nanoseconds
+     * @param failed true if the callback has thrown an exception
+     */
+    public void recordExpiryCallback(long nanos, boolean failed) {
+        expiryCallbacks.increment();
+        expiryCallbackNanos.add(nanos);
+        expiryCallbackMaxNanos.accumulate(nanos);
+        if (failed) {
+            expiryCallbackFailures.increment();
+        }
+    }
+
+    /**
+     * Records an expiry callback that has exceeded its timeout
+     */
+    public void recordExpiryCallbackTimeout() {
+        expiryCallbackTimeouts.increment();
+    }
+
+    /**
+     * Records expiry callbacks of an interactable dropped because the expiry executor rejected them
+     */
+    public void recordExpiryRunRejected() {
+        expiryRunsRejected.increment();
+    }
+
+    /**
+     * Records a queued edit disabling components of an expired message
+     */
+    public void recordComponentDisableQueued() {
+        componentDisablesQueued.increment();
+    }
+
+    /**
+     * Records a finished edit disabling components of an expired message
+     *
+     * @param failed true if the edit has failed
+     */
+    public void recordComponentDisable(boolean failed) {
+        componentDisables.increment();
+        if (failed) {
+            componentDisableFailures.increment();
+        }
+    }
+
+    /**
+     * Records a handler that has exceeded the threshold of {@link SlowHandlerDetector}
+     */
+    public void recordSlowHandler() {
+        slowHandlers.increment();
+    }
+
+    /**
+     * Records an event dropped because its acknowledgement deadline has passed before dispatch
+     */
+    public void recordStaleEvent() {
+        staleEvents.increment();
+    }
+
+    /**
+     * Gets the number of expired interactables
+     *
+     * @return Number of expired interactables
+     */
+    public long getExpiredInteractables() {
+        return expiredInteractables.sum();
+    }
+
+    /**
+     * Gets the number of interactables removed because their owners were garbage collected
+     *
+     * @return Number of collected interactables
+     */
+    public long getCollectedInteractables() {
+        return collectedInteractables.sum();
+    }
+
+    /**
+     * Gets the number of interactables evicted by {@link InteractableQuotas}
+     *
+     * @return Number of evicted interactables
+     */
+    public long getEvictedInteractables() {
+        return evictedInteractables.sum();
+    }
+
+    /**
+     * Gets the number of interactables evicted by {@link MemoryPressureMonitor}
+     *
+     * @return Number of evicted interactables
+     */
+    public long getPressureEvictedInteractables() {
+        return pressureEvictedInteractables.sum();
+    }
+
+    /**
+     * Gets the number of periods of memory pressure detected by {@link MemoryPressureMonitor}
+     *
+     * @return Number of periods of memory pressure
+     */
+    public long getMemoryPressureEpisodes() {
+        return memoryPressureEpisodes.sum();
+    }
+
+    /**
+     * Gets the number of interactables whose registration was rejected by {@link InteractableQuotas}
+     *
+     * @return Number of rejected interactables
+     */
+    public long getQuotaRejections() {
+        return quotaRejections.sum();
+    }
+
+    /**
+     * Gets the number of finished expiry callbacks, including failed ones
+     *
+     * @return Number of finished expiry callbacks
+     */
+    public long getExpiryCallbacks() {
+        return expiryCallbacks.sum();
+    }
+
+    /**
+     * Gets the number of expiry callbacks that have thrown an exception
+     *
+     * @return Number of failed expiry callbacks
+     */
+    public long getExpiryCallbackFailures() {
+        return expiryCallbackFailures.sum();
+    }
+
+    /**
+     * Gets the number of expiry callbacks that have exceeded their timeout
+     *
+     * @return Number of timed out expiry callbacks
+     */
+    public long getExpiryCallbackTimeouts() {
+        return expiryCallbackTimeouts.sum();
+    }
+
+    /**
+     * Gets the number of interactables whose expiry callbacks were dropped because the expiry executor rejected them
+     *
+     * @return Number of rejected interactables
+     */
+    public long getExpiryRunsRejected() {
+        return expiryRunsRejected.sum();
+    }
+
+    /**
+     * Gets the total duration of finished expiry callbacks
+     *
+     * @return Total duration in nanoseconds
+     */
+    public long getExpiryCallbackNanos() {
+        return expiryCallbackNanos.sum();
+    }
+
+    /**
+     * Gets the longest duration of a finished expiry callback
+     *
+     * @return Longest duration in nanoseconds
+     */
+    public long getExpiryCallbackMaxNanos() {
+        return expiryCallbackMaxNanos.get();
+    }
+
+    /**
+     * Gets the number of queued edits disabling components of expired messages
+     *
+     * @return Number of queued edits
+     */
+    public long getComponentDisablesQueued() {
+        return componentDisablesQueued.sum();
+    }
+
+    /**
+     * Gets the number of finished edits disabling components of expired messages, including failed ones
+     *
+     * @return Number of finished edits
+     */
+    public long getComponentDisables() {
+        return componentDisables.sum();
+    }
+
+    /**
+     * Gets the number of failed edits disabling components of expired messages
+     *
+     * @return Number of failed edits
+     */
+    public long getComponentDisableFailures() {
+        return componentDisableFailures.sum();
+    }
+
+    /**
+     * Gets the number of handlers that have exceeded the threshold of {@link SlowHandlerDetector}
+     *
+     * @return Number of slow handlers
+     */
+    public long getSlowHandlers() {
+        return slowHandlers.sum();
+    }
+
+    /**
+     * Gets the number of events dropped because their acknowledgement deadline has passed before dispatch
+     *
+     * @return Number of stale events
+     */
+    public long getStaleEvents() {
+        return staleEvents.sum();
+    }
+}
@@ -0,0 +1,294 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import enterprises.iwakura.jdainteractables.components.InteractableMessage;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Caps on live interactables per user, guild and channel, enforced by {@link InteractableListener} on registration.
+ * Only interactables with a {@link Interactable#getScope()} are counted; interactable messages registered using
+ * {@link InteractableMessage#registerOnCompleted()} get their scope automatically.
+ * <p>
+ * When a registration would exceed a cap, the {@link #getPolicy()} either evicts the oldest interactables of the
+ * user, guild or channel, running their expiry callbacks with {@link RemovalReason#EVICTED}, or rejects the
+ * registration with {@link QuotaExceededException}. All caps are unlimited by default.
+ * </p><p>
+ * The live interactables are counted while the registry is locked; each registration of a scoped interactable costs
+ * a few hash map operations.
+ * </p>
+ */
+@Getter
+public class InteractableQuotas {
+
+    /**
+     * Maximum live interactables per user, zero if unlimited
+     */
+    protected volatile int maxPerUser;
+
+    /**
+     * Maximum live interactables per guild, zero if unlimited
+     */
+    protected volatile int maxPerGuild;
+
+    /**
+     * Maximum live interactables per channel, zero if unlimited
+     */
+    protected volatile int maxPerChannel;
+
+    /**
+     * Policy applied when a registration would exceed a cap
+     */
+    protected volatile Policy policy = Policy.EVICT_OLDEST;
+
+    /**
+     * Scopes of counted interactables, guarded by the registry lock
+     */
+    @Getter(AccessLevel.NONE)
+    protected final Map<Interactable<?>, InteractableScope> scopes = new IdentityHashMap<>();
+
+    /**
+     * Counted interactables in the order of registration by user, guild and channel IDs, guarded by the registry
+     * lock
+     */
+    @Getter(AccessLevel.NONE)
+    protected final Map<Long, Set<Interactable<?>>> byUser = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    protected final Map<Long, Set<Interactable<?>>> byGuild = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    protected final Map<Long, Set<Interactable<?>>> byChannel = new HashMap<>();
+
+    /**
+     * Sets the maximum live interactables per user
+     *
+     * @param maxPerUser The maximum, zero if unlimited
+     * @return These quotas
+     */
+    public InteractableQuotas setMaxPerUser(int maxPerUser) {
+        this.maxPerUser = requireLimit(maxPerUser);
+        return this;
+    }
+
+    /**
+     * Sets the maximum live interactables per guild
+     *
+     * @param maxPerGuild The maximum, zero if unlimited
+     * @return These quotas
+     */
+    public InteractableQuotas setMaxPerGuild(int maxPerGuild) {
+        this.maxPerGuild = requireLimit(maxPerGuild);
+        return this;
+    }
+
+    /**
+     * Sets the maximum live interactables per channel
+     *
+     * @param maxPerChannel The maximum, zero if unlimited
+     * @return These quotas
+     */
+    public InteractableQuotas setMaxPerChannel(int maxPerChannel) {
+        this.maxPerChannel = requireLimit(maxPerChannel);
+        return this;
+    }
+
+    /**
+     * Sets the policy applied when a registration would exceed a cap, {@link Policy#EVICT_OLDEST} by default
+     *
+     * @param policy The policy
+     * @return These quotas
+     */
+    public InteractableQuotas setPolicy(@NonNull Policy policy) {
+        this.policy = policy;
+        return this;
+    }
+
+    /**
+     * Gets the number of live interactables of the user
+     *
+     * @param userId The user ID
+     * @return Number of live interactables
+     */
+    public int getUserCount(long userId) {
+        return count(byUser, userId);
+    }
+
+    /**
+     * Gets the number of live interactables in the guild
+     *
+     * @param guildId The guild ID
+     * @return Number of live interactables
+     */
+    public int getGuildCount(long guildId) {
+        return count(byGuild, guildId);
+    }
+
+    /**
+     * Gets the number of live interactables in the channel
+     *
+     * @param channelId The channel ID
+     * @return Number of live interactables
+     */
+    public int getChannelCount(long channelId) {
+        return count(byChannel, channelId);
+    }
+
+    /**
+     * Checks the interactable against the caps. Must be called while holding the registry lock.
+     *
+     * @param interactable Interactable to be registered
+     * @param evicted      Interactables already chosen for eviction, to which the interactables to evict are added
+     * @throws QuotaExceededException if a cap would be exceeded and the policy is {@link Policy#REJECT}
+     */
+    protected void admit(Interactable<?> interactable, Set<Interactable<?>> evicted) {
+        InteractableScope scope = interactable.getScope();
+        if (scope == null) {
+            return;
+        }
+
+        // Evictions are only chosen once all caps are known to allow them, so a rejection evicts nothing
+        List<Interactable<?>> chosen = new ArrayList<>();
+        choose(byUser, scope.getUserId(), maxPerUser, "user", interactable, evicted, chosen);
+        choose(byGuild, scope.getGuildId(), maxPerGuild, "guild", interactable, evicted, chosen);
+        choose(byChannel, scope.getChannelId(), maxPerChannel, "channel", interactable, evicted, chosen);
+        evicted.addAll(chosen);
+    }
+
+    /**
+     * Starts counting the registered interactable. Must be called while holding the registry lock.
+     *
+     * @param interactable Registered interactable
+     */
+    protected void track(Interactable<?> interactable) {
+        InteractableScope scope = interactable.getScope();
+        if (scope == null) {
+            return;
+        }
+
+        scopes.put(interactable, scope);
+        add(byUser, scope.getUserId(), interactable);
+        add(byGuild, scope.getGuildId(), interactable);
+        add(byChannel, scope.getChannelId(), interactable);
+    }
+
+    /**
+     * Stops counting the removed interactable. Must be called while holding the registry lock.
+     *
+     * @param interactable Removed interactable
+     */
+    protected void untrack(Interactable<?> interactable) {
+        InteractableScope scope = scopes.remove(interactable);
+        if (scope == null) {
+            return;
+        }
+
+        remove(byUser, scope.getUserId(), interactable);
+        remove(byGuild, scope.getGuildId(), interactable);
+        remove(byChannel, scope.getChannelId(), interactable);
+    }
+
+    private void choose(
+        Map<Long, Set<Interactable<?>>> index,
+        long key,
+        int limit,
+        String dimension,
+        Interactable<?> interactable,
+        Set<Interactable<?>> evicted,
+        List<Interactable<?>> chosen
+    ) {
+        if (limit <= 0 || key == 0) {
+            return;
+        }
+        Set<Interactable<?>> live = index.get(key);
+        if (live == null) {
+            return;
+        }
+
+        int count = live.size();
+        for (Interactable<?> candidate : evicted) {
+            if (live.contains(candidate)) {
+                count--;
+            }
+        }
+        for (Interactable<?> candidate : chosen) {
+            if (live.contains(candidate)) {
+                count--;
+            }
+        }
+
+        int excess = count + 1 - limit;
+        if (excess <= 0) {
+            return;
+        }
+        if (policy == Policy.REJECT) {
+            throw new QuotaExceededException("Interactable " + interactable.getId() + " exceeds the limit of " + limit
+                + " live interactables per " + dimension + " " + key, Collections.singletonList(interactable));
+        }
+
+        // Sets keep the order of registration, the oldest come first
+        Iterator<Interactable<?>> iterator = live.iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            Interactable<?> candidate = iterator.next();
+            if (!evicted.contains(candidate) && !chosen.contains(candidate)) {
+                chosen.add(candidate);
+                excess--;
+            }
+        }
+    }
+
+    private int count(Map<Long, Set<Interactable<?>>> index, long key) {
+        synchronized (InteractableListener.interactables) {
+            Set<Interactable<?>> live = index.get(key);
+            return live != null ? live.size() : 0;
+        }
+    }
+
+    private static void add(Map<Long, Set<Interactable<?>>> index, long key, Interactable<?> interactable) {
+        if (key != 0) {
+            index.computeIfAbsent(key, ignored -> new LinkedHashSet<>()).add(interactable);
+        }
+    }
+
+    private static void remove(Map<Long, Set<Interactable<?>>> index, long key, Interactable<?> interactable) {
+        if (key == 0) {
+            return;
+        }
+        Set<Interactable<?>> live = index.get(key);
+        if (live != null && live.remove(interactable) && live.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static int requireLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        return limit;
+    }
+
+    /**
+     * Policy applied when a registration would exceed a cap
+     */
+    public enum Policy {
+        /**
+         * Evicts the oldest live interactables of the user, guild or channel and runs their expiry callbacks with
+         * {@link RemovalReason#EVICTED}
+         */
+        EVICT_OLDEST,
+
+        /**
+         * Rejects the registration with {@link QuotaExceededException}
+         */
+        REJECT
+    }
+}
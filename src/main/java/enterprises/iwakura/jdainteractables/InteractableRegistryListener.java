@@ -0,0 +1,33 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.Collection;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+
+/**
+ * Listener of changes in the registry of {@link InteractableListener}. Changes are reported in batches, e.g. a bulk
+ * registration or a single expiry pass results in a single call.
+ * <p>
+ * Methods are invoked while the registry is locked, so the listener observes changes in the same order as they are
+ * applied. Implementations must be fast and must not block, as they delay event dispatching.
+ * </p>
+ */
+public interface InteractableRegistryListener {
+
+    /**
+     * Called when interactables are registered
+     *
+     * @param interactables Registered interactables, never empty
+     */
+    default void onRegistered(Collection<? extends Interactable<?>> interactables) {
+    }
+
+    /**
+     * Called when interactables are removed
+     *
+     * @param interactables Removed interactables, never empty
+     * @param reason        The reason of removal
+     */
+    default void onRemoved(Collection<? extends Interactable<?>> interactables, RemovalReason reason) {
+    }
+}
@@ -0,0 +1,37 @@
+package enterprises.iwakura.jdainteractables;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.interactions.Interaction;
+
+/**
+ * User, guild and channel an {@link Interactable} belongs to, used to enforce {@link InteractableQuotas}. Zero IDs are
+ * unknown and not counted towards quotas.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor(staticName = "of")
+public final class InteractableScope {
+
+    private final long userId;
+    private final long guildId;
+    private final long channelId;
+
+    /**
+     * Creates the scope of the user, guild and channel of the interaction
+     *
+     * @param interaction The interaction, e.g. the one the interactable is sent in reply to
+     * @return The scope
+     */
+    public static InteractableScope of(@NonNull Interaction interaction) {
+        Guild guild = interaction.getGuild();
+        return of(interaction.getUser().getIdLong(), guild != null ? guild.getIdLong() : 0,
+            interaction.getChannelIdLong());
+    }
+}
@@ -1,7 +1,5 @@
 package enterprises.iwakura.jdainteractables;
 
-import java.util.UUID;
-
 import lombok.NonNull;
 import net.dv8tion.jda.api.components.buttons.Button;
 import net.dv8tion.jda.api.components.buttons.ButtonStyle;
@@ -29,20 +27,29 @@ public final class Interaction<T, E> {
     private StringSelectMenu stringSelectMenu;
     private EntitySelectMenu entitySelectMenu;
 
+    /**
+     * Type resolved once on creation, so dispatching does not need to resolve it again
+     */
+    private final InteractionType type;
+
     private Interaction(Button button) {
         this.button = button;
+        this.type = InteractionType.BUTTON_CLICK;
     }
 
     private Interaction(SelectOption selectOption) {
         this.selectOption = selectOption;
+        this.type = InteractionType.STRING_SELECT_MENU;
     }
 
     private Interaction(StringSelectMenu stringSelectMenu) {
         this.stringSelectMenu = stringSelectMenu;
+        this.type = InteractionType.STRING_SELECT_MENU;
     }
 
     private Interaction(EntitySelectMenu entitySelectMenu) {
         this.entitySelectMenu = entitySelectMenu;
+        this.type = InteractionType.ENTITY_SELECT_MENU;
     }
 
     /**
@@ -52,7 +59,7 @@ public final class Interaction<T, E> {
      * @return {@link Interaction} object
      */
     public static Interaction<Button, ButtonInteractionEvent> asButton(@NonNull Button button) {
-        return new Interaction<>(button.withCustomId(UUID.randomUUID().toString()));
+        return new Interaction<>(button.withCustomId(InteractionIds.generate()));
     }
 
     /**
@@ -63,7 +70,7 @@ public final class Interaction<T, E> {
      * @return {@link Interaction} object
      */
     public static Interaction<Button, ButtonInteractionEvent> asButton(@NonNull ButtonStyle buttonStyle, String label) {
-        return new Interaction<>(Button.of(buttonStyle, UUID.randomUUID().toString(), label));
+        return new Interaction<>(Button.of(buttonStyle, InteractionIds.generate(), label));
     }
 
     /**
@@ -76,7 +83,7 @@ public final class Interaction<T, E> {
      */
     public static Interaction<Button, ButtonInteractionEvent> asButton(@NonNull ButtonStyle buttonStyle, String label,
         boolean disabled) {
-        return new Interaction<>(Button.of(buttonStyle, UUID.randomUUID().toString(), label).withDisabled(disabled));
+        return new Interaction<>(Button.of(buttonStyle, InteractionIds.generate(), label).withDisabled(disabled));
     }
 
 
@@ -90,7 +97,7 @@ public final class Interaction<T, E> {
      */
     public static Interaction<Button, ButtonInteractionEvent> asButton(@NonNull ButtonStyle buttonStyle, String label,
         Emoji emoji) {
-        return new Interaction<>(Button.of(buttonStyle, UUID.randomUUID().toString(), label, emoji));
+        return new Interaction<>(Button.of(buttonStyle, InteractionIds.generate(), label, emoji));
     }
 
     /**
@@ -106,7 +113,7 @@ public final class Interaction<T, E> {
         Emoji emoji,
         boolean disabled) {
         return new Interaction<>(
-            Button.of(buttonStyle, UUID.randomUUID().toString(), label, emoji).withDisabled(disabled));
+            Button.of(buttonStyle, InteractionIds.generate(), label, emoji).withDisabled(disabled));
     }
 
     /**
@@ -117,7 +124,7 @@ public final class Interaction<T, E> {
      * @return {@link Interaction} object
      */
     public static Interaction<Button, ButtonInteractionEvent> asButton(@NonNull ButtonStyle buttonStyle, Emoji emoji) {
-        return new Interaction<>(Button.of(buttonStyle, UUID.randomUUID().toString(), emoji));
+        return new Interaction<>(Button.of(buttonStyle, InteractionIds.generate(), emoji));
     }
 
     /**
@@ -130,7 +137,7 @@ public final class Interaction<T, E> {
      */
     public static Interaction<Button, ButtonInteractionEvent> asButton(@NonNull ButtonStyle buttonStyle, Emoji emoji,
         boolean disabled) {
-        return new Interaction<>(Button.of(buttonStyle, UUID.randomUUID().toString(), emoji).withDisabled(disabled));
+        return new Interaction<>(Button.of(buttonStyle, InteractionIds.generate(), emoji).withDisabled(disabled));
     }
 
     /**
@@ -141,7 +148,7 @@ public final class Interaction<T, E> {
      */
     public static Interaction<SelectOption, StringSelectInteractionEvent> asSelectOption(
         @NonNull SelectOption selectOption) {
-        return new Interaction<>(selectOption.withValue(UUID.randomUUID().toString()));
+        return new Interaction<>(selectOption.withValue(InteractionIds.generate()));
     }
 
     /**
@@ -151,7 +158,7 @@ public final class Interaction<T, E> {
      * @return {@link Interaction} object
      */
     public static Interaction<SelectOption, StringSelectInteractionEvent> asSelectOption(@NonNull String label) {
-        return new Interaction<>(SelectOption.of(label, UUID.randomUUID().toString()));
+        return new Interaction<>(SelectOption.of(label, InteractionIds.generate()));
     }
 
     /**
@@ -163,7 +170,7 @@ public final class Interaction<T, E> {
      */
     public static Interaction<SelectOption, StringSelectInteractionEvent> asSelectOption(@NonNull String label,
         boolean isDefault) {
-        return new Interaction<>(SelectOption.of(label, UUID.randomUUID().toString()).withDefault(isDefault));
+        return new Interaction<>(SelectOption.of(label, InteractionIds.generate()).withDefault(isDefault));
     }
 
     /**
@@ -178,7 +185,7 @@ public final class Interaction<T, E> {
         boolean isDefault,
         @NonNull Emoji emoji) {
         return new Interaction<>(
-            SelectOption.of(label, UUID.randomUUID().toString()).withDefault(isDefault).withEmoji(emoji));
+            SelectOption.of(label, InteractionIds.generate()).withDefault(isDefault).withEmoji(emoji));
     }
 
     /**
@@ -190,7 +197,7 @@ public final class Interaction<T, E> {
      */
     public static Interaction<SelectOption, StringSelectInteractionEvent> asSelectOption(@NonNull String label,
         @NonNull Emoji emoji) {
-        return new Interaction<>(SelectOption.of(label, UUID.randomUUID().toString()).withEmoji(emoji));
+        return new Interaction<>(SelectOption.of(label, InteractionIds.generate()).withEmoji(emoji));
     }
 
     /**
@@ -202,7 +209,7 @@ public final class Interaction<T, E> {
      */
     public static Interaction<SelectOption, StringSelectInteractionEvent> asSelectOption(@NonNull String label,
         @NonNull String description) {
-        return new Interaction<>(SelectOption.of(label, UUID.randomUUID().toString()).withDescription(description));
+        return new Interaction<>(SelectOption.of(label, InteractionIds.generate()).withDescription(description));
     }
 
     /**
@@ -217,7 +224,7 @@ public final class Interaction<T, E> {
         @NonNull String description,
         boolean isDefault) {
         return new Interaction<>(
-            SelectOption.of(label, UUID.randomUUID().toString()).withDescription(description).withDefault(isDefault));
+            SelectOption.of(label, InteractionIds.generate()).withDescription(description).withDefault(isDefault));
     }
 
     /**
@@ -233,7 +240,7 @@ public final class Interaction<T, E> {
         @NonNull String description,
         boolean isDefault,
         @NonNull Emoji emoji) {
-        return new Interaction<>(SelectOption.of(label, UUID.randomUUID().toString())
+        return new Interaction<>(SelectOption.of(label, InteractionIds.generate())
             .withDescription(description)
             .withDefault(isDefault)
             .withEmoji(emoji));
@@ -251,7 +258,7 @@ public final class Interaction<T, E> {
         @NonNull String description,
         @NonNull Emoji emoji) {
         return new Interaction<>(
-            SelectOption.of(label, UUID.randomUUID().toString()).withDescription(description).withEmoji(emoji));
+            SelectOption.of(label, InteractionIds.generate()).withDescription(description).withEmoji(emoji));
     }
 
     /**
@@ -262,7 +269,7 @@ public final class Interaction<T, E> {
      */
     public static Interaction<StringSelectMenu, StringSelectInteractionEvent> asStringSelectMenu(
         @NonNull StringSelectMenu.Builder builder) {
-        return new Interaction<>(builder.setCustomId(UUID.randomUUID().toString()).build());
+        return new Interaction<>(builder.setCustomId(InteractionIds.generate()).build());
     }
 
     /**
@@ -280,7 +287,7 @@ public final class Interaction<T, E> {
         int maxValues,
         @NonNull SelectOption... options
     ) {
-        return new Interaction<>(StringSelectMenu.create(UUID.randomUUID().toString())
+        return new Interaction<>(StringSelectMenu.create(InteractionIds.generate())
             .setPlaceholder(placeholder)
             .setMinValues(minValues)
             .setMaxValues(maxValues)
@@ -296,7 +303,7 @@ public final class Interaction<T, E> {
      */
     public static Interaction<EntitySelectMenu, EntitySelectInteractionEvent> asEntitySelectMenu(
         @NonNull EntitySelectMenu.Builder builder) {
-        return new Interaction<>(builder.setCustomId(UUID.randomUUID().toString()).build());
+        return new Interaction<>(builder.setCustomId(InteractionIds.generate()).build());
     }
 
     /**
@@ -312,7 +319,7 @@ public final class Interaction<T, E> {
         @NonNull SelectTarget type,
         @NonNull SelectTarget... types
     ) {
-        return new Interaction<>(EntitySelectMenu.create(UUID.randomUUID().toString(), type, types)
+        return new Interaction<>(EntitySelectMenu.create(InteractionIds.generate(), type, types)
             .setPlaceholder(placeholder)
             .build());
     }
@@ -334,13 +341,67 @@ public final class Interaction<T, E> {
         @NonNull SelectTarget type,
         @NonNull SelectTarget... types
     ) {
-        return new Interaction<>(EntitySelectMenu.create(UUID.randomUUID().toString(), type, types)
+        return new Interaction<>(EntitySelectMenu.create(InteractionIds.generate(), type, types)
             .setPlaceholder(placeholder)
             .setMinValues(minValues)
             .setMaxValues(maxValues)
             .build());
     }
 
+    /**
+     * Creates {@link Interaction} with Button of existing custom ID, e.g. when restoring an interactable from a
+     * registry snapshot. The button is only used to match interactions, so its style and label are placeholders.
+     *
+     * @param customId Custom ID of the existing button
+     * @return {@link Interaction} object
+     */
+    public static Interaction<Button, ButtonInteractionEvent> asExistingButton(@NonNull String customId) {
+        return new Interaction<>(Button.of(ButtonStyle.SECONDARY, customId, customId));
+    }
+
+    /**
+     * Creates {@link Interaction} with Select Option of existing value, e.g. when restoring an interactable from a
+     * registry snapshot. The option is only used to match interactions, so its label is a placeholder.
+     *
+     * @param value Value of the existing select option
+     * @return {@link Interaction} object
+     */
+    public static Interaction<SelectOption, StringSelectInteractionEvent> asExistingSelectOption(
+        @NonNull String value
+    ) {
+        return new Interaction<>(SelectOption.of(value, value));
+    }
+
+    /**
+     * Creates {@link Interaction} with String Select Menu of existing custom ID, e.g. when restoring an interactable
+     * from a registry snapshot
+     *
+     * @param customId Custom ID of the existing string select menu
+     * @return {@link Interaction} object
+     */
+    public static Interaction<StringSelectMenu, StringSelectInteractionEvent> asExistingStringSelectMenu(
+        @NonNull String customId
+    ) {
+        return new Interaction<>(StringSelectMenu.create(customId).addOption(customId, customId).build());
+    }
+
+    /**
+     * Creates {@link Interaction} with Entity Select Menu of existing custom ID, e.g. when restoring an interactable
+     * from a registry snapshot
+     *
+     * @param customId Custom ID of the existing entity select menu
+     * @param type     The type of entities that can be selected
+     * @param types    Additional types of entities that can be selected
+     * @return {@link Interaction} object
+     */
+    public static Interaction<EntitySelectMenu, EntitySelectInteractionEvent> asExistingEntitySelectMenu(
+        @NonNull String customId,
+        @NonNull SelectTarget type,
+        @NonNull SelectTarget... types
+    ) {
+        return new Interaction<>(EntitySelectMenu.create(customId, type, types).build());
+    }
+
     /**
      * Determines if {@link Interaction} is Button
      *
@@ -460,27 +521,37 @@ public final class Interaction<T, E> {
     }
 
     /**
-     * Gets {@link Interaction}'s type
+     * Gets the ID identifying this {@link Interaction}. For Select Options, it's the value of the option, otherwise it's
+     * the custom ID of the component.
      *
-     * @return Non-null {@link InteractionType}
+     * @return The ID, may be null if the component has no custom ID (e.g. link buttons)
      */
-    public InteractionType getType() {
+    public String getCustomId() {
         if (isButton()) {
-            return InteractionType.BUTTON_CLICK;
+            return button.getCustomId();
         }
 
         if (isSelectOption()) {
-            return InteractionType.STRING_SELECT_MENU;
+            return selectOption.getValue();
         }
 
-        if (isEntitySelectMenu()) {
-            return InteractionType.ENTITY_SELECT_MENU;
+        if (isStringSelectMenu()) {
+            return stringSelectMenu.getCustomId();
         }
 
-        if (isStringSelectMenu()) {
-            return InteractionType.STRING_SELECT_MENU;
+        if (isEntitySelectMenu()) {
+            return entitySelectMenu.getCustomId();
         }
 
         throw new IllegalStateException("Interaction is neither Button nor Select Option nor Entity Select Menu");
     }
+
+    /**
+     * Gets {@link Interaction}'s type
+     *
+     * @return Non-null {@link InteractionType}
+     */
+    public InteractionType getType() {
+        return type;
+    }
 }
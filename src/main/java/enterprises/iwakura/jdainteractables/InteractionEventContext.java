@@ -1,7 +1,6 @@
 package enterprises.iwakura.jdainteractables;
 
 import lombok.Data;
-import lombok.RequiredArgsConstructor;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Message;
@@ -19,41 +18,79 @@ import net.dv8tion.jda.api.interactions.callbacks.IModalCallback;
 import net.dv8tion.jda.api.interactions.callbacks.IReplyCallback;
 import net.dv8tion.jda.api.interactions.components.ComponentInteraction;
 import net.dv8tion.jda.api.interactions.modals.ModalInteraction;
+import net.dv8tion.jda.api.utils.TimeUtil;
 
 /**
  * Context for {@link Interaction} received from JDA. Wraps JDA's {@link Interaction} and provides utility methods to
  * work with it.
  */
 @Data
-@RequiredArgsConstructor
 public class InteractionEventContext {
 
+    /**
+     * Time Discord gives to acknowledge an interaction after its creation
+     */
+    public static final long ACKNOWLEDGEMENT_DEADLINE_MILLIS = 3000;
+
     private final Interaction interaction;
 
+    /**
+     * Type of the interaction resolved once on creation, null if the interaction is of an unknown type
+     */
+    private final InteractionType interactionType;
+
+    /**
+     * Custom ID of the interaction resolved once on creation, see {@link #getCustomId()}
+     */
+    private final String customId;
+
+    /**
+     * Whether this interaction is traced, see {@link InteractionTracing}
+     */
+    private boolean sampled;
+
+    /**
+     * Creates new {@link InteractionEventContext}. The interaction type and custom ID are resolved right away, so the
+     * dispatching does not resolve them again for each interactable.
+     *
+     * @param interaction JDA's interaction
+     */
+    public InteractionEventContext(Interaction interaction) {
+        this.interaction = interaction;
+        this.interactionType = resolveInteractionType(interaction);
+        this.customId = resolveCustomId(interaction);
+    }
+
     /**
      * Returns type of this interaction event.<br> This method DOES NOT return JDA's
      * {@link net.dv8tion.jda.api.interactions.InteractionType}!
      *
      * @return Non-null {@link InteractionType}
+     * @throws IllegalStateException if the interaction is of an unknown type
      */
     public InteractionType getInteractionType() {
-        if (isButtonInteraction()) {
-            return InteractionType.BUTTON_CLICK;
-        }
-
-        if (isStringSelectMenuInteraction()) {
-            return InteractionType.STRING_SELECT_MENU;
-        }
-
-        if (isEntitySelectMenuInteraction()) {
-            return InteractionType.ENTITY_SELECT_MENU;
+        if (interactionType == null) {
+            throw new IllegalStateException("Unknown interaction type");
         }
+        return interactionType;
+    }
 
-        if (isModalInteraction()) {
-            return InteractionType.MODAL_SUBMITTED;
-        }
+    /**
+     * Gets the creation time of the interaction, decoded from its snowflake ID
+     *
+     * @return Creation time in milliseconds since the epoch
+     */
+    public long getCreatedAtMillis() {
+        return (interaction.getIdLong() >>> TimeUtil.TIMESTAMP_OFFSET) + TimeUtil.DISCORD_EPOCH;
+    }
 
-        throw new IllegalStateException("Unknown interaction type");
+    /**
+     * Gets the time by which the interaction must be acknowledged, see {@link #ACKNOWLEDGEMENT_DEADLINE_MILLIS}
+     *
+     * @return Deadline in milliseconds since the epoch
+     */
+    public long getDeadlineMillis() {
+        return getCreatedAtMillis() + ACKNOWLEDGEMENT_DEADLINE_MILLIS;
     }
 
     /**
@@ -62,7 +99,7 @@ public class InteractionEventContext {
      * @return true if this interaction event is of type {@link InteractionType#BUTTON_CLICK}
      */
     public boolean isButtonInteraction() {
-        return interaction instanceof ButtonInteractionEvent;
+        return interactionType == InteractionType.BUTTON_CLICK;
     }
 
     /**
@@ -71,7 +108,7 @@ public class InteractionEventContext {
      * @return true if this interaction event is of type {@link InteractionType#STRING_SELECT_MENU}
      */
     public boolean isStringSelectMenuInteraction() {
-        return interaction instanceof StringSelectInteractionEvent;
+        return interactionType == InteractionType.STRING_SELECT_MENU;
     }
 
     /**
@@ -80,7 +117,7 @@ public class InteractionEventContext {
      * @return true if this interaction event is of type {@link InteractionType#ENTITY_SELECT_MENU}
      */
     public boolean isEntitySelectMenuInteraction() {
-        return interaction instanceof EntitySelectInteractionEvent;
+        return interactionType == InteractionType.ENTITY_SELECT_MENU;
     }
 
     /**
@@ -89,7 +126,7 @@ public class InteractionEventContext {
      * @return true if this interaction event is of type {@link InteractionType#MODAL_SUBMITTED}
      */
     public boolean isModalInteraction() {
-        return interaction instanceof ModalInteractionEvent;
+        return interactionType == InteractionType.MODAL_SUBMITTED;
     }
 
     /**
@@ -106,6 +143,43 @@ public class InteractionEventContext {
         return ((IDeferrableCallback) interaction).getHook();
     }
 
+    /**
+     * Returns the custom ID of the interacted component, or the modal ID for {@link InteractionType#MODAL_SUBMITTED}
+     *
+     * @return Custom ID or null if the interaction is not of {@link ComponentInteraction} or {@link ModalInteraction}
+     */
+    public String getCustomId() {
+        return customId;
+    }
+
+    /**
+     * Acknowledges the interaction if it was not acknowledged yet. Component interactions and modals submitted from
+     * a message are acknowledged with deferred edit, so the message stays the same. Other modals are acknowledged
+     * with deferred ephemeral reply.
+     *
+     * @return true if the interaction was acknowledged by this call, false if it was already acknowledged or cannot
+     * be acknowledged
+     */
+    public boolean acknowledge() {
+        if (interaction == null || interaction.isAcknowledged()) {
+            return false;
+        }
+
+        try (InteractionSpan ignored = InteractionTracing.trace(TraceStage.REPLY, this)) {
+            if (interaction instanceof ModalInteraction && ((ModalInteraction) interaction).getMessage() == null) {
+                ((ModalInteraction) interaction).deferReply(true).queue();
+                return true;
+            }
+
+            if (interaction instanceof IMessageEditCallback) {
+                ((IMessageEditCallback) interaction).deferEdit().queue();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Returns Message ID of interacted message.
      *
@@ -302,4 +376,36 @@ public class InteractionEventContext {
 
         return (ModalInteractionEvent) interaction;
     }
+
+    private static InteractionType resolveInteractionType(Interaction interaction) {
+        if (interaction instanceof ButtonInteractionEvent) {
+            return InteractionType.BUTTON_CLICK;
+        }
+
+        if (interaction instanceof StringSelectInteractionEvent) {
+            return InteractionType.STRING_SELECT_MENU;
+        }
+
+        if (interaction instanceof EntitySelectInteractionEvent) {
+            return InteractionType.ENTITY_SELECT_MENU;
+        }
+
+        if (interaction instanceof ModalInteractionEvent) {
+            return InteractionType.MODAL_SUBMITTED;
+        }
+
+        return null;
+    }
+
+    private static String resolveCustomId(Interaction interaction) {
+        if (interaction instanceof ComponentInteraction) {
+            return ((ComponentInteraction) interaction).getCustomId();
+        }
+
+        if (interaction instanceof ModalInteraction) {
+            return ((ModalInteraction) interaction).getModalId();
+        }
+
+        return null;
+    }
 }
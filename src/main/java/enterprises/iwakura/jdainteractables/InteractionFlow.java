@@ -0,0 +1,80 @@
+package enterprises.iwakura.jdainteractables;
+
+/**
+ * Reactive-streams interfaces used by {@link InteractionPublisher}. These mirror {@code java.util.concurrent.Flow}
+ * one-to-one, so they can be bridged to {@code Flow} (or any Reactive Streams library) with a trivial adapter. They
+ * are declared here because JDA Interactables targets Java 8, where {@code Flow} is not available.
+ */
+public final class InteractionFlow {
+
+    private InteractionFlow() {
+    }
+
+    /**
+     * A producer of items received by {@link Subscriber}s
+     *
+     * @param <T> The type of published items
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+
+        /**
+         * Adds the given subscriber. {@link Subscriber#onSubscribe(Subscription)} is invoked before any other signal.
+         *
+         * @param subscriber The subscriber
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items published by {@link Publisher}. Signals are never invoked concurrently.
+     *
+     * @param <T> The type of received items
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Invoked before any other signal for the given subscription
+         *
+         * @param subscription The subscription
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Invoked with the next item, only if there's outstanding demand
+         *
+         * @param item The item
+         */
+        void onNext(T item);
+
+        /**
+         * Invoked when the subscription fails. No other signals will be invoked afterward.
+         *
+         * @param throwable The error
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Invoked when no more items will be published. No other signals will be invoked afterward.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link between {@link Publisher} and {@link Subscriber}
+     */
+    public interface Subscription {
+
+        /**
+         * Adds the given number of items to the outstanding demand
+         *
+         * @param n The number of items, must be positive
+         */
+        void request(long n);
+
+        /**
+         * Cancels the subscription. Already buffered items may be dropped.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,111 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.UUID;
+
+/**
+ * Generates custom IDs of components and modals created by this library.
+ * <p>
+ * By default, custom IDs are random UUIDs. When the node ID of this process is set using {@link #setNodeId(int)},
+ * custom IDs are prefixed with the node ID, e.g. {@code ~1f.c0ffee00-...}, so any process that receives the interaction
+ * can tell which process owns the matching interactable and forward it using an {@link InteractionRouter}.
+ * </p>
+ */
+public final class InteractionIds {
+
+    /**
+     * Marks custom IDs carrying the owner node ID
+     */
+    public static final char NODE_PREFIX = '~';
+
+    /**
+     * Separates the owner node ID from the rest of the custom ID
+     */
+    public static final char NODE_SEPARATOR = '.';
+
+    /**
+     * Maximum node ID, node IDs are encoded as at most three hexadecimal digits
+     */
+    public static final int MAX_NODE_ID = 0xFFF;
+
+    /**
+     * Node ID used when the node ID was not set
+     */
+    public static final int NO_NODE = -1;
+
+    private static volatile int nodeId = NO_NODE;
+
+    private InteractionIds() {
+    }
+
+    /**
+     * Gets the node ID of this process
+     *
+     * @return The node ID or {@link #NO_NODE} if not set
+     */
+    public static int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Sets the node ID of this process. Must be set before any interactable is created, as already generated custom
+     * IDs are not changed.
+     *
+     * @param nodeId The node ID, between 0 and {@link #MAX_NODE_ID}, or {@link #NO_NODE} to disable node prefixes
+     * @throws IllegalArgumentException if the node ID is out of range
+     */
+    public static void setNodeId(int nodeId) {
+        if (nodeId != NO_NODE && (nodeId < 0 || nodeId > MAX_NODE_ID)) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        InteractionIds.nodeId = nodeId;
+    }
+
+    /**
+     * Generates a new random custom ID owned by this process
+     *
+     * @return The custom ID
+     */
+    public static String generate() {
+        return withNode(UUID.randomUUID().toString());
+    }
+
+    /**
+     * Prefixes the ID with the node ID of this process, if set
+     *
+     * @param id The ID
+     * @return The ID with node prefix, or the ID itself if the node ID is not set
+     */
+    public static String withNode(String id) {
+        int currentNodeId = nodeId;
+        if (currentNodeId == NO_NODE) {
+            return id;
+        }
+        return NODE_PREFIX + Integer.toHexString(currentNodeId) + NODE_SEPARATOR + id;
+    }
+
+    /**
+     * Parses the owner node ID from the custom ID
+     *
+     * @param customId The custom ID, may be null
+     * @return The owner node ID or {@link #NO_NODE} if the custom ID carries no node ID
+     */
+    public static int parseNodeId(String customId) {
+        if (customId == null || customId.length() < 3 || customId.charAt(0) != NODE_PREFIX) {
+            return NO_NODE;
+        }
+
+        int result = 0;
+        for (int index = 1; index < customId.length() && index <= 4; index++) {
+            char character = customId.charAt(index);
+            if (character == NODE_SEPARATOR) {
+                return index > 1 ? result : NO_NODE;
+            }
+            int digit = Character.digit(character, 16);
+            if (digit == -1) {
+                return NO_NODE;
+            }
+            result = (result << 4) | digit;
+        }
+        return NO_NODE;
+    }
+}
@@ -0,0 +1,343 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import enterprises.iwakura.jdainteractables.InteractionFlow.Publisher;
+import enterprises.iwakura.jdainteractables.InteractionFlow.Subscriber;
+import enterprises.iwakura.jdainteractables.InteractionFlow.Subscription;
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Publishes processed interactions of an {@link Interactable} as a stream with demand-based backpressure. Each
+ * subscriber has its own bounded buffer. When a subscriber falls behind and its buffer is full, further interactions
+ * are dropped for that subscriber and acknowledged using {@link InteractionEventContext#acknowledge()}, so the user
+ * does not see "This interaction failed". Interactions still buffered when a subscription is cancelled, fails or
+ * completes, e.g. once the interactable expires, are acknowledged the same way.
+ * <p>
+ * Items are delivered on the {@link #getExecutor()}, never on the thread that processes the interaction.
+ * </p>
+ */
+@Slf4j
+@Getter
+@Setter
+public class InteractionPublisher implements Publisher<InteractionEventContext> {
+
+    /**
+     * Default maximum number of buffered interactions per subscriber
+     */
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 256;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final List<InteractionSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Executor used to deliver items to subscribers. Applies to subsequent subscribers.
+     */
+    protected Executor executor;
+
+    /**
+     * Maximum number of buffered interactions per subscriber. Applies to subsequent subscribers.
+     */
+    protected int maxBufferSize;
+
+    @Setter(AccessLevel.NONE)
+    protected volatile boolean closed;
+
+    /**
+     * Creates new {@link InteractionPublisher} with specified executor and buffer size
+     *
+     * @param executor      Executor used to deliver items to subscribers
+     * @param maxBufferSize Maximum number of buffered interactions per subscriber
+     */
+    public InteractionPublisher(Executor executor, int maxBufferSize) {
+        if (maxBufferSize <= 0) {
+            throw new IllegalArgumentException("Max buffer size must be positive");
+        }
+        this.executor = executor;
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /**
+     * Creates new {@link InteractionPublisher} with {@link ForkJoinPool#commonPool()} as the executor and
+     * {@link #DEFAULT_MAX_BUFFER_SIZE} as the buffer size
+     */
+    public InteractionPublisher() {
+        this(ForkJoinPool.commonPool(), DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super InteractionEventContext> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null");
+        }
+
+        InteractionSubscription subscription = new InteractionSubscription(subscriber, executor, maxBufferSize);
+        subscriptions.add(subscription);
+        subscription.start(closed);
+    }
+
+    /**
+     * Submits the interaction to all current subscribers
+     *
+     * @param ctx The interaction event context
+     */
+    public void submit(InteractionEventContext ctx) {
+        if (closed) {
+            return;
+        }
+
+        for (InteractionSubscription subscription : subscriptions) {
+            subscription.offer(ctx);
+        }
+    }
+
+    /**
+     * Completes all subscriptions. Subsequent subscribers are completed immediately.
+     */
+    public void close() {
+        closed = true;
+        for (InteractionSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * Determines if there's any subscriber
+     *
+     * @return true if there's at least one subscriber
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Gets the number of current subscribers
+     *
+     * @return Number of subscribers
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Subscription with its own bounded buffer. All signals are delivered by a single drain task at a time.
+     */
+    protected class InteractionSubscription implements Subscription, Runnable {
+
+        protected final Subscriber<? super InteractionEventContext> subscriber;
+        protected final Executor executor;
+        protected final int maxBufferSize;
+        protected final ArrayDeque<InteractionEventContext> buffer = new ArrayDeque<>();
+
+        protected long demand;
+        protected boolean subscribed;
+        protected boolean draining;
+        protected boolean completed;
+        protected boolean cancelled;
+        protected Throwable error;
+
+        protected InteractionSubscription(
+            Subscriber<? super InteractionEventContext> subscriber,
+            Executor executor,
+            int maxBufferSize
+        ) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+            this.maxBufferSize = maxBufferSize;
+        }
+
+        protected void start(boolean alreadyClosed) {
+            synchronized (this) {
+                completed |= alreadyClosed;
+            }
+            schedule();
+        }
+
+        protected void offer(InteractionEventContext ctx) {
+            boolean overflow;
+            synchronized (this) {
+                if (cancelled || completed) {
+                    return;
+                }
+                overflow = buffer.size() >= maxBufferSize;
+                if (!overflow) {
+                    buffer.add(ctx);
+                }
+            }
+
+            if (overflow) {
+                log.debug("Subscriber {} is falling behind, acknowledging interaction", subscriber);
+                ctx.acknowledge();
+                return;
+            }
+
+            schedule();
+        }
+
+        protected void complete() {
+            synchronized (this) {
+                completed = true;
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    error = new IllegalArgumentException("Requested demand must be positive, got " + n);
+                } else {
+                    demand += n;
+                    if (demand < 0) {
+                        // Overflowed, treat as unbounded
+                        demand = Long.MAX_VALUE;
+                    }
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            List<InteractionEventContext> dropped;
+            synchronized (this) {
+                cancelled = true;
+                dropped = takeBuffered();
+            }
+            subscriptions.remove(this);
+            acknowledgeDropped(dropped);
+        }
+
+        /**
+         * Removes all buffered interactions. Must be called while holding this subscription's monitor.
+         *
+         * @return The removed interactions
+         */
+        protected List<InteractionEventContext> takeBuffered() {
+            if (buffer.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<InteractionEventContext> dropped = new ArrayList<>(buffer);
+            buffer.clear();
+            return dropped;
+        }
+
+        /**
+         * Acknowledges buffered interactions that won't be delivered, so the users don't see "This interaction failed"
+         *
+         * @param dropped The interactions
+         */
+        protected void acknowledgeDropped(List<InteractionEventContext> dropped) {
+            if (dropped.isEmpty()) {
+                return;
+            }
+            log.debug("Acknowledging {} interactions buffered for subscriber {} that won't be delivered",
+                dropped.size(), subscriber);
+            for (InteractionEventContext ctx : dropped) {
+                try {
+                    ctx.acknowledge();
+                } catch (RuntimeException exception) {
+                    log.warn("Failed to acknowledge interaction dropped for subscriber {}", subscriber, exception);
+                }
+            }
+        }
+
+        protected void schedule() {
+            synchronized (this) {
+                if (draining || cancelled) {
+                    return;
+                }
+                draining = true;
+            }
+
+            try {
+                executor.execute(this);
+            } catch (RuntimeException exception) {
+                log.error("Failed to schedule delivery for subscriber {}, cancelling", subscriber, exception);
+                cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                boolean subscribeNow;
+                synchronized (this) {
+                    subscribeNow = !subscribed;
+                    subscribed = true;
+                }
+                if (subscribeNow) {
+                    subscriber.onSubscribe(this);
+                }
+
+                while (true) {
+                    InteractionEventContext next = null;
+                    Throwable failure = null;
+                    List<InteractionEventContext> dropped = Collections.emptyList();
+                    synchronized (this) {
+                        if (cancelled) {
+                            draining = false;
+                            return;
+                        }
+                        if (error != null) {
+                            failure = error;
+                            cancelled = true;
+                            dropped = takeBuffered();
+                        } else if (demand > 0 && !buffer.isEmpty()) {
+                            next = buffer.poll();
+                            if (demand != Long.MAX_VALUE) {
+                                demand--;
+                            }
+                        } else if (completed) {
+                            // Interactions the subscriber hasn't requested are never delivered
+                            cancelled = true;
+                            dropped = takeBuffered();
+                        } else {
+                            draining = false;
+                            return;
+                        }
+                    }
+
+                    if (next != null) {
+                        subscriber.onNext(next);
+                        continue;
+                    }
+
+                    // Terminal signal
+                    subscriptions.remove(this);
+                    acknowledgeDropped(dropped);
+                    if (failure != null) {
+                        subscriber.onError(failure);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                    synchronized (this) {
+                        draining = false;
+                    }
+                    return;
+                }
+            } catch (Throwable throwable) {
+                log.error("Subscriber {} threw an exception, cancelling its subscription", subscriber, throwable);
+                synchronized (this) {
+                    draining = false;
+                }
+                cancel();
+            }
+        }
+    }
+}
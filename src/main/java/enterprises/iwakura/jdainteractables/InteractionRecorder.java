@@ -0,0 +1,484 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Guild;
+
+/**
+ * Recorder of a compact, anonymized binary trace of interaction events and registry changes, used to replay
+ * production workloads against a listener, see {@link InteractableListener#setInteractionRecorder(InteractionRecorder)}
+ * and {@link InteractionTraceReader}.
+ * <p>
+ * Custom IDs, user IDs, guild IDs and interactable IDs are replaced by 64-bit hashes, so the trace keeps which events
+ * target the same component, user or guild without revealing them. The hashes are HMAC-SHA256 keyed with the salt and
+ * truncated to 64 bits, so knowing some IDs and their hashes reveals neither the salt nor other IDs. Keep the salt
+ * secret; anyone knowing it can test guessed IDs against the trace. Recorders created with the same salt produce the
+ * same hashes.
+ * </p><p>
+ * Recording copies the IDs of the event or interactable into a bounded queue; hashing and writing happen on the
+ * recorder's writer thread, so neither the thread receiving events nor the registry lock waits for them. Records are
+ * dropped and counted if the queue is full, see {@link #getDroppedRecords()}. Once writing fails, the recorder logs
+ * the failure and stops recording.
+ * </p>
+ */
+@Slf4j
+public class InteractionRecorder implements InteractableRegistryListener, AutoCloseable {
+
+    /**
+     * Magic number at the start of each trace
+     */
+    public static final int MAGIC = 0x4A444154; // JDAT
+
+    /**
+     * Version of the format
+     */
+    public static final byte FORMAT_VERSION = 1;
+
+    /**
+     * Default number of records waiting for the writer thread
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1 << 14;
+
+    static final byte RECORD_END = 0;
+    static final byte RECORD_DISPATCH = 1;
+    static final byte RECORD_REGISTER = 2;
+    static final byte RECORD_REMOVE = 3;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int DRAIN_BATCH_SIZE = 256;
+    private static final String HASH_ALGORITHM = "HmacSHA256";
+    private static final byte DOMAIN_ID = 0;
+    private static final byte DOMAIN_STRING = 1;
+    private static final AtomicInteger writerCounter = new AtomicInteger();
+
+    @Getter
+    protected final long salt;
+
+    /**
+     * Key of the hashes derived from the salt
+     */
+    protected final SecretKeySpec hashKey;
+
+    /**
+     * Per-thread hashers, as {@link Mac} is not thread-safe
+     */
+    protected final ThreadLocal<Hasher> hashers = ThreadLocal.withInitial(this::createHasher);
+
+    /**
+     * Written only by the {@link #writer} thread once it's started
+     */
+    protected final DataOutputStream output;
+    protected final long startNanos;
+
+    /**
+     * Records waiting for the {@link #writer} thread, ended by {@link TraceRecord#END}
+     */
+    protected final BlockingQueue<TraceRecord> queue;
+    protected final Thread writer;
+
+    /**
+     * Number of records dropped because the queue was full
+     */
+    protected final AtomicLong droppedRecords = new AtomicLong();
+
+    /**
+     * Time of the last written record in microseconds since the start, used only by the {@link #writer} thread
+     */
+    protected long lastElapsedMicros;
+
+    /**
+     * Whether no more records are accepted, after {@link #close()} or a failed write
+     */
+    protected volatile boolean closed;
+
+    /**
+     * Whether {@link #close()} was called, guarded by this recorder's monitor
+     */
+    protected boolean closeRequested;
+
+    /**
+     * Failure of closing the stream by the {@link #writer} thread, rethrown by {@link #close()}
+     */
+    protected volatile IOException closeFailure;
+
+    /**
+     * Creates new {@link InteractionRecorder} with a random salt
+     *
+     * @param outputStream Stream to write the trace to, closed by {@link #close()}
+     * @throws IOException if the header could not be written
+     */
+    public InteractionRecorder(@NonNull OutputStream outputStream) throws IOException {
+        this(outputStream, new SecureRandom().nextLong());
+    }
+
+    /**
+     * Creates new {@link InteractionRecorder}
+     *
+     * @param outputStream Stream to write the trace to, closed by {@link #close()}
+     * @param salt         Salt of the hashes
+     * @throws IOException if the header could not be written
+     */
+    public InteractionRecorder(@NonNull OutputStream outputStream, long salt) throws IOException {
+        this(outputStream, salt, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates new {@link InteractionRecorder}
+     *
+     * @param outputStream  Stream to write the trace to, closed by {@link #close()}
+     * @param salt          Salt of the hashes
+     * @param queueCapacity Maximum number of records waiting for the writer thread
+     * @throws IOException if the header could not be written
+     */
+    public InteractionRecorder(@NonNull OutputStream outputStream, long salt, int queueCapacity) throws IOException {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        this.salt = salt;
+        this.hashKey = new SecretKeySpec(ByteBuffer.allocate(Long.BYTES).putLong(salt).array(), HASH_ALGORITHM);
+        this.output = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+        this.startNanos = System.nanoTime();
+        output.writeInt(MAGIC);
+        output.writeByte(FORMAT_VERSION);
+        output.writeLong(System.currentTimeMillis());
+
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::drain, "Interaction-Recorder-" + writerCounter.incrementAndGet());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Records an interaction event received by the listener, the event must be of a known interaction type
+     *
+     * @param ctx The interaction event
+     */
+    public void recordDispatch(InteractionEventContext ctx) {
+        if (closed) {
+            return;
+        }
+        TraceRecord record = new TraceRecord(RECORD_DISPATCH, elapsedMicros());
+        record.ordinal = ctx.getInteractionType().ordinal();
+        record.key = ctx.getCustomId();
+        record.userId = ctx.getUser().getIdLong();
+        Guild guild = ctx.getGuild();
+        if (guild != null) {
+            record.guildId = guild.getIdLong();
+            record.inGuild = true;
+        }
+        enqueue(record);
+    }
+
+    @Override
+    public void onRegistered(Collection<? extends Interactable<?>> interactables) {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long elapsedMicros = elapsedMicros();
+        for (Interactable<?> interactable : interactables) {
+            TraceRecord record = new TraceRecord(RECORD_REGISTER, elapsedMicros);
+            record.ordinal = InteractionTraceReader.InteractableKind.of(interactable).ordinal();
+            record.key = interactable.getId().toString();
+            record.remainingMillis = Math.max(0, interactable.getExpiresAtMillis() - now);
+            record.customIds = new ArrayList<>(interactable.getCustomIds());
+            enqueue(record);
+        }
+    }
+
+    @Override
+    public void onRemoved(Collection<? extends Interactable<?>> interactables, RemovalReason reason) {
+        if (closed) {
+            return;
+        }
+        long elapsedMicros = elapsedMicros();
+        for (Interactable<?> interactable : interactables) {
+            TraceRecord record = new TraceRecord(RECORD_REMOVE, elapsedMicros);
+            record.ordinal = reason.ordinal();
+            record.key = interactable.getId().toString();
+            enqueue(record);
+        }
+    }
+
+    /**
+     * Gets the number of records dropped because the writer thread could not keep up
+     *
+     * @return Number of dropped records
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    /**
+     * Waits for the writer thread to write the queued records, then writes the end of the trace and closes the stream
+     *
+     * @throws IOException if the trace could not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closeRequested) {
+            return;
+        }
+        closeRequested = true;
+        closed = true;
+        try {
+            queue.put(TraceRecord.END);
+            writer.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the interaction trace");
+        }
+        if (closeFailure != null) {
+            throw closeFailure;
+        }
+    }
+
+    /**
+     * Hashes the value using HMAC-SHA256 keyed with the salt, truncated to 64 bits
+     *
+     * @param value The value
+     * @return The hash
+     */
+    public long hash(@NonNull String value) {
+        Hasher hasher = hashers.get();
+        hasher.mac.update(DOMAIN_STRING);
+        hasher.mac.update(value.getBytes(StandardCharsets.UTF_8));
+        return hasher.finish();
+    }
+
+    /**
+     * Hashes the ID using HMAC-SHA256 keyed with the salt, truncated to 64 bits. IDs and strings are hashed in separate
+     * domains, so an ID and its decimal string have unrelated hashes.
+     *
+     * @param id The ID
+     * @return The hash, zero only by collision
+     */
+    public long hash(long id) {
+        Hasher hasher = hashers.get();
+        hasher.mac.update(DOMAIN_ID);
+        hasher.input.putLong(0, id);
+        hasher.mac.update(hasher.input.array(), 0, Long.BYTES);
+        return hasher.finish();
+    }
+
+    /**
+     * Creates the hasher of the current thread
+     *
+     * @return The hasher
+     */
+    protected Hasher createHasher() {
+        try {
+            Mac mac = Mac.getInstance(HASH_ALGORITHM);
+            mac.init(hashKey);
+            return new Hasher(mac);
+        } catch (GeneralSecurityException exception) {
+            // Every Java platform is required to support HmacSHA256
+            throw new IllegalStateException("Could not create " + HASH_ALGORITHM + " hasher", exception);
+        }
+    }
+
+    /**
+     * @return Time since the start in microseconds
+     */
+    protected long elapsedMicros() {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    /**
+     * Queues the record for the writer thread, dropping it if the queue is full
+     *
+     * @param record The record
+     */
+    protected void enqueue(TraceRecord record) {
+        if (!queue.offer(record) && droppedRecords.getAndIncrement() == 0) {
+            log.warn("Interaction trace queue is full, dropping records; see InteractionRecorder#getDroppedRecords()");
+        }
+    }
+
+    /**
+     * Writes queued records until {@link TraceRecord#END}, run by the {@link #writer} thread
+     */
+    protected void drain() {
+        List<TraceRecord> batch = new ArrayList<>(DRAIN_BATCH_SIZE);
+        boolean failed = false;
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException exception) {
+                // Only close() stops the writer, so queued records are not lost
+                continue;
+            }
+            queue.drainTo(batch, DRAIN_BATCH_SIZE - 1);
+
+            for (TraceRecord record : batch) {
+                if (record == TraceRecord.END) {
+                    if (!failed) {
+                        finish();
+                    }
+                    return;
+                }
+                if (!failed) {
+                    try {
+                        write(record);
+                    } catch (IOException | RuntimeException exception) {
+                        fail(exception);
+                        failed = true;
+                    }
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Hashes the IDs of the record and writes it
+     *
+     * @param record The record
+     * @throws IOException if the record could not be written
+     */
+    protected void write(TraceRecord record) throws IOException {
+        output.writeByte(record.kind);
+        RegistrySnapshot.writeVarLong(output, Math.max(0, record.elapsedMicros - lastElapsedMicros));
+        lastElapsedMicros = Math.max(lastElapsedMicros, record.elapsedMicros);
+
+        switch (record.kind) {
+            case RECORD_DISPATCH:
+                output.writeByte(record.ordinal);
+                output.writeLong(record.key != null ? hash(record.key) : 0);
+                output.writeLong(hash(record.userId));
+                output.writeLong(record.inGuild ? hash(record.guildId) : 0);
+                break;
+            case RECORD_REGISTER:
+                output.writeByte(record.ordinal);
+                output.writeLong(hash(record.key));
+                RegistrySnapshot.writeVarLong(output, record.remainingMillis);
+                RegistrySnapshot.writeVarLong(output, record.customIds.size());
+                for (String customId : record.customIds) {
+                    output.writeLong(hash(customId));
+                }
+                break;
+            default:
+                output.writeByte(record.ordinal);
+                output.writeLong(hash(record.key));
+                break;
+        }
+    }
+
+    /**
+     * Writes the end of the trace and closes the stream, keeping the failure for {@link #close()}
+     */
+    protected void finish() {
+        try {
+            output.writeByte(RECORD_END);
+            output.close();
+        } catch (IOException exception) {
+            closeFailure = exception;
+            try {
+                output.close();
+            } catch (IOException closeException) {
+                exception.addSuppressed(closeException);
+            }
+        }
+    }
+
+    /**
+     * Stops recording after a failed write
+     *
+     * @param exception The failure
+     */
+    protected void fail(Exception exception) {
+        log.error("Failed to write interaction trace, recording stopped", exception);
+        closed = true;
+        try {
+            output.close();
+        } catch (IOException closeException) {
+            exception.addSuppressed(closeException);
+        }
+    }
+
+    /**
+     * Event or registry change waiting for the writer thread, holding the IDs before hashing
+     */
+    protected static final class TraceRecord {
+
+        /**
+         * Marks the end of the queue, see {@link #close()}
+         */
+        private static final TraceRecord END = new TraceRecord(RECORD_END, 0);
+
+        private final byte kind;
+        private final long elapsedMicros;
+
+        /**
+         * Interaction type, interactable kind or removal reason
+         */
+        private int ordinal;
+
+        /**
+         * Custom ID of the event or ID of the interactable, hashed as a string
+         */
+        private String key;
+        private long userId;
+        private long guildId;
+        private boolean inGuild;
+        private long remainingMillis;
+        private List<String> customIds;
+
+        private TraceRecord(byte kind, long elapsedMicros) {
+            this.kind = kind;
+            this.elapsedMicros = elapsedMicros;
+        }
+    }
+
+    /**
+     * {@link Mac} of a thread with buffers reused across hashes
+     */
+    protected static final class Hasher {
+
+        private final Mac mac;
+        private final ByteBuffer input = ByteBuffer.allocate(Long.BYTES);
+        private final ByteBuffer digest;
+
+        private Hasher(Mac mac) {
+            this.mac = mac;
+            this.digest = ByteBuffer.allocate(mac.getMacLength());
+        }
+
+        /**
+         * Finishes the hash, resetting the {@link Mac} for the next one
+         *
+         * @return First 64 bits of the digest
+         */
+        private long finish() {
+            try {
+                mac.doFinal(digest.array(), 0);
+            } catch (ShortBufferException exception) {
+                throw new IllegalStateException(exception);
+            }
+            return digest.getLong(0);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport forwarding interactions between processes (nodes). When an {@link InteractableListener} receives an
+ * interaction whose custom ID is owned by another node (see {@link InteractionIds}), it acknowledges the interaction
+ * and sends it to the owner node in the binary form of {@link ForwardedInteraction}.
+ * <p>
+ * Implementations may use any message broker or RPC. See {@link LoopbackInteractionRouter} for an in-process
+ * implementation.
+ * </p>
+ */
+public interface InteractionRouter {
+
+    /**
+     * Registers the receiver of interactions forwarded to the node
+     *
+     * @param nodeId   The node ID
+     * @param receiver Receiver of the encoded {@link ForwardedInteraction}s
+     */
+    void register(int nodeId, Consumer<byte[]> receiver);
+
+    /**
+     * Unregisters the receiver of the node
+     *
+     * @param nodeId The node ID
+     */
+    void unregister(int nodeId);
+
+    /**
+     * Sends the encoded {@link ForwardedInteraction} to the node
+     *
+     * @param nodeId  The target node ID
+     * @param payload The encoded {@link ForwardedInteraction}
+     * @throws IllegalStateException if the interaction could not be sent
+     */
+    void send(int nodeId, byte[] payload);
+}
@@ -0,0 +1,38 @@
+package enterprises.iwakura.jdainteractables;
+
+/**
+ * Span of a single {@link TraceStage}, created by {@link InteractionTracer}. Spans are ended exactly once, on the
+ * thread that started them unless stated otherwise by the stage.
+ */
+public interface InteractionSpan extends AutoCloseable {
+
+    /**
+     * Span that does nothing, used when the interaction is not sampled
+     */
+    InteractionSpan NOOP = new InteractionSpan() {
+        @Override
+        public void end() {
+        }
+    };
+
+    /**
+     * Records an exception thrown within the span
+     *
+     * @param throwable The exception
+     */
+    default void recordException(Throwable throwable) {
+    }
+
+    /**
+     * Ends the span
+     */
+    void end();
+
+    /**
+     * Ends the span, allows using spans in try-with-resources
+     */
+    @Override
+    default void close() {
+        end();
+    }
+}
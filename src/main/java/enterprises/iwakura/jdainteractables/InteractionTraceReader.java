@@ -0,0 +1,228 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import enterprises.iwakura.jdainteractables.components.InteractableMessage;
+import enterprises.iwakura.jdainteractables.components.InteractableModal;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Streaming reader of traces written by {@link InteractionRecorder}
+ */
+public class InteractionTraceReader implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    protected final DataInputStream input;
+
+    /**
+     * Wall-clock time the recording started at in milliseconds since the epoch
+     */
+    @Getter
+    protected final long startedAtMillis;
+
+    protected long elapsedMicros;
+    protected boolean finished;
+
+    /**
+     * Creates new {@link InteractionTraceReader} and reads the header of the trace
+     *
+     * @param inputStream Stream to read from, closed by {@link #close()}
+     * @throws IOException              if the header could not be read
+     * @throws IllegalArgumentException if the stream is not a trace of a supported version
+     */
+    public InteractionTraceReader(@NonNull InputStream inputStream) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(inputStream, BUFFER_SIZE));
+        if (input.readInt() != InteractionRecorder.MAGIC) {
+            throw new IllegalArgumentException("Not an interaction trace");
+        }
+        byte version = input.readByte();
+        if (version != InteractionRecorder.FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported interaction trace version: " + version);
+        }
+        this.startedAtMillis = input.readLong();
+    }
+
+    /**
+     * Reads the next record. A trace whose recorder was not closed, e.g. after a crash, ends at the last complete
+     * record.
+     *
+     * @return The record or null at the end of the trace
+     * @throws IOException if the trace could not be read
+     */
+    public TraceRecord next() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        byte kind;
+        try {
+            kind = input.readByte();
+        } catch (EOFException exception) {
+            finished = true;
+            return null;
+        }
+        if (kind == InteractionRecorder.RECORD_END) {
+            finished = true;
+            return null;
+        }
+
+        try {
+            elapsedMicros += RegistrySnapshot.readVarLong(input);
+            switch (kind) {
+                case InteractionRecorder.RECORD_DISPATCH: {
+                    InteractionType type = InteractionType.values()[input.readByte()];
+                    return new DispatchRecord(elapsedMicros, type, input.readLong(), input.readLong(),
+                        input.readLong());
+                }
+                case InteractionRecorder.RECORD_REGISTER: {
+                    InteractableKind interactableKind = InteractableKind.values()[input.readByte()];
+                    long interactableHash = input.readLong();
+                    long expiryMillis = RegistrySnapshot.readVarLong(input);
+                    long[] customIdHashes = new long[(int) RegistrySnapshot.readVarLong(input)];
+                    for (int index = 0; index < customIdHashes.length; index++) {
+                        customIdHashes[index] = input.readLong();
+                    }
+                    return new RegisterRecord(elapsedMicros, interactableKind, interactableHash, expiryMillis,
+                        customIdHashes);
+                }
+                case InteractionRecorder.RECORD_REMOVE: {
+                    RemovalReason reason = RemovalReason.values()[input.readByte()];
+                    return new RemoveRecord(elapsedMicros, reason, input.readLong());
+                }
+                default:
+                    throw new IOException("Unknown interaction trace record: " + kind);
+            }
+        } catch (EOFException exception) {
+            // Truncated last record
+            finished = true;
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * Kind of a recorded interactable
+     */
+    public enum InteractableKind {
+        OTHER,
+        MESSAGE,
+        MODAL;
+
+        /**
+         * Gets the kind of the interactable
+         *
+         * @param interactable The interactable
+         * @return The kind
+         */
+        public static InteractableKind of(Interactable<?> interactable) {
+            if (interactable instanceof InteractableMessage) {
+                return MESSAGE;
+            }
+            if (interactable instanceof InteractableModal) {
+                return MODAL;
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * Record of a trace
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public abstract static class TraceRecord {
+
+        /**
+         * Time of the record in microseconds since the recording started
+         */
+        private final long elapsedMicros;
+    }
+
+    /**
+     * Interaction event received by the listener
+     */
+    @Getter
+    public static final class DispatchRecord extends TraceRecord {
+
+        private final InteractionType interactionType;
+        private final long customIdHash;
+        private final long userHash;
+
+        /**
+         * Hash of the guild ID, zero for direct messages
+         */
+        private final long guildHash;
+
+        DispatchRecord(
+            long elapsedMicros,
+            InteractionType interactionType,
+            long customIdHash,
+            long userHash,
+            long guildHash
+        ) {
+            super(elapsedMicros);
+            this.interactionType = interactionType;
+            this.customIdHash = customIdHash;
+            this.userHash = userHash;
+            this.guildHash = guildHash;
+        }
+    }
+
+    /**
+     * Interactable registered to the registry
+     */
+    @Getter
+    public static final class RegisterRecord extends TraceRecord {
+
+        private final InteractableKind interactableKind;
+        private final long interactableHash;
+
+        /**
+         * Remaining expiry at registration in milliseconds
+         */
+        private final long expiryMillis;
+        private final long[] customIdHashes;
+
+        RegisterRecord(
+            long elapsedMicros,
+            InteractableKind interactableKind,
+            long interactableHash,
+            long expiryMillis,
+            long[] customIdHashes
+        ) {
+            super(elapsedMicros);
+            this.interactableKind = interactableKind;
+            this.interactableHash = interactableHash;
+            this.expiryMillis = expiryMillis;
+            this.customIdHashes = customIdHashes;
+        }
+    }
+
+    /**
+     * Interactable removed from the registry
+     */
+    @Getter
+    public static final class RemoveRecord extends TraceRecord {
+
+        private final RemovalReason reason;
+        private final long interactableHash;
+
+        RemoveRecord(long elapsedMicros, RemovalReason reason, long interactableHash) {
+            super(elapsedMicros);
+            this.reason = reason;
+            this.interactableHash = interactableHash;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package enterprises.iwakura.jdainteractables;
+
+/**
+ * Tracing SPI of interaction processing. The tracer is called around each {@link TraceStage} of sampled interactions;
+ * span attributes such as the interaction type, custom ID and user ID are taken from the
+ * {@link InteractionEventContext}.
+ * <p>
+ * Set the tracer using {@link InteractionTracing#setTracer(InteractionTracer)}.
+ * </p>
+ */
+public interface InteractionTracer {
+
+    /**
+     * Starts the span of the stage
+     *
+     * @param stage The stage
+     * @param ctx   The interaction event context
+     * @return The span, never null
+     */
+    InteractionSpan startSpan(TraceStage stage, InteractionEventContext ctx);
+
+    /**
+     * Records a sweep of expired interactables. Sweeps run every second on the expiry timer and are not sampled.
+     *
+     * @param durationNanos Duration of the sweep in nanoseconds, excluding expiry callbacks which run asynchronously
+     * @param expiredCount  Number of interactables that have expired
+     * @param registrySize  Number of interactables remaining in the registry
+     */
+    default void recordExpirySweep(long durationNanos, int expiredCount, int registrySize) {
+    }
+}
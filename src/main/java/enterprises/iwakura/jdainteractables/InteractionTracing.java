@@ -0,0 +1,89 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.NonNull;
+
+/**
+ * Configuration of tracing of interaction processing, see {@link InteractionTracer}.
+ * <p>
+ * The sampling decision is made once per interaction when it's received, unsampled interactions only cost a field
+ * read per traced stage. Tracing is disabled until a tracer is set.
+ * </p>
+ */
+public final class InteractionTracing {
+
+    private static volatile InteractionTracer tracer;
+    private static volatile double sampleRate = 1;
+
+    private InteractionTracing() {
+    }
+
+    /**
+     * Sets the tracer used by this library
+     *
+     * @param tracer The tracer, or null to disable tracing
+     */
+    public static void setTracer(InteractionTracer tracer) {
+        InteractionTracing.tracer = tracer;
+    }
+
+    /**
+     * Gets the tracer used by this library
+     *
+     * @return The tracer or null if tracing is disabled
+     */
+    public static InteractionTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Sets the fraction of interactions to trace, 1.0 by default
+     *
+     * @param sampleRate The sample rate between 0.0 and 1.0
+     * @throws IllegalArgumentException if the sample rate is out of range
+     */
+    public static void setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0.0 and 1.0: " + sampleRate);
+        }
+        InteractionTracing.sampleRate = sampleRate;
+    }
+
+    /**
+     * Gets the fraction of interactions to trace
+     *
+     * @return The sample rate between 0.0 and 1.0
+     */
+    public static double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Decides whether a new interaction should be traced
+     *
+     * @return true if the interaction should be traced
+     */
+    public static boolean shouldSample() {
+        if (tracer == null) {
+            return false;
+        }
+        double rate = sampleRate;
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Starts the span of the stage if the interaction is sampled
+     *
+     * @param stage The stage
+     * @param ctx   The interaction event context
+     * @return The span, or {@link InteractionSpan#NOOP} if the interaction is not sampled
+     */
+    public static InteractionSpan trace(@NonNull TraceStage stage, InteractionEventContext ctx) {
+        if (ctx == null || !ctx.isSampled()) {
+            return InteractionSpan.NOOP;
+        }
+        InteractionTracer current = tracer;
+        return current == null ? InteractionSpan.NOOP : current.startSpan(stage, ctx);
+    }
+}
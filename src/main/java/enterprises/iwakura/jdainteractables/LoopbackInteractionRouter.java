@@ -0,0 +1,33 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-process {@link InteractionRouter} delivering forwarded interactions to receivers registered in the same JVM.
+ * Useful for tests and for running multiple nodes within a single process.
+ */
+public class LoopbackInteractionRouter implements InteractionRouter {
+
+    protected final Map<Integer, Consumer<byte[]>> receivers = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(int nodeId, Consumer<byte[]> receiver) {
+        receivers.put(nodeId, receiver);
+    }
+
+    @Override
+    public void unregister(int nodeId) {
+        receivers.remove(nodeId);
+    }
+
+    @Override
+    public void send(int nodeId, byte[] payload) {
+        Consumer<byte[]> receiver = receivers.get(nodeId);
+        if (receiver == null) {
+            throw new IllegalStateException("No receiver registered for node " + nodeId);
+        }
+        receiver.accept(payload);
+    }
+}
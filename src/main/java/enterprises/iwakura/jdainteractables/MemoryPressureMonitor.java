@@ -0,0 +1,258 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Shortens expiry of interactables while the heap is running low. The monitor sets collection usage thresholds of the
+ * heap memory pools (see {@link MemoryPoolMXBean#setCollectionUsageThreshold(long)}) and is checked by the expiry
+ * sweep of {@link InteractableListener} every second.
+ * <p>
+ * Each garbage collection that leaves a pool above its threshold raises the pressure level by one, up to
+ * {@link #MAX_LEVEL}; each check finding all pools below their thresholds lowers it by one. At level {@code n}, the
+ * effective expiry duration of interactables is their {@link Interactable#getExpiryDuration()} divided by
+ * {@code 2^n}. Interactables past their effective expiry which have been idle for at least {@link #getMinIdle()} are
+ * removed, the least recently used first and at most {@link #getMaxEvictionsPerSweep()} per sweep, and their expiry
+ * callbacks are run with {@link RemovalReason#MEMORY_PRESSURE}. Once the pressure subsides, interactables expire
+ * normally again.
+ * </p><p>
+ * The monitor is disabled by default, enable it using {@link #setThreshold(double)}. The thresholds are global to the
+ * JVM, so the monitor overwrites thresholds set by other code. While there's no pressure, a check costs a read of
+ * each heap pool's threshold state; under pressure, each sweep scans a copy of the registry.
+ * </p>
+ */
+@Slf4j
+public class MemoryPressureMonitor {
+
+    /**
+     * Highest pressure level, expiry durations are shortened to a sixteenth at most
+     */
+    public static final int MAX_LEVEL = 4;
+
+    @Getter
+    protected final InteractableMetrics metrics;
+
+    /**
+     * Threshold as a fraction of the maximum size of the heap pools, zero if disabled
+     */
+    @Getter
+    protected volatile double threshold;
+
+    /**
+     * Minimum time since the last interaction of an interactable before it may be removed under pressure
+     */
+    @Getter
+    protected volatile Duration minIdle = Duration.ofSeconds(30);
+
+    /**
+     * Maximum number of interactables removed under pressure per sweep
+     */
+    @Getter
+    protected volatile int maxEvictionsPerSweep = 1000;
+
+    /**
+     * Current pressure level, zero if there's no pressure
+     */
+    @Getter
+    protected volatile int level;
+
+    /**
+     * Watched heap pools and the number of times their thresholds were exceeded when last checked. Guarded by the
+     * monitor of this object.
+     */
+    protected final Map<MemoryPoolMXBean, Long> pools = new IdentityHashMap<>();
+
+    /**
+     * Creates new {@link MemoryPressureMonitor}
+     *
+     * @param metrics Metrics to record memory pressure to
+     */
+    public MemoryPressureMonitor(@NonNull InteractableMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the threshold of the heap pools and enables the monitor. Heap pools without a maximum size or without
+     * support for collection usage thresholds are not watched.
+     *
+     * @param threshold Fraction of the maximum size of each heap pool, e.g. 0.85, or zero to disable the monitor
+     */
+    public synchronized void setThreshold(double threshold) {
+        if (!(threshold >= 0 && threshold < 1)) {
+            throw new IllegalArgumentException("Threshold must be at least 0 and less than 1: " + threshold);
+        }
+
+        for (MemoryPoolMXBean pool : pools.keySet()) {
+            pool.setCollectionUsageThreshold(0);
+        }
+        pools.clear();
+        this.threshold = threshold;
+        if (threshold == 0) {
+            changeLevel(0);
+            return;
+        }
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getUsage();
+            if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported() || usage == null
+                || usage.getMax() <= 0) {
+                continue;
+            }
+            pool.setCollectionUsageThreshold((long) (usage.getMax() * threshold));
+            pools.put(pool, pool.getCollectionUsageThresholdCount());
+        }
+        if (pools.isEmpty()) {
+            log.warn("No heap memory pool supports collection usage thresholds, memory pressure won't be detected");
+        }
+    }
+
+    /**
+     * Sets the minimum time since the last interaction of an interactable before it may be removed under pressure
+     *
+     * @param minIdle Non-negative duration, 30 seconds by default
+     */
+    public void setMinIdle(@NonNull Duration minIdle) {
+        if (minIdle.isNegative()) {
+            throw new IllegalArgumentException("Minimum idle time must not be negative: " + minIdle);
+        }
+        this.minIdle = minIdle;
+    }
+
+    /**
+     * Sets the maximum number of interactables removed under pressure per sweep
+     *
+     * @param maxEvictionsPerSweep Positive number, 1000 by default
+     */
+    public void setMaxEvictionsPerSweep(int maxEvictionsPerSweep) {
+        if (maxEvictionsPerSweep <= 0) {
+            throw new IllegalArgumentException("Maximum evictions must be positive: " + maxEvictionsPerSweep);
+        }
+        this.maxEvictionsPerSweep = maxEvictionsPerSweep;
+    }
+
+    /**
+     * Checks if the monitor is enabled
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return threshold > 0;
+    }
+
+    /**
+     * Checks the heap pools and updates the pressure level, called by the expiry sweep
+     *
+     * @return true if the heap is under pressure
+     */
+    public synchronized boolean check() {
+        if (pools.isEmpty()) {
+            return false;
+        }
+
+        boolean exceeded = false;
+        boolean collectedAboveThreshold = false;
+        for (Map.Entry<MemoryPoolMXBean, Long> entry : pools.entrySet()) {
+            MemoryPoolMXBean pool = entry.getKey();
+            if (!pool.isCollectionUsageThresholdExceeded()) {
+                continue;
+            }
+            exceeded = true;
+            // Only a new collection ending above the threshold raises the level, the state of a pool changes only
+            // when it's collected
+            long count = pool.getCollectionUsageThresholdCount();
+            if (count != entry.getValue()) {
+                entry.setValue(count);
+                collectedAboveThreshold = true;
+            }
+        }
+
+        if (collectedAboveThreshold) {
+            changeLevel(Math.min(MAX_LEVEL, level + 1));
+        } else if (!exceeded) {
+            changeLevel(Math.max(0, level - 1));
+        }
+        return level > 0;
+    }
+
+    /**
+     * Gets the expiry duration of the interactable shortened by the current pressure level
+     *
+     * @param interactable The interactable
+     * @return Effective expiry duration in milliseconds
+     */
+    public long getEffectiveExpiryMillis(@NonNull Interactable<?> interactable) {
+        return interactable.getExpiryDuration().toMillis() >> level;
+    }
+
+    /**
+     * Checks if the interactable may be removed at the current pressure level
+     *
+     * @param interactable The interactable
+     * @param now          Current time in milliseconds since the epoch
+     * @return true if the interactable is past its effective expiry and idle
+     */
+    public boolean isEvictable(Interactable<?> interactable, long now) {
+        return level > 0
+            && now - interactable.getCreatedAtMillis() >= getEffectiveExpiryMillis(interactable)
+            && now - interactable.getLastInteractedAtMillis() >= minIdle.toMillis();
+    }
+
+    /**
+     * Selects interactables to remove at the current pressure level, the least recently used first
+     *
+     * @param snapshot Copy of the registered interactables
+     * @param now      Current time in milliseconds since the epoch
+     * @return Interactables to remove, at most {@link #getMaxEvictionsPerSweep()}
+     */
+    public List<Interactable<?>> selectEvictions(Interactable<?>[] snapshot, long now) {
+        if (level == 0) {
+            return Collections.emptyList();
+        }
+
+        List<Interactable<?>> candidates = new ArrayList<>();
+        for (Interactable<?> interactable : snapshot) {
+            if (isEvictable(interactable, now)) {
+                candidates.add(interactable);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(interactable -> interactable.getLastInteractedAtMillis()));
+        int limit = maxEvictionsPerSweep;
+        return candidates.size() > limit ? new ArrayList<>(candidates.subList(0, limit)) : candidates;
+    }
+
+    /**
+     * Changes the pressure level. Must be called while holding the monitor of this object.
+     *
+     * @param newLevel The new level
+     */
+    protected void changeLevel(int newLevel) {
+        int oldLevel = level;
+        if (newLevel == oldLevel) {
+            return;
+        }
+        level = newLevel;
+
+        if (oldLevel == 0) {
+            metrics.recordMemoryPressureEpisode();
+            log.warn("Heap is running low, shortening expiry of interactables to 1/{}", 1 << newLevel);
+        } else if (newLevel == 0) {
+            log.info("Heap pressure has subsided, interactables expire normally again");
+        } else {
+            log.debug("Memory pressure level changed from {} to {}", oldLevel, newLevel);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.List;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import lombok.Getter;
+
+/**
+ * Thrown when registering interactables would exceed {@link InteractableQuotas} with the
+ * {@link InteractableQuotas.Policy#REJECT} policy
+ */
+@Getter
+public class QuotaExceededException extends IllegalStateException {
+
+    /**
+     * Interactables that were not registered
+     */
+    private final List<Interactable<?>> rejected;
+
+    /**
+     * Creates new {@link QuotaExceededException}
+     *
+     * @param message  The message
+     * @param rejected Interactables that were not registered
+     */
+    public QuotaExceededException(String message, List<Interactable<?>> rejected) {
+        super(message);
+        this.rejected = rejected;
+    }
+}
@@ -0,0 +1,302 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Point-in-time snapshot of the registry describing what the registered interactables cost, created by
+ * {@link InteractableListener#introspect(int)}.
+ * <p>
+ * Capturing the snapshot only copies the registered interactables while the registry is locked; the statistics are
+ * computed afterward, so introspection does not block dispatching.
+ * </p><p>
+ * Nominal bytes (see {@link Interactable#estimateNominalBytes()}) are a fixed weighting per interactable, rule,
+ * callback and interaction plus the lengths of the strings an interactable holds. They are not measured: objects
+ * captured by handlers and callbacks, which usually dominate the heap retained by an interactable, are not counted, so
+ * the heaviest interactables are mostly those with the most interactions. Use a heap dump to measure retained
+ * sizes.
+ * </p><p>
+ * The snapshot references the interactables it describes; don't keep it around longer than needed.
+ * </p>
+ */
+@Getter
+public class RegistryIntrospection {
+
+    /**
+     * Number of the heaviest interactables kept by {@link InteractableListener#introspect()}
+     */
+    public static final int DEFAULT_TOP_COUNT = 10;
+
+    private static final Comparator<Entry> BY_NOMINAL_BYTES = Comparator.comparingLong(entry -> entry.nominalBytes);
+
+    /**
+     * Time the snapshot was captured at in milliseconds since the epoch
+     */
+    private final long capturedAtMillis;
+
+    /**
+     * Number of registered interactables
+     */
+    private final int count;
+
+    /**
+     * Nominal bytes of all registered interactables
+     */
+    private final long nominalBytes;
+
+    /**
+     * Statistics by class names of the interactables, the heaviest first
+     */
+    private final Map<String, Group> byType;
+
+    /**
+     * Statistics by guild IDs of the interactables' scopes, the heaviest first. Interactables without a scope or a
+     * guild are grouped under zero.
+     */
+    private final Map<Long, Group> byGuild;
+
+    /**
+     * Statistics by the time since the interactables were created
+     */
+    private final Map<DurationBucket, Group> byAge;
+
+    /**
+     * Histogram of the time remaining until the interactables expire. Expired interactables not swept yet are counted
+     * as {@link DurationBucket#UNDER_1_MINUTE}.
+     */
+    private final Map<DurationBucket, Group> byRemainingTtl;
+
+    /**
+     * The interactables with the most nominal bytes, the heaviest first
+     */
+    private final List<Entry> heaviest;
+
+    /**
+     * All registered interactables in the order of registration
+     */
+    @Getter(AccessLevel.NONE)
+    private final List<Entry> entries;
+
+    /**
+     * Computes the statistics of the registered interactables
+     *
+     * @param snapshot         Copy of the registered interactables
+     * @param topCount         Number of the heaviest interactables to keep
+     * @param capturedAtMillis Time the copy was made at
+     */
+    protected RegistryIntrospection(Interactable<?>[] snapshot, int topCount, long capturedAtMillis) {
+        if (topCount < 0) {
+            throw new IllegalArgumentException("Top count must not be negative: " + topCount);
+        }
+        this.capturedAtMillis = capturedAtMillis;
+        this.count = snapshot.length;
+
+        Map<String, Group> byType = new HashMap<>();
+        Map<Long, Group> byGuild = new HashMap<>();
+        Map<DurationBucket, Group> byAge = new EnumMap<>(DurationBucket.class);
+        Map<DurationBucket, Group> byRemainingTtl = new EnumMap<>(DurationBucket.class);
+        for (DurationBucket bucket : DurationBucket.values()) {
+            byAge.put(bucket, new Group());
+            byRemainingTtl.put(bucket, new Group());
+        }
+        PriorityQueue<Entry> heaviest = new PriorityQueue<>(Math.max(1, topCount), BY_NOMINAL_BYTES);
+        List<Entry> entries = new ArrayList<>(snapshot.length);
+
+        long nominalBytes = 0;
+        for (Interactable<?> interactable : snapshot) {
+            Entry entry = new Entry(interactable, capturedAtMillis);
+            entries.add(entry);
+            nominalBytes += entry.nominalBytes;
+
+            byType.computeIfAbsent(entry.type, ignored -> new Group()).add(entry);
+            byGuild.computeIfAbsent(entry.guildId, ignored -> new Group()).add(entry);
+            byAge.get(DurationBucket.of(entry.ageMillis)).add(entry);
+            byRemainingTtl.get(DurationBucket.of(entry.remainingTtlMillis)).add(entry);
+
+            if (topCount > 0) {
+                heaviest.add(entry);
+                if (heaviest.size() > topCount) {
+                    heaviest.poll();
+                }
+            }
+        }
+
+        List<Entry> sortedHeaviest = new ArrayList<>(heaviest);
+        sortedHeaviest.sort(BY_NOMINAL_BYTES.reversed());
+
+        this.nominalBytes = nominalBytes;
+        this.byType = Collections.unmodifiableMap(sortByNominalBytes(byType));
+        this.byGuild = Collections.unmodifiableMap(sortByNominalBytes(byGuild));
+        this.byAge = Collections.unmodifiableMap(byAge);
+        this.byRemainingTtl = Collections.unmodifiableMap(byRemainingTtl);
+        this.heaviest = Collections.unmodifiableList(sortedHeaviest);
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Gets a page of the interactables matching the filter in the order of registration
+     *
+     * @param filter Filter of the interactables
+     * @param offset Number of matching interactables to skip
+     * @param limit  Maximum number of interactables to return
+     * @return Unmodifiable page of the matching interactables
+     */
+    public List<Entry> query(@NonNull Predicate<? super Entry> filter, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative: " + offset + ", " + limit);
+        }
+        List<Entry> page = new ArrayList<>(Math.min(limit, entries.size()));
+        int skipped = 0;
+        for (Entry entry : entries) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (!filter.test(entry)) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                page.add(entry);
+            }
+        }
+        return Collections.unmodifiableList(page);
+    }
+
+    /**
+     * Counts the interactables matching the filter
+     *
+     * @param filter Filter of the interactables
+     * @return Number of the matching interactables
+     */
+    public int count(@NonNull Predicate<? super Entry> filter) {
+        int matching = 0;
+        for (Entry entry : entries) {
+            if (filter.test(entry)) {
+                matching++;
+            }
+        }
+        return matching;
+    }
+
+    private static <K> Map<K, Group> sortByNominalBytes(Map<K, Group> groups) {
+        List<Map.Entry<K, Group>> sorted = new ArrayList<>(groups.entrySet());
+        sorted.sort(Comparator.comparingLong((Map.Entry<K, Group> group) -> group.getValue().nominalBytes)
+            .reversed());
+        Map<K, Group> result = new LinkedHashMap<>();
+        for (Map.Entry<K, Group> group : sorted) {
+            result.put(group.getKey(), group.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RegistryIntrospection{count=" + count + ", nominalBytes=" + nominalBytes + ", byType=" + byType
+            + "}";
+    }
+
+    /**
+     * Number and nominal bytes of a group of interactables
+     */
+    @Getter
+    public static final class Group {
+
+        private int count;
+        private long nominalBytes;
+
+        private void add(Entry entry) {
+            count++;
+            nominalBytes += entry.nominalBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Group{count=" + count + ", nominalBytes=" + nominalBytes + "}";
+        }
+    }
+
+    /**
+     * Registered interactable as seen when the snapshot was captured
+     */
+    @Getter
+    public static final class Entry {
+
+        private final Interactable<?> interactable;
+
+        /**
+         * Class name of the interactable
+         */
+        private final String type;
+
+        /**
+         * Guild ID of the interactable's scope, zero if unknown
+         */
+        private final long guildId;
+
+        private final long ageMillis;
+
+        /**
+         * Time remaining until the interactable expires, negative if it has expired but was not swept yet
+         */
+        private final long remainingTtlMillis;
+
+        private final long nominalBytes;
+
+        private Entry(Interactable<?> interactable, long capturedAtMillis) {
+            InteractableScope scope = interactable.getScope();
+            this.interactable = interactable;
+            this.type = interactable.getClass().getName();
+            this.guildId = scope != null ? scope.getGuildId() : 0;
+            this.ageMillis = capturedAtMillis - interactable.getCreatedAtMillis();
+            this.remainingTtlMillis = interactable.getExpiresAtMillis() - capturedAtMillis;
+            this.nominalBytes = interactable.estimateNominalBytes();
+        }
+    }
+
+    /**
+     * Bucket of durations used by the age and remaining TTL statistics
+     */
+    public enum DurationBucket {
+        UNDER_1_MINUTE(TimeUnit.MINUTES.toMillis(1)),
+        UNDER_5_MINUTES(TimeUnit.MINUTES.toMillis(5)),
+        UNDER_15_MINUTES(TimeUnit.MINUTES.toMillis(15)),
+        UNDER_1_HOUR(TimeUnit.HOURS.toMillis(1)),
+        OVER_1_HOUR(Long.MAX_VALUE);
+
+        private final long upperBoundMillis;
+
+        DurationBucket(long upperBoundMillis) {
+            this.upperBoundMillis = upperBoundMillis;
+        }
+
+        /**
+         * Gets the bucket of the duration
+         *
+         * @param millis Duration in milliseconds, negative durations fall into the first bucket
+         * @return The bucket
+         */
+        public static DurationBucket of(long millis) {
+            for (DurationBucket bucket : values()) {
+                if (millis < bucket.upperBoundMillis) {
+                    return bucket;
+                }
+            }
+            return OVER_1_HOUR;
+        }
+    }
+}
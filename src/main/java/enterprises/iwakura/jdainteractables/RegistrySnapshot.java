@@ -0,0 +1,285 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compact binary snapshot of live interactables, used to keep interactables working across restarts. See
+ * {@link InteractableListener#writeSnapshot(OutputStream)} and
+ * {@link InteractableListener#restoreSnapshot(InputStream, Map)}.
+ * <p>
+ * Only interactables with a {@link Interactable#getHandlerKey()} are written. For each of them, the snapshot contains
+ * its ID, custom IDs, remaining expiry and handler key. Handlers themselves can't be serialized, so on restore the
+ * {@link Restorer} registered for the handler key recreates the interactable with its handlers.
+ * </p><p>
+ * The format is streamed and deduplicates handler keys using a dictionary written before the entries.
+ * </p>
+ */
+@Slf4j
+public final class RegistrySnapshot {
+
+    /**
+     * Magic number at the start of each snapshot
+     */
+    public static final int MAGIC = 0x4A444153; // JDAS
+
+    /**
+     * Version of the format
+     */
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private RegistrySnapshot() {
+    }
+
+    /**
+     * Writes the snapshot of the interactables. Interactables without a handler key or already expired are skipped.
+     *
+     * @param interactables Interactables to write
+     * @param outputStream  Stream to write to, not closed by this method
+     * @return Number of written interactables
+     * @throws IOException if the snapshot could not be written
+     */
+    public static int write(
+        @NonNull Collection<? extends Interactable<?>> interactables,
+        @NonNull OutputStream outputStream
+    ) throws IOException {
+        long now = System.currentTimeMillis();
+        List<Interactable<?>> entries = new ArrayList<>(interactables.size());
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+
+        for (Interactable<?> interactable : interactables) {
+            String handlerKey = interactable.getHandlerKey();
+            if (handlerKey == null || interactable.getExpiresAtMillis() <= now) {
+                continue;
+            }
+            if (dictionary.putIfAbsent(handlerKey, keys.size()) == null) {
+                keys.add(handlerKey);
+            }
+            entries.add(interactable);
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+        output.writeInt(MAGIC);
+        output.writeByte(FORMAT_VERSION);
+        output.writeLong(now);
+
+        writeVarLong(output, keys.size());
+        for (String key : keys) {
+            output.writeUTF(key);
+        }
+
+        writeVarLong(output, entries.size());
+        for (Interactable<?> interactable : entries) {
+            UUID id = interactable.getId();
+            output.writeLong(id.getMostSignificantBits());
+            output.writeLong(id.getLeastSignificantBits());
+            writeVarLong(output, Math.max(0, interactable.getExpiresAtMillis() - now));
+            writeVarLong(output, dictionary.get(interactable.getHandlerKey()));
+
+            Collection<String> customIds = interactable.getCustomIds();
+            writeVarLong(output, customIds.size());
+            for (String customId : customIds) {
+                output.writeUTF(customId);
+            }
+        }
+
+        output.flush();
+        return entries.size();
+    }
+
+    /**
+     * Reads the snapshot and restores its interactables using the restorers. Entries that expired while the snapshot
+     * was stored and entries without a restorer are skipped. Restored interactables are not registered.
+     *
+     * The stream is read up to the end of the snapshot only, so the snapshot can be embedded in a larger stream. It is
+     * read without buffering; wrap it in a {@link BufferedInputStream} if it is not buffered already and holds only
+     * the snapshot.
+     *
+     * @param inputStream Stream to read from, not closed by this method
+     * @param restorers   Restorers by handler keys
+     * @return Restored interactables with the remaining expiry set
+     * @throws IOException              if the snapshot could not be read or is malformed
+     * @throws IllegalArgumentException if the stream is not a snapshot of a supported version
+     */
+    public static List<Interactable<?>> read(
+        @NonNull InputStream inputStream,
+        @NonNull Map<String, ? extends Restorer> restorers
+    ) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream);
+        if (input.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a registry snapshot");
+        }
+        byte version = input.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported registry snapshot version: " + version);
+        }
+
+        // Time spent while the snapshot was stored counts towards the expiry
+        long elapsed = Math.max(0, System.currentTimeMillis() - input.readLong());
+
+        // Counts are only trusted as far as the stream holds the elements, so arrays are never sized by them
+        int keyCount = readCount(input, Integer.MAX_VALUE);
+        List<String> keys = new ArrayList<>(Math.min(keyCount, INITIAL_CAPACITY));
+        List<Restorer> keyRestorers = new ArrayList<>(Math.min(keyCount, INITIAL_CAPACITY));
+        for (int index = 0; index < keyCount; index++) {
+            String key = input.readUTF();
+            keys.add(key);
+            keyRestorers.add(restorers.get(key));
+        }
+
+        int entryCount = readCount(input, Integer.MAX_VALUE);
+        List<Interactable<?>> restored = new ArrayList<>(Math.min(entryCount, INITIAL_CAPACITY));
+        int skipped = 0;
+
+        for (int index = 0; index < entryCount; index++) {
+            long mostSignificantBits = input.readLong();
+            long leastSignificantBits = input.readLong();
+            long remainingMillis = readVarLong(input) - elapsed;
+            int keyIndex = readCount(input, keyCount - 1);
+
+            int customIdCount = readCount(input, Integer.MAX_VALUE);
+            Restorer restorer = keyRestorers.get(keyIndex);
+            if (remainingMillis <= 0 || restorer == null) {
+                for (int customIdIndex = 0; customIdIndex < customIdCount; customIdIndex++) {
+                    skipUTF(input);
+                }
+                skipped++;
+                continue;
+            }
+
+            List<String> customIds;
+            if (customIdCount == 1) {
+                customIds = Collections.singletonList(input.readUTF());
+            } else {
+                customIds = new ArrayList<>(Math.min(customIdCount, INITIAL_CAPACITY));
+                for (int customIdIndex = 0; customIdIndex < customIdCount; customIdIndex++) {
+                    customIds.add(input.readUTF());
+                }
+            }
+
+            Entry entry = new Entry(new UUID(mostSignificantBits, leastSignificantBits), remainingMillis,
+                keys.get(keyIndex), customIds);
+            Interactable<?> interactable;
+            try {
+                interactable = restorer.restore(entry);
+            } catch (Exception exception) {
+                log.error("Failed to restore interactable {} with handler key {}", entry.getId(),
+                    entry.getHandlerKey(), exception);
+                skipped++;
+                continue;
+            }
+            if (interactable == null) {
+                skipped++;
+                continue;
+            }
+
+            if (interactable.getHandlerKey() == null) {
+                interactable.setHandlerKey(entry.getHandlerKey());
+            }
+            interactable.setExpiryDuration(Duration.ofMillis(remainingMillis));
+            restored.add(interactable);
+        }
+
+        if (skipped > 0) {
+            log.debug("Skipped {} expired or unrestorable interactables of the registry snapshot", skipped);
+        }
+        return restored;
+    }
+
+    static void writeVarLong(DataOutput output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte current = input.readByte();
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length number");
+    }
+
+    /**
+     * Reads a count or an index
+     *
+     * @param input The input
+     * @param max   Maximum valid value
+     * @return The value
+     * @throws IOException if the value is negative or above the maximum
+     */
+    private static int readCount(DataInput input, int max) throws IOException {
+        long value = readVarLong(input);
+        if (value < 0 || value > max) {
+            throw new IOException("Malformed snapshot");
+        }
+        return (int) value;
+    }
+
+    private static void skipUTF(DataInput input) throws IOException {
+        int length = input.readUnsignedShort();
+        if (input.skipBytes(length) != length) {
+            throw new EOFException("Malformed snapshot");
+        }
+    }
+
+    /**
+     * Restores an interactable from the snapshot entry, re-attaching its handlers
+     */
+    @FunctionalInterface
+    public interface Restorer {
+
+        /**
+         * Restores the interactable. The remaining expiry is set after restoring.
+         *
+         * @param entry The snapshot entry
+         * @return The restored interactable with the entry's ID, or null to skip the entry
+         */
+        Interactable<?> restore(Entry entry);
+    }
+
+    /**
+     * Entry of the snapshot
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Entry {
+
+        private final UUID id;
+        private final long remainingMillis;
+        private final String handlerKey;
+        private final List<String> customIds;
+    }
+}
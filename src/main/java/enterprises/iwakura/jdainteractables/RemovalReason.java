@@ -0,0 +1,42 @@
+package enterprises.iwakura.jdainteractables;
+
+import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
+import enterprises.iwakura.jdainteractables.components.Interactable;
+
+/**
+ * Reason why an {@link Interactable} was removed from the {@link InteractableListener}.
+ */
+public enum RemovalReason {
+    /**
+     * Removed manually using {@link InteractableListener#removeInteractable(Interactable)} or one of the bulk removal
+     * methods.
+     */
+    REMOVED,
+
+    /**
+     * Removed after an interaction was processed with {@link Result#REMOVE}.
+     */
+    PROCESSED,
+
+    /**
+     * Removed because the interactable has expired.
+     */
+    EXPIRED,
+
+    /**
+     * Removed because the owner the interactable was registered with was garbage collected, see
+     * {@link InteractableListener#addInteractable(Interactable, Object)}.
+     */
+    COLLECTED,
+
+    /**
+     * Removed to make room for a newer interactable of the same user, guild or channel, see
+     * {@link InteractableQuotas}.
+     */
+    EVICTED,
+
+    /**
+     * Removed early because the heap was running low, see {@link MemoryPressureMonitor}.
+     */
+    MEMORY_PRESSURE;
+}
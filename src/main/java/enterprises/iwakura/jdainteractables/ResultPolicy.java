@@ -0,0 +1,64 @@
+package enterprises.iwakura.jdainteractables;
+
+import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
+import enterprises.iwakura.jdainteractables.components.InteractableMessage;
+
+/**
+ * Policy combining {@link Result}s of multiple handlers applicable to a single interaction, e.g. select options of a
+ * multi-select menu. See {@link InteractableMessage#setResultPolicy(ResultPolicy)}.
+ */
+public enum ResultPolicy {
+    /**
+     * Result of the last handler in order of dispatch wins. This is the default.
+     */
+    LAST {
+        @Override
+        public Result combine(Result current, Result next) {
+            return next;
+        }
+    },
+
+    /**
+     * {@link Result#REMOVE} wins if any handler returned it, otherwise {@link Result#KEEP}
+     */
+    REMOVE_WINS {
+        @Override
+        public Result combine(Result current, Result next) {
+            return rank(next, Result.REMOVE) > rank(current, Result.REMOVE) ? next : current;
+        }
+    },
+
+    /**
+     * {@link Result#KEEP} wins if any handler returned it, otherwise {@link Result#REMOVE}
+     */
+    KEEP_WINS {
+        @Override
+        public Result combine(Result current, Result next) {
+            return rank(next, Result.KEEP) > rank(current, Result.KEEP) ? next : current;
+        }
+    };
+
+    /**
+     * Combines the result so far with the result of the next handler
+     *
+     * @param current Result so far, {@link Result#NOT_PROCESSED} if no handler has run yet
+     * @param next    Result of the next handler
+     * @return Combined result
+     */
+    public abstract Result combine(Result current, Result next);
+
+    private static int rank(Result result, Result winning) {
+        if (result == winning) {
+            return 3;
+        }
+        switch (result) {
+            case REMOVE:
+            case KEEP:
+                return 2;
+            case IGNORE:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Off-heap index of custom IDs and the processes owning them, stored in a memory-mapped file shared by all processes on
+ * the host. Any process can resolve the owner of a custom ID with a single lookup using {@link #getOwner(String)}.
+ * <p>
+ * The index is an open addressing hash table with linear probing. Each slot holds a 64-bit hash of the custom ID and
+ * the owner ID. Lookups don't lock, a lookup racing a write may not see it yet. Writes lock the header of the file, so
+ * processes writing at once are serialized; {@link #onRegistered(Collection)} and
+ * {@link #onRemoved(Collection, RemovalReason)} lock once per batch.
+ * </p><p>
+ * Removed entries keep their hash and only clear the owner, so that probe chains stay intact. Their slots are reused by
+ * any custom ID indexed later, and once three quarters of the slots are in use, the table is compacted in place to drop
+ * them; lookups running during compaction may miss entries. Entries of a process are removed when it closes the index
+ * and when it opens the index again with the same owner ID, e.g. after a crash; entries of an owner known to be gone
+ * can be removed using {@link #removeOwner(long)}. The table does not grow, so create the file with a capacity well
+ * above the expected number of live custom IDs.
+ * </p><p>
+ * Register the index using {@link InteractableListener#addRegistryListener(InteractableRegistryListener)}, custom IDs
+ * of registered interactables (see {@link Interactable#getCustomIds()}) are indexed and removed automatically.
+ * Interactions added to an interactable after its registration are not indexed.
+ * </p><p>
+ * Custom IDs are compared by their 64-bit hashes only; collisions are theoretically possible but negligible.
+ * </p>
+ */
+@Slf4j
+public class SharedRegistryIndex implements InteractableRegistryListener, Closeable {
+
+    /**
+     * Owner ID returned when the custom ID is not indexed
+     */
+    public static final long NO_OWNER = -1;
+
+    protected static final int MAGIC = 0x4A444149; // JDAI
+    protected static final int VERSION = 2;
+    protected static final int HEADER_SIZE = 64;
+    protected static final int SLOT_SIZE = 16;
+    protected static final long EMPTY_KEY = 0;
+
+    /**
+     * Header offsets of the number of slots holding a key, including removed entries, and of the number of live
+     * entries
+     */
+    protected static final int USED_OFFSET = 16;
+    protected static final int LIVE_OFFSET = 24;
+
+    /**
+     * Serializes writes of all indexes within this process, as file locks are held on behalf of the whole process and
+     * may not overlap within it
+     */
+    private static final Object PROCESS_LOCK = new Object();
+
+    @Getter
+    private final Path path;
+    @Getter
+    private final long ownerId;
+    @Getter
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int mask;
+    private final int compactionThreshold;
+
+    /**
+     * Opens the index stored in the file, creating it if it does not exist. Entries left by a previous process with
+     * the same owner ID are removed.
+     *
+     * @param path     Path to the file
+     * @param capacity Number of slots, rounded up to a power of two. Ignored if the file already exists.
+     * @param ownerId  Non-negative ID of this process stored as the owner of its custom IDs, e.g. the node ID
+     * @throws IOException              if the file could not be opened or mapped
+     * @throws IllegalArgumentException if the file is not an index or the arguments are invalid
+     */
+    public SharedRegistryIndex(@NonNull Path path, int capacity, long ownerId) throws IOException {
+        if (capacity <= 0 || capacity > (1 << 26)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + (1 << 26) + ": " + capacity);
+        }
+        if (ownerId < 0) {
+            throw new IllegalArgumentException("Owner ID must not be negative: " + ownerId);
+        }
+
+        this.path = path;
+        this.ownerId = ownerId;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+
+        try {
+            int tableCapacity = Integer.highestOneBit(capacity - 1) << 1;
+            if (capacity == 1) {
+                tableCapacity = 1;
+            }
+
+            // Processes opening the file at once must agree on its header
+            synchronized (PROCESS_LOCK) {
+                try (FileLock ignored = channel.lock(0, HEADER_SIZE, false)) {
+                    if (channel.size() == 0) {
+                        long size = HEADER_SIZE + (long) tableCapacity * SLOT_SIZE;
+                        MappedByteBuffer header = channel.map(MapMode.READ_WRITE, 0, size);
+                        header.putInt(4, VERSION);
+                        header.putInt(8, tableCapacity);
+                        header.putInt(0, MAGIC);
+                        header.force();
+                    } else {
+                        MappedByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+                        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                            throw new IllegalArgumentException("File is not a registry index of version " + VERSION
+                                + ": " + path);
+                        }
+                        tableCapacity = header.getInt(8);
+                    }
+                }
+            }
+
+            this.capacity = tableCapacity;
+            this.mask = tableCapacity - 1;
+            this.compactionThreshold = tableCapacity - (tableCapacity >>> 2);
+            this.buffer = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE + (long) tableCapacity * SLOT_SIZE);
+        } catch (IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+
+        int stale = removeOwner(ownerId);
+        if (stale != 0) {
+            log.info("Removed {} stale entries of owner {} from registry index {}", stale, ownerId, path);
+        }
+    }
+
+    /**
+     * Indexes the custom ID as owned by this process
+     *
+     * @param customId The custom ID
+     * @return true if indexed, false if the index is full
+     */
+    public boolean put(@NonNull String customId) {
+        return put(customId, ownerId);
+    }
+
+    /**
+     * Indexes the custom ID as owned by specified owner
+     *
+     * @param customId The custom ID
+     * @param owner    Non-negative owner ID
+     * @return true if indexed, false if the index is full
+     */
+    public boolean put(@NonNull String customId, long owner) {
+        if (owner < 0) {
+            throw new IllegalArgumentException("Owner ID must not be negative: " + owner);
+        }
+
+        synchronized (PROCESS_LOCK) {
+            FileLock lock = lock();
+            try {
+                return putLocked(hash(customId), owner);
+            } finally {
+                unlock(lock);
+            }
+        }
+    }
+
+    /**
+     * Removes the custom ID from the index if it's owned by this process
+     *
+     * @param customId The custom ID
+     * @return true if removed, false if not indexed or owned by another process
+     */
+    public boolean remove(@NonNull String customId) {
+        synchronized (PROCESS_LOCK) {
+            FileLock lock = lock();
+            try {
+                return removeLocked(hash(customId));
+            } finally {
+                unlock(lock);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries of the owner, e.g. of a process known to be gone
+     *
+     * @param owner Non-negative owner ID
+     * @return Number of removed entries
+     */
+    public int removeOwner(long owner) {
+        if (owner < 0) {
+            throw new IllegalArgumentException("Owner ID must not be negative: " + owner);
+        }
+
+        synchronized (PROCESS_LOCK) {
+            FileLock lock = lock();
+            try {
+                int removed = 0;
+                for (int index = 0; index < capacity; index++) {
+                    int slot = slotOffset(index);
+                    if (buffer.getLong(slot) != EMPTY_KEY && buffer.getLong(slot + 8) == owner + 1) {
+                        buffer.putLong(slot + 8, 0);
+                        removed++;
+                    }
+                }
+                addToHeader(LIVE_OFFSET, -removed);
+                return removed;
+            } finally {
+                unlock(lock);
+            }
+        }
+    }
+
+    /**
+     * Resolves the owner of the custom ID
+     *
+     * @param customId The custom ID
+     * @return The owner ID or {@link #NO_OWNER} if not indexed
+     */
+    public long getOwner(@NonNull String customId) {
+        int slot = findSlot(hash(customId));
+        if (slot == -1) {
+            return NO_OWNER;
+        }
+        long owner = buffer.getLong(slot + 8);
+        return owner == 0 ? NO_OWNER : owner - 1;
+    }
+
+    /**
+     * Gets the number of live entries
+     *
+     * @return Number of indexed custom IDs
+     */
+    public long size() {
+        return buffer.getLong(LIVE_OFFSET);
+    }
+
+    @Override
+    public void onRegistered(Collection<? extends Interactable<?>> interactables) {
+        synchronized (PROCESS_LOCK) {
+            FileLock lock = lock();
+            try {
+                for (Interactable<?> interactable : interactables) {
+                    for (String customId : interactable.getCustomIds()) {
+                        if (!putLocked(hash(customId), ownerId)) {
+                            log.warn("Registry index {} is full, custom ID {} of interactable {} was not indexed",
+                                path, customId, interactable.getId());
+                        }
+                    }
+                }
+            } finally {
+                unlock(lock);
+            }
+        }
+    }
+
+    @Override
+    public void onRemoved(Collection<? extends Interactable<?>> interactables, RemovalReason reason) {
+        synchronized (PROCESS_LOCK) {
+            FileLock lock = lock();
+            try {
+                for (Interactable<?> interactable : interactables) {
+                    for (String customId : interactable.getCustomIds()) {
+                        removeLocked(hash(customId));
+                    }
+                }
+            } finally {
+                unlock(lock);
+            }
+        }
+    }
+
+    /**
+     * Removes the entries of this process and closes the file. The mapping is released once the index is garbage
+     * collected, so the index must not be used after closing.
+     *
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            removeOwner(ownerId);
+            buffer.force();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Locks the header of the file, must be called while holding {@link #PROCESS_LOCK}
+     *
+     * @return The lock
+     */
+    private FileLock lock() {
+        try {
+            return channel.lock(0, HEADER_SIZE, false);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not lock registry index " + path, exception);
+        }
+    }
+
+    private void unlock(FileLock lock) {
+        try {
+            lock.release();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not unlock registry index " + path, exception);
+        }
+    }
+
+    /**
+     * Indexes the key, must be called while holding the locks. Reuses the first slot of a removed entry on the probe
+     * chain unless the key is already indexed.
+     *
+     * @param key   The key
+     * @param owner The owner
+     * @return true if indexed, false if the index is full
+     */
+    private boolean putLocked(long key, long owner) {
+        long used = buffer.getLong(USED_OFFSET);
+        if (used >= compactionThreshold && used - buffer.getLong(LIVE_OFFSET) >= Math.max(1, capacity >>> 3)) {
+            compact();
+        }
+
+        int index = (int) mix(key) & mask;
+        int reusable = -1;
+        for (int probe = 0; probe < capacity; probe++) {
+            int slot = slotOffset(index);
+            long slotKey = buffer.getLong(slot);
+
+            if (slotKey == key) {
+                if (buffer.getLong(slot + 8) == 0) {
+                    addToHeader(LIVE_OFFSET, 1);
+                }
+                buffer.putLong(slot + 8, owner + 1);
+                return true;
+            }
+            if (slotKey == EMPTY_KEY) {
+                if (reusable == -1) {
+                    addToHeader(USED_OFFSET, 1);
+                    reusable = slot;
+                }
+                break;
+            }
+            if (reusable == -1 && buffer.getLong(slot + 8) == 0) {
+                reusable = slot;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        if (reusable == -1) {
+            return false;
+        }
+        // Owner of a reused slot is zero, so lookups of either key see no owner until it's written
+        buffer.putLong(reusable, key);
+        buffer.putLong(reusable + 8, owner + 1);
+        addToHeader(LIVE_OFFSET, 1);
+        return true;
+    }
+
+    /**
+     * Removes the key if it's owned by this process, must be called while holding the locks
+     *
+     * @param key The key
+     * @return true if removed
+     */
+    private boolean removeLocked(long key) {
+        int slot = findSlot(key);
+        if (slot == -1 || buffer.getLong(slot + 8) != ownerId + 1) {
+            return false;
+        }
+        buffer.putLong(slot + 8, 0);
+        addToHeader(LIVE_OFFSET, -1);
+        return true;
+    }
+
+    /**
+     * Rebuilds the table in place without removed entries, must be called while holding the locks
+     */
+    private void compact() {
+        int live = (int) buffer.getLong(LIVE_OFFSET);
+        long[] keys = new long[live];
+        long[] owners = new long[live];
+        int count = 0;
+        for (int index = 0; index < capacity && count < live; index++) {
+            int slot = slotOffset(index);
+            long owner = buffer.getLong(slot + 8);
+            if (buffer.getLong(slot) != EMPTY_KEY && owner != 0) {
+                keys[count] = buffer.getLong(slot);
+                owners[count] = owner;
+                count++;
+            }
+        }
+
+        for (int index = 0; index < capacity; index++) {
+            int slot = slotOffset(index);
+            buffer.putLong(slot, EMPTY_KEY);
+            buffer.putLong(slot + 8, 0);
+        }
+        for (int entry = 0; entry < count; entry++) {
+            int index = (int) mix(keys[entry]) & mask;
+            while (buffer.getLong(slotOffset(index)) != EMPTY_KEY) {
+                index = (index + 1) & mask;
+            }
+            buffer.putLong(slotOffset(index), keys[entry]);
+            buffer.putLong(slotOffset(index) + 8, owners[entry]);
+        }
+        buffer.putLong(USED_OFFSET, count);
+        buffer.putLong(LIVE_OFFSET, count);
+        log.debug("Compacted registry index {}, {} live entries", path, count);
+    }
+
+    /**
+     * Finds the slot holding the key
+     *
+     * @param key The key
+     * @return Offset of the slot or -1 if not found
+     */
+    private int findSlot(long key) {
+        int index = (int) mix(key) & mask;
+        for (int probe = 0; probe < capacity; probe++) {
+            int slot = slotOffset(index);
+            long slotKey = buffer.getLong(slot);
+            if (slotKey == key) {
+                return slot;
+            }
+            if (slotKey == EMPTY_KEY) {
+                return -1;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void addToHeader(int offset, long delta) {
+        buffer.putLong(offset, buffer.getLong(offset) + delta);
+    }
+
+    private static int slotOffset(int index) {
+        return HEADER_SIZE + index * SLOT_SIZE;
+    }
+
+    /**
+     * Computes 64-bit FNV-1a hash of the custom ID, never {@link #EMPTY_KEY}
+     *
+     * @param customId The custom ID
+     * @return The hash
+     */
+    protected static long hash(String customId) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte character : customId.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= character & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash == EMPTY_KEY ? 1 : hash;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,271 @@
+package enterprises.iwakura.jdainteractables;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Watchdog of interaction handlers. Each thread running a handler publishes the start time of the handler; a timer
+ * periodically scans the running handlers and logs the current stack trace of each handler running longer than
+ * {@link #getThreshold()}, once per handler run. Slow handlers are counted in
+ * {@link InteractableMetrics#getSlowHandlers()}.
+ * <p>
+ * The detector is disabled by default, enable it using {@link #setThreshold(Duration)}. Watching a handler costs a
+ * thread-local lookup and a few volatile writes; no objects are allocated per handler run.
+ * </p>
+ */
+@Slf4j
+public class SlowHandlerDetector {
+
+    /**
+     * Shortest interval of scanning running handlers
+     */
+    protected static final long MIN_SCAN_INTERVAL_MILLIS = 10;
+
+    /**
+     * Watch that does nothing, returned when the detector is disabled or the thread already runs a watched handler
+     */
+    public static final Watch NOOP = () -> {
+    };
+
+    @Getter
+    protected final InteractableMetrics metrics;
+
+    /**
+     * Records of threads that have run a handler, records of terminated threads are removed by the scan
+     */
+    protected final Set<HandlerRecord> records = ConcurrentHashMap.newKeySet();
+
+    protected final ThreadLocal<HandlerRecord> currentRecord = ThreadLocal.withInitial(() -> {
+        HandlerRecord record = new HandlerRecord(Thread.currentThread());
+        records.add(record);
+        return record;
+    });
+
+    /**
+     * Threshold in nanoseconds, zero if disabled
+     */
+    protected volatile long thresholdNanos;
+
+    /**
+     * Timer scanning running handlers while enabled. Guarded by this detector's monitor.
+     */
+    protected Timer timer;
+
+    /**
+     * Creates new {@link SlowHandlerDetector}
+     *
+     * @param metrics Metrics to record slow handlers to
+     */
+    public SlowHandlerDetector(@NonNull InteractableMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the threshold after which a running handler is reported
+     *
+     * @return The threshold or null if the detector is disabled
+     */
+    public Duration getThreshold() {
+        long threshold = thresholdNanos;
+        return threshold == 0 ? null : Duration.ofNanos(threshold);
+    }
+
+    /**
+     * Sets the threshold after which a running handler is reported. Running handlers are scanned four times per
+     * threshold, so a handler is reported at most a quarter of the threshold late.
+     *
+     * @param threshold Positive threshold or null to disable the detector
+     */
+    public synchronized void setThreshold(Duration threshold) {
+        if (threshold != null && (threshold.isNegative() || threshold.isZero())) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+
+        if (threshold == null) {
+            thresholdNanos = 0;
+            return;
+        }
+
+        thresholdNanos = threshold.toNanos();
+        long scanInterval = Math.max(MIN_SCAN_INTERVAL_MILLIS, threshold.toMillis() / 4);
+        timer = new Timer("Interactable-Slow-Handler-Detector", true);
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                scan();
+            }
+        }, scanInterval, scanInterval);
+    }
+
+    /**
+     * Checks if the detector is enabled
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return thresholdNanos != 0;
+    }
+
+    /**
+     * Starts watching a handler run on the current thread. Close the returned watch once the handler finishes,
+     * preferably using try-with-resources. Nested handlers on the same thread are attributed to the outermost one.
+     *
+     * @param interactable Interactable the handler belongs to
+     * @param customId     Custom ID of the interaction, may be null
+     * @return The watch, never null
+     */
+    public Watch watch(Interactable<?> interactable, String customId) {
+        if (thresholdNanos == 0) {
+            return NOOP;
+        }
+
+        HandlerRecord record = currentRecord.get();
+        if (record.startNanos != 0) {
+            return NOOP;
+        }
+
+        record.interactable = interactable;
+        record.customId = customId;
+        long start = System.nanoTime();
+        // Zero marks an idle thread
+        record.startNanos = start == 0 ? 1 : start;
+        return record;
+    }
+
+    /**
+     * Gets the number of handlers currently running on watched threads
+     *
+     * @return Number of running handlers
+     */
+    public int getRunningCount() {
+        int count = 0;
+        for (HandlerRecord record : records) {
+            if (record.startNanos != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Scans running handlers and reports the ones running longer than the threshold
+     */
+    protected void scan() {
+        long threshold = thresholdNanos;
+        if (threshold == 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        Iterator<HandlerRecord> iterator = records.iterator();
+        while (iterator.hasNext()) {
+            HandlerRecord record = iterator.next();
+            long start = record.startNanos;
+            if (start == 0) {
+                if (!record.thread.isAlive()) {
+                    iterator.remove();
+                }
+                continue;
+            }
+            if (start == record.reportedStartNanos || now - start < threshold) {
+                continue;
+            }
+
+            Interactable<?> interactable = record.interactable;
+            String customId = record.customId;
+            StackTraceElement[] stackTrace = record.thread.getStackTrace();
+
+            // The handler has finished or another one has started while reading the record
+            if (record.startNanos != start) {
+                continue;
+            }
+
+            record.reportedStartNanos = start;
+            report(record.thread, interactable, customId, now - start, stackTrace);
+        }
+    }
+
+    /**
+     * Reports a slow handler. Called at most once per handler run, on the scanning thread.
+     *
+     * @param thread       Thread running the handler
+     * @param interactable Interactable the handler belongs to
+     * @param customId     Custom ID of the interaction, may be null
+     * @param elapsedNanos Time the handler has been running for
+     * @param stackTrace   Current stack trace of the thread
+     */
+    protected void report(
+        Thread thread,
+        Interactable<?> interactable,
+        String customId,
+        long elapsedNanos,
+        StackTraceElement[] stackTrace
+    ) {
+        metrics.recordSlowHandler();
+
+        Throwable stack = new Throwable("Stack trace of thread " + thread.getName());
+        stack.setStackTrace(stackTrace);
+        log.warn("Handler of {} {} for custom ID {} has been running for {} ms", interactable.getClass().getSimpleName(),
+            interactable.getId(), customId, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), stack);
+    }
+
+    /**
+     * Watch of a running handler
+     */
+    @FunctionalInterface
+    public interface Watch extends AutoCloseable {
+
+        /**
+         * Stops watching the handler
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Handler run of a single thread, reused by all handler runs of the thread
+     */
+    protected static final class HandlerRecord implements Watch {
+
+        protected final Thread thread;
+
+        /**
+         * Start of the running handler, zero if idle. Written after the other fields, so the scan sees them
+         * consistent with the start.
+         */
+        protected volatile long startNanos;
+        protected volatile Interactable<?> interactable;
+        protected volatile String customId;
+
+        /**
+         * Start of the last reported handler, written only by the scan
+         */
+        protected long reportedStartNanos;
+
+        protected HandlerRecord(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public void close() {
+            startNanos = 0;
+            interactable = null;
+            customId = null;
+        }
+    }
+}
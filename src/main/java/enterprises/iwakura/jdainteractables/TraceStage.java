@@ -0,0 +1,37 @@
+package enterprises.iwakura.jdainteractables;
+
+/**
+ * Stage of interaction processing traced by {@link InteractionTracer}
+ */
+public enum TraceStage {
+
+    /**
+     * Waiting in the queue of the event processor of {@link InteractableListener}
+     */
+    QUEUE,
+
+    /**
+     * Looking up the interactable the interaction belongs to. Encloses {@link #RULES} and {@link #HANDLER}.
+     */
+    LOOKUP,
+
+    /**
+     * Evaluating {@link InteractionRule}s
+     */
+    RULES,
+
+    /**
+     * Running the interaction handler
+     */
+    HANDLER,
+
+    /**
+     * Running interaction denied callbacks after {@link InteractionRule}s denied the interaction
+     */
+    DENIED_CALLBACKS,
+
+    /**
+     * Acknowledging the interaction by the library, see {@link InteractionEventContext#acknowledge()}
+     */
+    REPLY
+}
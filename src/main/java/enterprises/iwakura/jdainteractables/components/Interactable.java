@@ -2,19 +2,36 @@ package enterprises.iwakura.jdainteractables.components;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.function.Consumer;
 
+import enterprises.iwakura.jdainteractables.ExpiryCallback;
+import enterprises.iwakura.jdainteractables.ForwardedInteraction;
 import enterprises.iwakura.jdainteractables.InteractableListener;
+import enterprises.iwakura.jdainteractables.InteractableQuotas;
+import enterprises.iwakura.jdainteractables.InteractableScope;
 import enterprises.iwakura.jdainteractables.Interaction;
 import enterprises.iwakura.jdainteractables.InteractionDeniedCallback;
 import enterprises.iwakura.jdainteractables.InteractionEventContext;
 import enterprises.iwakura.jdainteractables.InteractionHandler;
 import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
+import enterprises.iwakura.jdainteractables.InteractionPublisher;
+import enterprises.iwakura.jdainteractables.InteractionRouter;
 import enterprises.iwakura.jdainteractables.InteractionRule;
+import enterprises.iwakura.jdainteractables.InteractionSpan;
+import enterprises.iwakura.jdainteractables.InteractionTracing;
+import enterprises.iwakura.jdainteractables.MemoryPressureMonitor;
+import enterprises.iwakura.jdainteractables.QuotaExceededException;
+import enterprises.iwakura.jdainteractables.RegistryIntrospection;
+import enterprises.iwakura.jdainteractables.RegistrySnapshot;
+import enterprises.iwakura.jdainteractables.RemovalReason;
+import enterprises.iwakura.jdainteractables.TraceStage;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.NonNull;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -28,14 +45,100 @@ import lombok.extern.slf4j.Slf4j;
 @Setter
 public abstract class Interactable<T extends Interactable<?>> {
 
-    protected final UUID id = UUID.randomUUID();
+    /**
+     * Nominal bytes of an interactable itself, its ID, lists and lock
+     */
+    protected static final long BASE_NOMINAL_BYTES = 384;
+
+    /**
+     * Nominal bytes of a rule or callback, excluding the objects it captures
+     */
+    protected static final long ELEMENT_NOMINAL_BYTES = 32;
+
+    protected final UUID id;
     protected final long createdAtMillis = System.currentTimeMillis();
     protected final List<InteractionRule> interactionRuleList = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * Callbacks run when the interactable expires or is discarded. Callbacks added as {@link ExpiryCallback} are
+     * wrapped, see {@link ExpiryCallback#asRunnable(ExpiryCallback)}.
+     */
     protected final List<Runnable> expiryCallbacks = Collections.synchronizedList(new ArrayList<>());
     protected final List<InteractionDeniedCallback> interactionDeniedCallbacks = Collections.synchronizedList(
         new ArrayList<>());
 
-    protected Duration expiryDuration = Duration.ofMinutes(5);
+    @Setter(AccessLevel.NONE)
+    protected volatile Duration expiryDuration = Duration.ofMinutes(5);
+
+    /**
+     * Priority selecting the dispatch lane of the interactable's events, see
+     * {@link InteractableListener#setPriorityLane(int, enterprises.iwakura.jdainteractables.DispatchLane)}
+     */
+    protected volatile int dispatchPriority;
+
+    /**
+     * Lock held by {@link InteractableListener} while this interactable processes an event, so events are processed one
+     * at a time. Handlers applicable to a single event may still run concurrently, see
+     * {@link InteractableMessage#setHandlerExecutor(java.util.concurrent.Executor)}.
+     */
+    protected final Object dispatchLock = new Object();
+
+    /**
+     * Number of handlers still running after the event they belong to was processed, e.g. past the acknowledgement
+     * deadline. The next event waits for them, see {@link #awaitLateHandlers()}. Guarded by the {@link #dispatchLock}.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected int lateHandlers;
+
+    /**
+     * Lazily created publisher of processed interactions, see {@link #getInteractionPublisher()}
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected volatile InteractionPublisher interactionPublisher;
+
+    /**
+     * User, guild and channel this interactable belongs to, counted towards {@link InteractableQuotas}. Must be set
+     * before registration, null if unknown.
+     */
+    protected volatile InteractableScope scope;
+
+    /**
+     * Time the interactable last processed an interaction in milliseconds since the epoch, the creation time if it
+     * hasn't processed any yet. Used by {@link MemoryPressureMonitor} to evict the least recently used interactables
+     * first.
+     */
+    @Setter(AccessLevel.NONE)
+    protected volatile long lastInteractedAtMillis = createdAtMillis;
+
+    /**
+     * Callback called when a forwarded interaction is refused because this interactable has interaction rules, see
+     * {@link #canInteractForwarded(ForwardedInteraction)}. The interaction is already acknowledged, respond using
+     * {@link ForwardedInteraction#getHook(net.dv8tion.jda.api.JDA)}.
+     */
+    protected volatile Consumer<ForwardedInteraction> forwardedDeniedCallback;
+
+    /**
+     * Key of the handler able to restore this interactable from a registry snapshot, see {@link RegistrySnapshot}.
+     * Interactables without a handler key are not included in snapshots.
+     */
+    protected volatile String handlerKey;
+
+    /**
+     * Creates new interactable with random ID
+     */
+    protected Interactable() {
+        this(UUID.randomUUID());
+    }
+
+    /**
+     * Creates new interactable with specified ID, e.g. when restoring it from a registry snapshot
+     *
+     * @param id The ID
+     */
+    protected Interactable(@NonNull UUID id) {
+        this.id = id;
+    }
 
     /**
      * Processes the interaction event
@@ -51,10 +154,105 @@ public abstract class Interactable<T extends Interactable<?>> {
         return InteractionHandler.Result.NOT_PROCESSED;
     }
 
+    /**
+     * Processes the interaction forwarded from another node, see {@link InteractionRouter}. Implementations must check
+     * {@link #canInteractForwarded(ForwardedInteraction)} before running handlers.
+     *
+     * @param forwarded The forwarded interaction
+     * @return The result of the interaction processing, {@link Result#NOT_PROCESSED} by default
+     */
+    public InteractionHandler.Result processForwarded(ForwardedInteraction forwarded) {
+        return InteractionHandler.Result.NOT_PROCESSED;
+    }
+
+    /**
+     * Checks if the forwarded interaction targeting this interactable may be processed. {@link InteractionRule}s need
+     * the original event, which only exists on the receiving node, so forwarded interactions are refused if this
+     * interactable has any rules, and the {@link #getForwardedDeniedCallback()} is called instead.
+     *
+     * @param forwarded The forwarded interaction
+     * @return true if the interaction may be processed, false if it was refused
+     */
+    protected boolean canInteractForwarded(ForwardedInteraction forwarded) {
+        if (interactionRuleList.isEmpty()) {
+            return true;
+        }
+
+        log.debug("Refusing forwarded interaction with custom ID {} of interactable {}, it has interaction rules",
+            forwarded.getCustomId(), id);
+        Consumer<ForwardedInteraction> callback = forwardedDeniedCallback;
+        if (callback != null) {
+            try {
+                callback.accept(forwarded);
+            } catch (Exception exception) {
+                log.error("Error while running forwarded interaction denied callback for interactable {}", id,
+                    exception);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Logs the forwarded interaction targeting this interactable which has no handler of forwarded interactions. The
+     * receiving node has already acknowledged the interaction, so the user gets no response.
+     *
+     * @param forwarded The forwarded interaction
+     */
+    protected void warnUnhandledForwarded(ForwardedInteraction forwarded) {
+        log.warn("Interactable {} has no handler of forwarded interactions, interaction with custom ID {} forwarded "
+            + "from node {} is dropped", id, forwarded.getCustomId(), forwarded.getSourceNodeId());
+    }
+
+    /**
+     * Gets custom IDs of components owned by this interactable, e.g. for indexing by owner
+     *
+     * @return Custom IDs, empty by default
+     */
+    public Collection<String> getCustomIds() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Computes the nominal size of this interactable, used by {@link RegistryIntrospection}. It's a fixed weighting per
+     * interactable, rule and callback plus the lengths of custom IDs, not a measurement: objects captured by handlers
+     * and callbacks are not counted, and the actual retained size depends on the JVM.
+     *
+     * @return Nominal bytes
+     */
+    public long estimateNominalBytes() {
+        long bytes = BASE_NOMINAL_BYTES;
+        bytes += ELEMENT_NOMINAL_BYTES
+            * (interactionRuleList.size() + expiryCallbacks.size() + interactionDeniedCallbacks.size());
+        for (String customId : getCustomIds()) {
+            bytes += estimateStringBytes(customId);
+        }
+        return bytes;
+    }
+
+    /**
+     * Computes the nominal size of the string
+     *
+     * @param value The string, may be null
+     * @return Nominal bytes
+     */
+    protected static long estimateStringBytes(String value) {
+        // Header, hash and array reference plus the char array, assuming two bytes per char
+        return value != null ? 40 + 2L * value.length() : 0;
+    }
+
+    /**
+     * Prepares this interactable for dispatching, called by {@link InteractableListener} when it's registered. Does
+     * nothing by default.
+     */
+    public void freeze() {
+    }
+
     /**
      * Registers this interactable with the {@link InteractableListener}
      *
      * @return this interactable
+     * @throws QuotaExceededException if this interactable exceeds the {@link InteractableListener#getQuotas()} and the
+     *                                policy rejects it
      */
     public T registerNow() {
         InteractableListener.addInteractable(this);
@@ -63,12 +261,38 @@ public abstract class Interactable<T extends Interactable<?>> {
 
     /**
      * Returns a consumer that registers this interactable in the {@link InteractableListener} after the rest action is
-     * completed.
+     * completed. The consumer never throws {@link QuotaExceededException} into the rest action's callback; a rejection
+     * is handled by {@link #onRegistrationRejected(QuotaExceededException)} instead.
      *
      * @return A consumer that registers this interactable
      */
     public Consumer<? super Object> registerOnCompleted() {
-        return obj -> this.registerNow();
+        return obj -> registerOrReject();
+    }
+
+    /**
+     * Registers this interactable, handling a rejection by the quotas
+     *
+     * @return true if registered, false if rejected by the quotas
+     */
+    protected boolean registerOrReject() {
+        try {
+            registerNow();
+            return true;
+        } catch (QuotaExceededException exception) {
+            onRegistrationRejected(exception);
+            return false;
+        }
+    }
+
+    /**
+     * Called when registering this interactable by {@link #registerOnCompleted()} is rejected by the quotas. The sent
+     * components won't respond to interactions. Logs a warning by default.
+     *
+     * @param exception The rejection
+     */
+    protected void onRegistrationRejected(QuotaExceededException exception) {
+        log.warn("Interactable {} with scope {} was sent but not registered: {}", id, scope, exception.getMessage());
     }
 
     /**
@@ -108,19 +332,21 @@ public abstract class Interactable<T extends Interactable<?>> {
             return true;
         }
 
-        synchronized (interactionRuleList) {
-            for (InteractionRule interactionRule : interactionRuleList) {
-                try {
-                    InteractionRule.Result result = interactionRule.apply(ctx);
-                    if (result == InteractionRule.Result.ALLOW) {
-                        return true;
-                    } else if (result == InteractionRule.Result.DENY) {
+        try (InteractionSpan ignored = InteractionTracing.trace(TraceStage.RULES, ctx)) {
+            synchronized (interactionRuleList) {
+                for (InteractionRule interactionRule : interactionRuleList) {
+                    try {
+                        InteractionRule.Result result = interactionRule.apply(ctx);
+                        if (result == InteractionRule.Result.ALLOW) {
+                            return true;
+                        } else if (result == InteractionRule.Result.DENY) {
+                            return false;
+                        }
+                    } catch (Exception exception) {
+                        log.error("Error while applying interaction rule for interactable {}, disallowing interaction",
+                            id, exception);
                         return false;
                     }
-                } catch (Exception exception) {
-                    log.error("Error while applying interaction rule for interactable {}, disallowing interaction",
-                        id, exception);
-                    return false;
                 }
             }
         }
@@ -137,6 +363,16 @@ public abstract class Interactable<T extends Interactable<?>> {
         expiryCallbacks.add(runnable);
     }
 
+    /**
+     * Adds a callback when the interactable expires or its owner is garbage collected, see
+     * {@link InteractableListener#addInteractable(Interactable, Object)}
+     *
+     * @param callback The callback to run
+     */
+    public void addExpiryCallback(ExpiryCallback callback) {
+        expiryCallbacks.add(ExpiryCallback.asRunnable(callback));
+    }
+
     /**
      * Clears all expire callbacks
      */
@@ -148,10 +384,19 @@ public abstract class Interactable<T extends Interactable<?>> {
      * Called when the interactable expires
      */
     public void runExpiryCallbacks() {
+        runExpiryCallbacks(RemovalReason.EXPIRED);
+    }
+
+    /**
+     * Called when the interactable expires or its owner is garbage collected
+     *
+     * @param reason The reason of the expiry
+     */
+    public void runExpiryCallbacks(RemovalReason reason) {
         synchronized (expiryCallbacks) {
-            for (Runnable runnable : expiryCallbacks) {
+            for (Runnable callback : expiryCallbacks) {
                 try {
-                    runnable.run();
+                    ExpiryCallback.run(callback, reason);
                 } catch (Exception exception) {
                     log.error("Error while running onExpire runnable for interactable {}", id, exception);
                 }
@@ -181,14 +426,134 @@ public abstract class Interactable<T extends Interactable<?>> {
      * @param ctx The interaction event context
      */
     protected void runInteractionDeniedCallbacks(InteractionEventContext ctx) {
-        synchronized (interactionDeniedCallbacks) {
-            for (Consumer<InteractionEventContext> consumer : interactionDeniedCallbacks) {
+        if (interactionDeniedCallbacks.isEmpty()) {
+            return;
+        }
+
+        try (InteractionSpan ignored = InteractionTracing.trace(TraceStage.DENIED_CALLBACKS, ctx)) {
+            synchronized (interactionDeniedCallbacks) {
+                for (Consumer<InteractionEventContext> consumer : interactionDeniedCallbacks) {
+                    try {
+                        consumer.accept(ctx);
+                    } catch (Exception exception) {
+                        log.error("Error while running onInteractionDenied consumer for interactable {}", id,
+                            exception);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the publisher of interactions processed by this interactable. The publisher is created on first call.
+     * Subscribers receive every interaction that was handled by this interactable, after its handlers have run.
+     * The publisher completes when the interactable is removed from the {@link InteractableListener}.
+     *
+     * @return Non-null {@link InteractionPublisher}
+     */
+    public InteractionPublisher getInteractionPublisher() {
+        InteractionPublisher publisher = interactionPublisher;
+        if (publisher == null) {
+            synchronized (this) {
+                publisher = interactionPublisher;
+                if (publisher == null) {
+                    publisher = new InteractionPublisher();
+                    interactionPublisher = publisher;
+                }
+            }
+        }
+        return publisher;
+    }
+
+    /**
+     * Publishes the processed interaction to the subscribers of {@link #getInteractionPublisher()}, if any
+     *
+     * @param ctx The interaction event context
+     */
+    protected void publishInteraction(InteractionEventContext ctx) {
+        InteractionPublisher publisher = interactionPublisher;
+        if (publisher != null) {
+            publisher.submit(ctx);
+        }
+    }
+
+    /**
+     * Completes the subscribers of {@link #getInteractionPublisher()}, if any. Called by the
+     * {@link InteractableListener} when this interactable is removed.
+     */
+    public void closeInteractionPublisher() {
+        InteractionPublisher publisher = interactionPublisher;
+        if (publisher != null) {
+            publisher.close();
+        }
+    }
+
+    /**
+     * Sets the expiry duration. If the interactable is already registered, its expiry is rescheduled.
+     *
+     * @param expiryDuration Duration since creation after which the interactable expires
+     */
+    public void setExpiryDuration(Duration expiryDuration) {
+        this.expiryDuration = expiryDuration;
+        InteractableListener.rescheduleExpiry(this);
+    }
+
+    /**
+     * Gets the time when the interactable expires
+     *
+     * @return Time in milliseconds since the epoch
+     */
+    public long getExpiresAtMillis() {
+        return createdAtMillis + expiryDuration.toMillis();
+    }
+
+    /**
+     * Records that the interactable has processed an interaction, called by {@link InteractableListener}
+     */
+    public void markInteracted() {
+        lastInteractedAtMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Waits until handlers of previously processed events finish, so they never run concurrently with handlers of the
+     * next event. Called by {@link InteractableListener} while holding the {@link #dispatchLock}.
+     *
+     * @return true once no handlers are running, false if the thread was interrupted while waiting
+     */
+    public boolean awaitLateHandlers() {
+        synchronized (dispatchLock) {
+            while (lateHandlers > 0) {
                 try {
-                    consumer.accept(ctx);
-                } catch (Exception exception) {
-                    log.error("Error while running onInteractionDenied consumer for interactable {}", id, exception);
+                    dispatchLock.wait();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return false;
                 }
             }
+            return true;
+        }
+    }
+
+    /**
+     * Counts the handlers as running after their event was processed
+     *
+     * @param count Number of handlers
+     */
+    protected void beginLateHandlers(int count) {
+        synchronized (dispatchLock) {
+            lateHandlers += count;
+        }
+    }
+
+    /**
+     * Counts the handlers as finished, waking up the event waiting for them
+     *
+     * @param count Number of handlers
+     */
+    protected void endLateHandlers(int count) {
+        synchronized (dispatchLock) {
+            lateHandlers -= count;
+            dispatchLock.notifyAll();
         }
     }
 
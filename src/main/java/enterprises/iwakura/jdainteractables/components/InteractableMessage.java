@@ -1,20 +1,52 @@
 package enterprises.iwakura.jdainteractables.components;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import enterprises.iwakura.jdainteractables.ExpiryComponentDisabler;
+import enterprises.iwakura.jdainteractables.ForwardedInteraction;
+import enterprises.iwakura.jdainteractables.InteractableListener;
+import enterprises.iwakura.jdainteractables.InteractableScope;
 import enterprises.iwakura.jdainteractables.Interaction;
 import enterprises.iwakura.jdainteractables.InteractionDeniedCallback;
 import enterprises.iwakura.jdainteractables.InteractionEventContext;
 import enterprises.iwakura.jdainteractables.InteractionHandler;
 import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
 import enterprises.iwakura.jdainteractables.InteractionRule;
+import enterprises.iwakura.jdainteractables.InteractionSpan;
+import enterprises.iwakura.jdainteractables.InteractionTracing;
+import enterprises.iwakura.jdainteractables.QuotaExceededException;
+import enterprises.iwakura.jdainteractables.RegistrySnapshot;
+import enterprises.iwakura.jdainteractables.ResultPolicy;
+import enterprises.iwakura.jdainteractables.SlowHandlerDetector;
+import enterprises.iwakura.jdainteractables.TraceStage;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.components.IDisableable;
+import net.dv8tion.jda.api.components.MessageTopLevelComponent;
 import net.dv8tion.jda.api.components.buttons.Button;
 import net.dv8tion.jda.api.components.selections.SelectOption;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.callbacks.IDeferrableCallback;
 import net.dv8tion.jda.api.requests.RestAction;
 
 /**
@@ -31,17 +63,109 @@ import net.dv8tion.jda.api.requests.RestAction;
  * default expiry time is 5 minutes, but you can change it.
  * </p><p>
  * You can also add expiry callbacks using {@link #addExpiryCallback(Runnable)} which will be called when the message
- * expires.
+ * expires. Alternatively, enable {@link #setDisableOnExpiry(boolean)} to have the components of the message disabled
+ * automatically by the {@link ExpiryComponentDisabler}.
  * </p>
  */
+@Slf4j
 public class InteractableMessage extends Interactable<InteractableMessage> {
 
+    /**
+     * Nominal bytes of an interaction, its component, map entry and lookup table entries
+     */
+    protected static final long INTERACTION_NOMINAL_BYTES = 320;
+
     /**
      * Map of interactions and their handlers
      */
     protected final Map<Interaction<?, ?>, InteractionHandler<InteractableMessage, ?>> interactions =
         Collections.synchronizedMap(new HashMap<>());
 
+    /**
+     * Immutable lookup table compiled from {@link #interactions} when the message is registered, see {@link #freeze()}.
+     * Later changes compile a new table. Dispatching looks up the table without locking or allocating.
+     */
+    protected volatile InteractionTable interactionTable;
+
+    /**
+     * Whether the message has been registered and changes of interactions should compile a new table
+     */
+    protected volatile boolean frozen;
+
+    /**
+     * Handler of interactions forwarded from other nodes, see {@link #onForwarded(InteractionHandler)}
+     */
+    protected volatile InteractionHandler<InteractableMessage, ForwardedInteraction> forwardedHandler;
+
+    /**
+     * Policy combining results of multiple handlers applicable to a single interaction
+     */
+    protected volatile ResultPolicy resultPolicy = ResultPolicy.LAST;
+
+    /**
+     * Executor running multiple applicable handlers concurrently, null to run them serially. Must be dedicated to
+     * handlers, see {@link #setHandlerExecutor(Executor)}.
+     */
+    protected volatile Executor handlerExecutor;
+
+    /**
+     * Whether the components of the message should be disabled when it expires
+     */
+    protected volatile boolean disableOnExpiry;
+
+    /**
+     * Priority of disabling the components among other expired messages, higher goes first
+     */
+    protected volatile int disablePriority;
+
+    /**
+     * JDA instance of the message, used to disable its components on expiry. Only IDs of the message are kept, so the
+     * interactable doesn't hold on to the {@link Message} and its entities.
+     */
+    protected volatile JDA jda;
+
+    /**
+     * ID of the message, zero if unknown
+     */
+    protected volatile long messageId;
+
+    /**
+     * ID of the channel of the message, zero if unknown
+     */
+    protected volatile long messageChannelId;
+
+    /**
+     * Whether the message is ephemeral and can only be edited using an interaction token
+     */
+    protected volatile boolean ephemeral;
+
+    /**
+     * Token of the last interaction with the message, used to edit ephemeral messages
+     */
+    protected volatile String interactionToken;
+
+    /**
+     * Time the {@link #interactionToken} expires at in milliseconds since the epoch
+     */
+    protected volatile long interactionTokenExpiresAtMillis;
+
+    /**
+     * Creates new interactable message with random ID
+     */
+    public InteractableMessage() {
+        super();
+    }
+
+    /**
+     * Creates new interactable message with specified ID, e.g. when restoring it from a registry snapshot, see
+     * {@link RegistrySnapshot.Restorer}
+     *
+     * @param id The ID
+     */
+    public InteractableMessage(@NonNull UUID id) {
+        super(id);
+    }
+
     /**
      * Adds an interaction to the interactable message
      *
@@ -56,7 +180,7 @@ public class InteractableMessage extends Interactable<InteractableMessage> {
         Interaction<T, E> interaction,
         InteractionHandler<InteractableMessage, E> interactionHandler
     ) {
-        interactions.put(interaction, interactionHandler);
+        putInteraction(interaction, interactionHandler);
         return interaction.getComponent();
     }
 
@@ -75,11 +199,437 @@ public class InteractableMessage extends Interactable<InteractableMessage> {
         Interaction<T, E> interaction,
         Function<E, Result> interactionHandler
     ) {
-        interactions.put(interaction, (msg, event) -> interactionHandler.apply((E) event));
+        putInteraction(interaction, (msg, event) -> interactionHandler.apply((E) event));
         return interaction.getComponent();
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
+    /**
+     * Adds an interaction without a handler to the interactable message. Such interactions are kept and only
+     * published to the subscribers of {@link #getInteractionPublisher()}, which are responsible for acknowledging
+     * them.
+     *
+     * @param interaction The interaction to add
+     * @param <T>         The type of the component returned by the interaction
+     * @param <E>         The type of the interaction event
+     * @return The component associated with the interaction
+     */
+    public <T, E> T addInteraction(Interaction<T, E> interaction) {
+        putInteraction(interaction, (msg, event) -> Result.KEEP);
+        return interaction.getComponent();
+    }
+
+    /**
+     * Puts the interaction into {@link #interactions}. If the message is frozen, a new {@link #interactionTable} is
+     * compiled and the custom IDs are indexed again, see {@link InteractableListener#reindexCustomIds(Interactable)}.
+     *
+     * @param interaction        The interaction
+     * @param interactionHandler The handler
+     */
+    protected void putInteraction(
+        Interaction<?, ?> interaction,
+        InteractionHandler<InteractableMessage, ?> interactionHandler
+    ) {
+        boolean reindex;
+        synchronized (interactions) {
+            interactions.put(interaction, interactionHandler);
+            reindex = frozen;
+            if (reindex) {
+                interactionTable = InteractionTable.compile(interactions);
+            }
+        }
+        // Outside the lock of interactions, the registry lock is taken first when indexing
+        if (reindex) {
+            InteractableListener.reindexCustomIds(this);
+        }
+    }
+
+    /**
+     * Compiles the interactions into an immutable lookup table keyed by custom IDs and select option values. Called
+     * by {@link InteractableListener} on registration; interactions added afterward compile a new table
+     * (copy-on-write). If you change {@link #interactions} directly after freezing, call this method again.
+     */
+    @Override
+    public void freeze() {
+        synchronized (interactions) {
+            interactionTable = InteractionTable.compile(interactions);
+            frozen = true;
+        }
+    }
+
+    /**
+     * Gets the lookup table of interactions. Messages which are not frozen yet compile a temporary table.
+     *
+     * @return The lookup table
+     */
+    protected InteractionTable getInteractionTable() {
+        InteractionTable table = interactionTable;
+        if (table != null) {
+            return table;
+        }
+        synchronized (interactions) {
+            return InteractionTable.compile(interactions);
+        }
+    }
+
+    /**
+     * Gets custom IDs of the message's interactions. For Select Options, their values are returned.
+     *
+     * @return Custom IDs
+     */
+    @Override
+    public Collection<String> getCustomIds() {
+        synchronized (interactions) {
+            List<String> customIds = new ArrayList<>(interactions.size());
+            for (Interaction<?, ?> interaction : interactions.keySet()) {
+                String customId = interaction.getCustomId();
+                if (customId != null) {
+                    customIds.add(customId);
+                }
+            }
+            return customIds;
+        }
+    }
+
+    /**
+     * Computes the nominal size of the message, including a fixed weighting per interaction, but not objects captured
+     * by handlers
+     *
+     * @return Nominal bytes
+     */
+    @Override
+    public long estimateNominalBytes() {
+        return super.estimateNominalBytes() + INTERACTION_NOMINAL_BYTES * interactions.size()
+            + estimateStringBytes(interactionToken);
+    }
+
+    /**
+     * Sets the handler of interactions with this message forwarded from other nodes. The handler is called for any of
+     * the message's interactions; use {@link ForwardedInteraction#getCustomId()} and
+     * {@link ForwardedInteraction#getValues()} to tell them apart. The interaction is already acknowledged, respond
+     * using {@link ForwardedInteraction#getHook(net.dv8tion.jda.api.JDA)}. If the message has interaction rules,
+     * forwarded interactions are refused, see {@link #canInteractForwarded(ForwardedInteraction)}.
+     *
+     * @param forwardedHandler The handler
+     * @return This interactable message
+     */
+    public InteractableMessage onForwarded(
+        InteractionHandler<InteractableMessage, ForwardedInteraction> forwardedHandler
+    ) {
+        this.forwardedHandler = forwardedHandler;
+        return this;
+    }
+
+    @Override
+    public Result processForwarded(ForwardedInteraction forwarded) {
+        for (InteractionEntry entry : getInteractionTable().entries) {
+            if (!isApplicable(entry.interaction, forwarded)) {
+                continue;
+            }
+
+            InteractionHandler<InteractableMessage, ForwardedInteraction> handler = forwardedHandler;
+            if (handler == null) {
+                warnUnhandledForwarded(forwarded);
+                return Result.NOT_PROCESSED;
+            }
+            if (!canInteractForwarded(forwarded)) {
+                return Result.NOT_PROCESSED;
+            }
+            try (SlowHandlerDetector.Watch watch = InteractableListener.getSlowHandlerDetector()
+                .watch(this, forwarded.getCustomId())) {
+                return handler.apply(this, forwarded);
+            }
+        }
+        return Result.NOT_PROCESSED;
+    }
+
+    /**
+     * Determines if the forwarded interaction is applicable to the interaction
+     *
+     * @param interaction The interaction to check
+     * @param forwarded   The forwarded interaction to check
+     * @return true if applicable, false otherwise
+     */
+    protected boolean isApplicable(Interaction<?, ?> interaction, ForwardedInteraction forwarded) {
+        if (interaction.getType() != forwarded.getType()) {
+            return false;
+        }
+        if (interaction.isSelectOption()) {
+            return forwarded.getValues().contains(interaction.getCustomId());
+        }
+        String customId = interaction.getCustomId();
+        return customId != null && customId.equals(forwarded.getCustomId());
+    }
+
+    /**
+     * Returns a consumer that registers this interactable in the {@link InteractableListener} after the rest action is
+     * completed. If the rest action results in a {@link Message} or an {@link InteractionHook}, its IDs are
+     * remembered to allow disabling the components on expiry.
+     * <p>
+     * The consumer never throws {@link QuotaExceededException} into the rest action's callback. If the quotas reject
+     * the message, a warning is logged and, if {@link #isDisableOnExpiry()} is enabled, its components are disabled
+     * right away, see {@link #onRegistrationRejected(QuotaExceededException)}.
+     * </p>
+     *
+     * @return A consumer that registers this interactable
+     */
+    @Override
+    public Consumer<? super Object> registerOnCompleted() {
+        return obj -> {
+            if (obj instanceof Message) {
+                setMessage((Message) obj);
+            } else if (obj instanceof InteractionHook) {
+                setInteractionHook((InteractionHook) obj);
+            }
+            registerOrReject();
+        };
+    }
+
+    /**
+     * Logs the rejection and, if {@link #isDisableOnExpiry()} is enabled, disables the components of the sent message,
+     * as they would never respond
+     *
+     * @param exception The rejection
+     */
+    @Override
+    protected void onRegistrationRejected(QuotaExceededException exception) {
+        log.warn("Interactable message {} (message {} in channel {}, scope {}) was sent but not registered: {}", id,
+            messageId, messageChannelId, scope, exception.getMessage());
+        if (disableOnExpiry) {
+            InteractableListener.getComponentDisabler().submit(this);
+        }
+    }
+
+    /**
+     * Gets the policy combining results of multiple handlers applicable to a single interaction
+     *
+     * @return The policy
+     */
+    public ResultPolicy getResultPolicy() {
+        return resultPolicy;
+    }
+
+    /**
+     * Sets the policy combining results of multiple handlers applicable to a single interaction, e.g. select options
+     * of a multi-select menu. {@link ResultPolicy#LAST} by default.
+     *
+     * @param resultPolicy The policy
+     * @return This interactable message
+     */
+    public InteractableMessage setResultPolicy(@NonNull ResultPolicy resultPolicy) {
+        this.resultPolicy = resultPolicy;
+        return this;
+    }
+
+    /**
+     * Gets the executor running multiple applicable handlers concurrently
+     *
+     * @return The executor or null if handlers run serially
+     */
+    public Executor getHandlerExecutor() {
+        return handlerExecutor;
+    }
+
+    /**
+     * Sets the executor running multiple handlers applicable to a single interaction concurrently, e.g. select options
+     * of a multi-select menu. Their results are combined using the {@link #getResultPolicy()}. Handlers must be
+     * thread-safe and should not acknowledge the interaction more than once. Serial by default.
+     * <p>
+     * The dispatching thread waits for the handlers while holding the dispatch lock of this interactable, so the
+     * executor must be dedicated to handlers. Never pass the executor processing events (see
+     * {@link InteractableListener#InteractableListener(Executor)}) or a shared pool like
+     * {@link java.util.concurrent.ForkJoinPool#commonPool()}, as handlers queued behind blocked dispatching threads
+     * could starve. The wait is bounded by the acknowledgement deadline of the interaction (see
+     * {@link InteractionEventContext#getDeadlineMillis()}); handlers still running after it are logged and count as
+     * {@link Result#KEEP} until they finish. The next interaction with this message waits for them, and the message is
+     * removed once they finish if their results combine to {@link Result#REMOVE}.
+     * </p>
+     *
+     * @param handlerExecutor The executor or null to run handlers serially on the dispatching thread
+     * @return This interactable message
+     */
+    public InteractableMessage setHandlerExecutor(Executor handlerExecutor) {
+        this.handlerExecutor = handlerExecutor;
+        return this;
+    }
+
+    /**
+     * Checks if the components of the message are disabled when it expires
+     *
+     * @return true if enabled, false otherwise
+     */
+    public boolean isDisableOnExpiry() {
+        return disableOnExpiry;
+    }
+
+    /**
+     * Sets whether the components of the message should be disabled when it expires. The message must be known, see
+     * {@link #setMessage(Message)} and {@link #registerOnCompleted()}.
+     *
+     * @param disableOnExpiry true to disable the components on expiry
+     * @return This interactable message
+     */
+    public InteractableMessage setDisableOnExpiry(boolean disableOnExpiry) {
+        this.disableOnExpiry = disableOnExpiry;
+        return this;
+    }
+
+    /**
+     * Gets the priority of disabling the components among other expired messages
+     *
+     * @return The priority, higher goes first
+     */
+    public int getDisablePriority() {
+        return disablePriority;
+    }
+
+    /**
+     * Sets the priority of disabling the components among other expired messages, zero by default
+     *
+     * @param disablePriority The priority, higher goes first
+     * @return This interactable message
+     */
+    public InteractableMessage setDisablePriority(int disablePriority) {
+        this.disablePriority = disablePriority;
+        return this;
+    }
+
+    /**
+     * Gets the ID of the message
+     *
+     * @return The message ID or 0 if unknown
+     */
+    public long getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * Gets the ID of the channel of the message
+     *
+     * @return The channel ID or 0 if unknown
+     */
+    public long getMessageChannelId() {
+        return messageChannelId;
+    }
+
+    /**
+     * Sets the message this interactable is attached to. Only the IDs of the message are remembered; they are updated
+     * automatically on every interaction. Sets the guild and channel of the message as the {@link #getScope()} unless
+     * a scope is already set.
+     *
+     * @param message The message or null to forget it
+     * @return This interactable message
+     */
+    public InteractableMessage setMessage(Message message) {
+        if (message == null) {
+            messageId = 0;
+            return this;
+        }
+        rememberMessage(message);
+        if (scope == null) {
+            scope = InteractableScope.of(0, message.isFromGuild() ? message.getGuild().getIdLong() : 0,
+                message.getChannelIdLong());
+        }
+        return this;
+    }
+
+    /**
+     * Sets the interaction hook of the message, required to edit ephemeral messages. Only the token of the hook is
+     * remembered; it is updated automatically on every interaction. Sets the user, guild and channel of the hook's
+     * interaction as the {@link #getScope()} unless a scope is already set.
+     *
+     * @param interactionHook The interaction hook or null to forget it
+     * @return This interactable message
+     */
+    public InteractableMessage setInteractionHook(InteractionHook interactionHook) {
+        if (interactionHook == null) {
+            interactionToken = null;
+            return this;
+        }
+        rememberInteractionHook(interactionHook);
+        if (scope == null) {
+            scope = InteractableScope.of(interactionHook.getInteraction());
+        }
+        return this;
+    }
+
+    /**
+     * Remembers the IDs of the message
+     *
+     * @param message The message
+     */
+    protected void rememberMessage(Message message) {
+        jda = message.getJDA();
+        messageChannelId = message.getChannelIdLong();
+        ephemeral = message.isEphemeral();
+        messageId = message.getIdLong();
+    }
+
+    /**
+     * Remembers the token of the interaction hook
+     *
+     * @param interactionHook The interaction hook
+     */
+    protected void rememberInteractionHook(InteractionHook interactionHook) {
+        jda = interactionHook.getJDA();
+        if (messageChannelId == 0) {
+            messageChannelId = interactionHook.getInteraction().getChannelIdLong();
+        }
+        interactionTokenExpiresAtMillis = interactionHook.getExpirationTimestamp();
+        interactionToken = interactionHook.getInteraction().getToken();
+    }
+
+    /**
+     * Creates a rest action that retrieves the current state of the message and edits it with all of its components
+     * disabled, so edits made by handlers are kept. The message is edited using the last interaction token while it's
+     * valid, otherwise using its channel; ephemeral messages can only be edited using the token.
+     *
+     * @return The rest action or null if the message is unknown or can't be edited anymore
+     */
+    public RestAction<?> createDisableComponentsAction() {
+        JDA currentJda = jda;
+        if (currentJda == null) {
+            return null;
+        }
+
+        String token = interactionToken;
+        if (token != null && System.currentTimeMillis() < interactionTokenExpiresAtMillis) {
+            InteractionHook hook = InteractionHook.from(currentJda, token);
+            return hook.retrieveOriginal()
+                .flatMap(original -> hook.editOriginalComponents(disableComponents(original.getComponents())));
+        }
+
+        long id = messageId;
+        if (id == 0 || ephemeral) {
+            return null;
+        }
+        MessageChannel channel = currentJda.getChannelById(MessageChannel.class, messageChannelId);
+        if (channel == null) {
+            return null;
+        }
+        return channel.retrieveMessageById(id)
+            .flatMap(current -> channel.editMessageComponentsById(id, disableComponents(current.getComponents())));
+    }
+
+    /**
+     * Disables all components which can be disabled
+     *
+     * @param components Top-level components of the message
+     * @return Disabled components
+     */
+    protected static List<MessageTopLevelComponent> disableComponents(
+        List<? extends MessageTopLevelComponent> components
+    ) {
+        List<MessageTopLevelComponent> disabled = new ArrayList<>(components.size());
+        for (MessageTopLevelComponent component : components) {
+            if (component instanceof IDisableable) {
+                disabled.add((MessageTopLevelComponent) ((IDisableable) component).asDisabled());
+            } else {
+                disabled.add(component);
+            }
+        }
+        return disabled;
+    }
+
     @Override
     public Result process(InteractionEventContext ctx) {
         if (super.process(ctx) == Result.IGNORE) {
@@ -87,23 +637,252 @@ public class InteractableMessage extends Interactable<InteractableMessage> {
         }
 
         Result result = Result.NOT_PROCESSED;
+        InteractionTable table = getInteractionTable();
+        Executor executor = handlerExecutor;
+        // Applicable handlers are collected for the fan-out instead of running them right away
+        List<InteractionEntry> applicable = executor != null ? new ArrayList<>() : null;
+
+        switch (ctx.getInteractionType()) {
+            case STRING_SELECT_MENU: {
+                result = processCandidates(table.byCustomId.get(ctx.getCustomId()), ctx, result, applicable);
+                List<String> values = ctx.getStringSelectInteractionEvent().getValues();
+                for (int index = 0; index < values.size(); index++) {
+                    result = processCandidates(table.bySelectValue.get(values.get(index)), ctx, result, applicable);
+                }
+                break;
+            }
+            case MODAL_SUBMITTED:
+                break;
+            default:
+                result = processCandidates(table.byCustomId.get(ctx.getCustomId()), ctx, result, applicable);
+                break;
+        }
+
+        if (applicable != null) {
+            result = processConcurrently(applicable, ctx, executor);
+        }
+
+        if (result != Result.NOT_PROCESSED) {
+            Message interacted = ctx.isModalInteraction() ? null : ctx.getInteractedMessage();
+            if (interacted != null) {
+                rememberMessage(interacted);
+            }
+            if (ctx.getInteraction() instanceof IDeferrableCallback) {
+                rememberInteractionHook(((IDeferrableCallback) ctx.getInteraction()).getHook());
+            }
+            publishInteraction(ctx);
+        }
+
+        return result;
+    }
 
-        for (Map.Entry<Interaction<?, ?>, InteractionHandler<InteractableMessage, ?>> entry : interactions.entrySet()) {
-            // Interaction<Component, Event>
-            Interaction interaction = entry.getKey();
-            // InteractionHandler<Event>
-            InteractionHandler handler = entry.getValue();
+    /**
+     * Runs handlers of the candidate interactions applicable to the event
+     *
+     * @param candidates Candidates looked up in the {@link #interactionTable}, may be null
+     * @param ctx        The event context
+     * @param result     Result so far
+     * @param applicable List to collect applicable candidates to instead of running them, or null to run them
+     * @return Result so far combined with results of applicable handlers using the {@link #getResultPolicy()}
+     */
+    protected Result processCandidates(
+        InteractionEntry[] candidates,
+        InteractionEventContext ctx,
+        Result result,
+        List<InteractionEntry> applicable
+    ) {
+        if (candidates == null) {
+            return result;
+        }
 
-            if (isApplicable(interaction, ctx)) {
-                // #getInteraction() => Event
-                result = (Result) handler.apply(this, ctx.getInteraction());
+        for (InteractionEntry entry : candidates) {
+            if (isApplicable(entry.interaction, ctx)) {
+                if (applicable != null) {
+                    applicable.add(entry);
+                } else {
+                    result = resultPolicy.combine(result, runHandler(entry, ctx));
+                }
                 // No breaking - allows multiple interactions to be processed
             }
         }
+        return result;
+    }
 
+    /**
+     * Runs the applicable handlers concurrently on the executor. The last handler runs on the current thread, which
+     * waits for the others until the acknowledgement deadline of the interaction, so the latency is that of the
+     * slowest handler. Handlers still running after the deadline count as {@link Result#KEEP} for now, see
+     * {@link #awaitLate(List, Result[], Result, InteractionEventContext, List)}. All handlers run even if some of them
+     * throw an exception; the first exception is rethrown afterward.
+     *
+     * @param applicable Applicable handlers in order of dispatch
+     * @param ctx        The event context
+     * @param executor   The executor
+     * @return Results combined in order of dispatch using the {@link #getResultPolicy()}
+     */
+    protected Result processConcurrently(
+        List<InteractionEntry> applicable,
+        InteractionEventContext ctx,
+        Executor executor
+    ) {
+        int count = applicable.size();
+        if (count == 0) {
+            return Result.NOT_PROCESSED;
+        }
+
+        List<CompletableFuture<Result>> futures = new ArrayList<>(count);
+        for (int index = 0; index < count - 1; index++) {
+            InteractionEntry entry = applicable.get(index);
+            try {
+                futures.add(CompletableFuture.supplyAsync(() -> runHandler(entry, ctx), executor));
+            } catch (RejectedExecutionException exception) {
+                futures.add(runHandlerInline(entry, ctx));
+            }
+        }
+        futures.add(runHandlerInline(applicable.get(count - 1), ctx));
+
+        ResultPolicy policy = resultPolicy;
+        Result result = Result.NOT_PROCESSED;
+        Result[] results = new Result[count];
+        List<Integer> pending = null;
+        RuntimeException failure = null;
+        long deadline = ctx.getDeadlineMillis();
+        for (int index = 0; index < count; index++) {
+            try {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                results[index] = futures.get(index).get(remaining, TimeUnit.MILLISECONDS);
+                result = policy.combine(result, results[index]);
+            } catch (TimeoutException | InterruptedException exception) {
+                if (exception instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                if (pending == null) {
+                    pending = new ArrayList<>();
+                }
+                pending.add(index);
+                result = policy.combine(result, Result.KEEP);
+            } catch (ExecutionException exception) {
+                RuntimeException cause = exception.getCause() instanceof RuntimeException
+                    ? (RuntimeException) exception.getCause()
+                    : new CompletionException(exception.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+
+        if (pending != null) {
+            log.warn("{} of {} handlers of interactable {} are still running after the acknowledgement deadline of "
+                + "interaction {}, the next interaction waits for them", pending.size(), count, id, ctx.getCustomId());
+            awaitLate(futures, results, result, ctx, pending);
+        }
+        if (failure != null) {
+            throw failure;
+        }
         return result;
     }
 
+    /**
+     * Tracks the handlers still running after the acknowledgement deadline. The next interaction waits for them (see
+     * {@link #awaitLateHandlers()}); once all of them finish, the results of all handlers are combined again and the
+     * message is removed if they combine to {@link Result#REMOVE} but the returned result did not.
+     *
+     * @param futures  Futures of all handlers in order of dispatch
+     * @param results  Results of the handlers finished in time, filled in by the late handlers
+     * @param returned Result returned for the interaction
+     * @param ctx      The event context
+     * @param pending  Indexes of the handlers still running
+     */
+    protected void awaitLate(
+        List<CompletableFuture<Result>> futures,
+        Result[] results,
+        Result returned,
+        InteractionEventContext ctx,
+        List<Integer> pending
+    ) {
+        beginLateHandlers(pending.size());
+        AtomicInteger running = new AtomicInteger(pending.size());
+        for (int index : pending) {
+            futures.get(index).whenComplete((late, error) -> {
+                if (error != null) {
+                    log.error("Handler of interactable {} failed after the acknowledgement deadline of interaction {}",
+                        id, ctx.getCustomId(), error);
+                }
+                results[index] = error == null ? late : Result.NOT_PROCESSED;
+                if (running.decrementAndGet() == 0) {
+                    completeLate(results, returned, pending.size());
+                }
+            });
+        }
+    }
+
+    /**
+     * Applies the results of all handlers once the late ones finish, before the next interaction may be processed
+     *
+     * @param results  Results of all handlers in order of dispatch
+     * @param returned Result returned for the interaction
+     * @param count    Number of the late handlers
+     */
+    private void completeLate(Result[] results, Result returned, int count) {
+        ResultPolicy policy = resultPolicy;
+        Result result = Result.NOT_PROCESSED;
+        for (Result handlerResult : results) {
+            // Null for handlers which threw an exception in time
+            if (handlerResult != null) {
+                result = policy.combine(result, handlerResult);
+            }
+        }
+
+        synchronized (dispatchLock) {
+            try {
+                if (result == Result.REMOVE && returned != Result.REMOVE
+                    && InteractableListener.removeProcessedLate(this)) {
+                    log.debug("Removed interactable {} as requested by handlers finished after the deadline", id);
+                }
+            } finally {
+                endLateHandlers(count);
+            }
+        }
+    }
+
+    /**
+     * Runs the handler on the current thread, capturing its outcome
+     *
+     * @param entry The interaction and its handler
+     * @param ctx   The event context
+     * @return Completed future of the result
+     */
+    private CompletableFuture<Result> runHandlerInline(InteractionEntry entry, InteractionEventContext ctx) {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        try {
+            future.complete(runHandler(entry, ctx));
+        } catch (RuntimeException exception) {
+            future.completeExceptionally(exception);
+        }
+        return future;
+    }
+
+    /**
+     * Runs the handler of the interaction
+     *
+     * @param entry The interaction and its handler
+     * @param ctx   The event context
+     * @return Result of the handler
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    protected Result runHandler(InteractionEntry entry, InteractionEventContext ctx) {
+        // InteractionHandler<Event>
+        InteractionHandler handler = entry.handler;
+        // #getInteraction() => Event
+        try (InteractionSpan ignored = InteractionTracing.trace(TraceStage.HANDLER, ctx);
+            SlowHandlerDetector.Watch watch = InteractableListener.getSlowHandlerDetector()
+                .watch(this, ctx.getCustomId())) {
+            return (Result) handler.apply(this, ctx.getInteraction());
+        }
+    }
+
     /**
      * Determines if the interaction is applicable to this interactable message based on the interaction type and
      * context.
@@ -136,8 +915,8 @@ public class InteractableMessage extends Interactable<InteractableMessage> {
                             List<SelectOption> selectOptions = ctx.getStringSelectInteractionEvent()
                                 .getInteraction()
                                 .getSelectedOptions();
-                            for (SelectOption selectedOption : selectOptions) {
-                                if (interactionValue.equals(selectedOption.getValue())) {
+                            for (int index = 0; index < selectOptions.size(); index++) {
+                                if (interactionValue.equals(selectOptions.get(index).getValue())) {
                                     return true;
                                 }
                             }
@@ -164,4 +943,84 @@ public class InteractableMessage extends Interactable<InteractableMessage> {
 
         return false;
     }
+
+    /**
+     * Interaction and its handler in the {@link #interactionTable}
+     */
+    protected static final class InteractionEntry {
+
+        protected final Interaction<?, ?> interaction;
+        protected final InteractionHandler<InteractableMessage, ?> handler;
+
+        protected InteractionEntry(Interaction<?, ?> interaction, InteractionHandler<InteractableMessage, ?> handler) {
+            this.interaction = interaction;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * Immutable lookup table of interactions. Buttons and select menus are keyed by their custom IDs, select options
+     * by their values. The maps are never modified after compiling.
+     */
+    protected static final class InteractionTable {
+
+        private static final InteractionEntry[] NO_ENTRIES = new InteractionEntry[0];
+
+        protected final InteractionEntry[] entries;
+        protected final Map<String, InteractionEntry[]> byCustomId;
+        protected final Map<String, InteractionEntry[]> bySelectValue;
+
+        private InteractionTable(
+            InteractionEntry[] entries,
+            Map<String, InteractionEntry[]> byCustomId,
+            Map<String, InteractionEntry[]> bySelectValue
+        ) {
+            this.entries = entries;
+            this.byCustomId = byCustomId;
+            this.bySelectValue = bySelectValue;
+        }
+
+        /**
+         * Compiles the table. Must be called while holding the monitor of the interactions.
+         *
+         * @param interactions Interactions and their handlers
+         * @return The table
+         */
+        protected static InteractionTable compile(
+            Map<Interaction<?, ?>, InteractionHandler<InteractableMessage, ?>> interactions
+        ) {
+            if (interactions.isEmpty()) {
+                return new InteractionTable(NO_ENTRIES, Collections.emptyMap(), Collections.emptyMap());
+            }
+
+            InteractionEntry[] entries = new InteractionEntry[interactions.size()];
+            Map<String, InteractionEntry[]> byCustomId = new HashMap<>();
+            Map<String, InteractionEntry[]> bySelectValue = new HashMap<>();
+            int index = 0;
+
+            for (Map.Entry<Interaction<?, ?>, InteractionHandler<InteractableMessage, ?>> mapEntry
+                : interactions.entrySet()) {
+                InteractionEntry entry = new InteractionEntry(mapEntry.getKey(), mapEntry.getValue());
+                entries[index++] = entry;
+
+                String key = entry.interaction.getCustomId();
+                if (key != null) {
+                    append(entry.interaction.isSelectOption() ? bySelectValue : byCustomId, key, entry);
+                }
+            }
+
+            return new InteractionTable(entries, byCustomId, bySelectValue);
+        }
+
+        private static void append(Map<String, InteractionEntry[]> map, String key, InteractionEntry entry) {
+            InteractionEntry[] existing = map.get(key);
+            if (existing == null) {
+                map.put(key, new InteractionEntry[] {entry});
+                return;
+            }
+            InteractionEntry[] extended = Arrays.copyOf(existing, existing.length + 1);
+            extended[existing.length] = entry;
+            map.put(key, extended);
+        }
+    }
 }
@@ -1,12 +1,24 @@
 package enterprises.iwakura.jdainteractables.components;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import enterprises.iwakura.jdainteractables.ForwardedInteraction;
+import enterprises.iwakura.jdainteractables.InteractableListener;
 import enterprises.iwakura.jdainteractables.InteractionEventContext;
 import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
+import enterprises.iwakura.jdainteractables.InteractionIds;
 import enterprises.iwakura.jdainteractables.InteractionRule;
+import enterprises.iwakura.jdainteractables.InteractionSpan;
+import enterprises.iwakura.jdainteractables.InteractionTracing;
 import enterprises.iwakura.jdainteractables.InteractionType;
+import enterprises.iwakura.jdainteractables.RegistrySnapshot;
+import enterprises.iwakura.jdainteractables.SlowHandlerDetector;
+import enterprises.iwakura.jdainteractables.TraceStage;
+import lombok.NonNull;
 import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
 import net.dv8tion.jda.api.modals.Modal;
 import net.dv8tion.jda.api.modals.Modal.Builder;
@@ -35,6 +47,16 @@ public class InteractableModal extends Interactable<InteractableModal> {
      */
     protected final Consumer<ModalInteractionEvent> onModalClosed;
 
+    /**
+     * ID of the modal, carries the owner node ID if set, see {@link InteractionIds}
+     */
+    protected final String modalId = InteractionIds.withNode(id.toString());
+
+    /**
+     * Function to call when the modal submission is forwarded from another node
+     */
+    protected volatile Consumer<ForwardedInteraction> onModalForwarded;
+
     /**
      * Constructs a new interactable modal with specified callback for when the modal is closed. You must use the
      * {@link #useModal(Builder)} method to set the modal builder to use with this interactable modal.
@@ -57,7 +79,26 @@ public class InteractableModal extends Interactable<InteractableModal> {
      */
     public InteractableModal(Modal.Builder modalBuilder, Consumer<ModalInteractionEvent> onModalClosed) {
         this.onModalClosed = onModalClosed;
-        modalBuilder.setId(this.id.toString());
+        modalBuilder.setId(modalId);
+    }
+
+    /**
+     * Constructs a new interactable modal with specified ID, e.g. when restoring it from a registry snapshot (see
+     * {@link RegistrySnapshot.Restorer}), modal builder and callback for when the modal is closed. Sets the id of the
+     * modal builder to the modal ID derived from the specified ID.
+     *
+     * @param id            The ID
+     * @param modalBuilder  The modal builder to use
+     * @param onModalClosed The callback to call when the modal is closed
+     */
+    public InteractableModal(
+        @NonNull UUID id,
+        Modal.Builder modalBuilder,
+        Consumer<ModalInteractionEvent> onModalClosed
+    ) {
+        super(id);
+        this.onModalClosed = onModalClosed;
+        modalBuilder.setId(modalId);
     }
 
     /**
@@ -72,16 +113,69 @@ public class InteractableModal extends Interactable<InteractableModal> {
      */
     @Deprecated
     public InteractableModal useModal(Modal.Builder modalBuilder) {
-        modalBuilder.setId(this.id.toString());
+        modalBuilder.setId(modalId);
         return this;
     }
 
+    /**
+     * Sets the callback for when the modal submission is forwarded from another node. The interaction is already
+     * acknowledged, respond using {@link ForwardedInteraction#getHook(net.dv8tion.jda.api.JDA)}. If the modal has
+     * interaction rules, forwarded submissions are refused, see {@link #canInteractForwarded(ForwardedInteraction)}.
+     *
+     * @param onModalForwarded The callback
+     * @return This interactable modal
+     */
+    public InteractableModal onForwarded(Consumer<ForwardedInteraction> onModalForwarded) {
+        this.onModalForwarded = onModalForwarded;
+        return this;
+    }
+
+    /**
+     * Gets the ID of the modal
+     *
+     * @return The modal ID
+     */
+    public String getModalId() {
+        return modalId;
+    }
+
+    @Override
+    public Collection<String> getCustomIds() {
+        return Collections.singletonList(modalId);
+    }
+
+    @Override
+    public Result processForwarded(ForwardedInteraction forwarded) {
+        if (forwarded.getType() != InteractionType.MODAL_SUBMITTED || !modalId.equals(forwarded.getCustomId())) {
+            return Result.NOT_PROCESSED;
+        }
+
+        Consumer<ForwardedInteraction> callback = onModalForwarded;
+        if (callback == null) {
+            warnUnhandledForwarded(forwarded);
+            return Result.NOT_PROCESSED;
+        }
+        if (!canInteractForwarded(forwarded)) {
+            return Result.NOT_PROCESSED;
+        }
+        try (SlowHandlerDetector.Watch watch = InteractableListener.getSlowHandlerDetector()
+            .watch(this, modalId)) {
+            callback.accept(forwarded);
+        }
+        return Result.REMOVE;
+    }
+
     @Override
     public Result process(InteractionEventContext ctx) {
         if (ctx.getInteractionType() == InteractionType.MODAL_SUBMITTED) {
             ModalInteractionEvent modalEvent = ctx.getModalInteractionEvent();
-            if (modalEvent.getModalId().equals(id.toString())) {
-                onModalClosed.accept(modalEvent);
+            if (modalEvent.getModalId().equals(modalId)) {
+                try (InteractionSpan ignored = InteractionTracing.trace(TraceStage.HANDLER, ctx);
+                    SlowHandlerDetector.Watch watch = InteractableListener.getSlowHandlerDetector()
+                        .watch(this, modalId)) {
+                    onModalClosed.accept(modalEvent);
+                }
+                publishInteraction(ctx);
                 // Always remove after processing as modals can be submitted only once
                 return Result.REMOVE;
             }
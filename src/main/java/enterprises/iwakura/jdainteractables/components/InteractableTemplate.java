@@ -0,0 +1,265 @@
+package enterprises.iwakura.jdainteractables.components;
+
+import java.util.function.BiFunction;
+
+import enterprises.iwakura.jdainteractables.InteractableListener;
+import enterprises.iwakura.jdainteractables.InteractionEventContext;
+import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
+import enterprises.iwakura.jdainteractables.InteractionRule;
+import enterprises.iwakura.jdainteractables.InteractionSpan;
+import enterprises.iwakura.jdainteractables.InteractionTracing;
+import enterprises.iwakura.jdainteractables.SlowHandlerDetector;
+import enterprises.iwakura.jdainteractables.TraceStage;
+import lombok.Getter;
+import lombok.NonNull;
+import net.dv8tion.jda.api.components.buttons.Button;
+import net.dv8tion.jda.api.components.buttons.ButtonStyle;
+import net.dv8tion.jda.api.components.selections.EntitySelectMenu;
+import net.dv8tion.jda.api.components.selections.StringSelectMenu;
+import net.dv8tion.jda.api.modals.Modal;
+
+/**
+ * Represents a shared interaction template. Contrary to {@link InteractableMessage}, a template is registered only
+ * once and can be used on any number of messages. Components created by the template carry its key and an optional
+ * per-message payload in their custom ID, so the template itself holds no per-message state.
+ * <p>
+ * Templates have a single handler and a single set of {@link InteractionRule}s shared by all of their components.
+ * The handler receives the interaction event context and the payload of the interacted component.
+ * </p><p>
+ * Templates never expire and are not removed by {@link Result#REMOVE}. Use
+ * {@link InteractableListener#removeTemplate(InteractableTemplate)} to unregister the template.
+ * </p>
+ * <pre>{@code
+ * InteractableTemplate deleteTemplate = new InteractableTemplate("delete", (ctx, payload) -> {
+ *     ctx.getInteractedMessage().delete().queue();
+ *     return Result.KEEP;
+ * }).registerNow();
+ *
+ * // For every message
+ * Button deleteButton = deleteTemplate.createButton(ButtonStyle.DANGER, "Delete", null);
+ * }</pre>
+ */
+@Getter
+public class InteractableTemplate extends Interactable<InteractableTemplate> {
+
+    /**
+     * Prefix of custom IDs created by templates
+     */
+    public static final String CUSTOM_ID_PREFIX = "jdai:";
+
+    /**
+     * Separator between the template key and the payload
+     */
+    public static final char PAYLOAD_SEPARATOR = ':';
+
+    /**
+     * Maximum length of a custom ID allowed by Discord
+     */
+    public static final int MAX_CUSTOM_ID_LENGTH = 100;
+
+    /**
+     * Unique key of the template
+     */
+    protected final String key;
+
+    /**
+     * Handler shared by all components of the template
+     */
+    protected final Handler handler;
+
+    /**
+     * Creates new interactable template
+     *
+     * @param key     Unique key of the template. Must not be empty nor contain {@link #PAYLOAD_SEPARATOR}.
+     * @param handler Handler shared by all components of the template
+     * @throws IllegalArgumentException if the key is invalid
+     */
+    public InteractableTemplate(@NonNull String key, @NonNull Handler handler) {
+        if (key.isEmpty() || key.indexOf(PAYLOAD_SEPARATOR) != -1) {
+            throw new IllegalArgumentException("Template key must not be empty nor contain '" + PAYLOAD_SEPARATOR
+                + "': " + key);
+        }
+        if (CUSTOM_ID_PREFIX.length() + key.length() + 1 > MAX_CUSTOM_ID_LENGTH) {
+            throw new IllegalArgumentException("Template key is too long: " + key);
+        }
+        this.key = key;
+        this.handler = handler;
+    }
+
+    /**
+     * Parses the template key from the custom ID
+     *
+     * @param customId The custom ID, may be null
+     * @return The template key or null if the custom ID was not created by a template
+     */
+    public static String parseKey(String customId) {
+        if (customId == null || !customId.startsWith(CUSTOM_ID_PREFIX)) {
+            return null;
+        }
+
+        int separatorIndex = customId.indexOf(PAYLOAD_SEPARATOR, CUSTOM_ID_PREFIX.length());
+        if (separatorIndex == -1) {
+            return null;
+        }
+
+        return customId.substring(CUSTOM_ID_PREFIX.length(), separatorIndex);
+    }
+
+    /**
+     * Creates a custom ID for this template with specified payload
+     *
+     * @param payload The payload, may be null
+     * @return The custom ID
+     * @throws IllegalArgumentException if the resulting custom ID exceeds {@link #MAX_CUSTOM_ID_LENGTH}
+     */
+    public String createCustomId(String payload) {
+        String customId = CUSTOM_ID_PREFIX + key + PAYLOAD_SEPARATOR + (payload == null ? "" : payload);
+        if (customId.length() > MAX_CUSTOM_ID_LENGTH) {
+            throw new IllegalArgumentException("Payload is too long, custom ID would have " + customId.length()
+                + " characters, maximum is " + MAX_CUSTOM_ID_LENGTH);
+        }
+        return customId;
+    }
+
+    /**
+     * Gets the payload from the custom ID created by this template
+     *
+     * @param customId The custom ID
+     * @return The payload or null if the custom ID was not created by this template
+     */
+    public String getPayload(String customId) {
+        if (customId == null
+            || !customId.startsWith(CUSTOM_ID_PREFIX)
+            || !customId.startsWith(key, CUSTOM_ID_PREFIX.length())) {
+            return null;
+        }
+
+        int separatorIndex = CUSTOM_ID_PREFIX.length() + key.length();
+        if (customId.length() <= separatorIndex || customId.charAt(separatorIndex) != PAYLOAD_SEPARATOR) {
+            return null;
+        }
+
+        return customId.substring(separatorIndex + 1);
+    }
+
+    /**
+     * Creates a button for this template
+     *
+     * @param buttonStyle Button Style
+     * @param label       Button Label
+     * @param payload     The payload, may be null
+     * @return Button with the template's custom ID
+     */
+    public Button createButton(@NonNull ButtonStyle buttonStyle, String label, String payload) {
+        return Button.of(buttonStyle, createCustomId(payload), label);
+    }
+
+    /**
+     * Creates a button for this template. The ID of the specified button will be replaced.
+     *
+     * @param button  Button, see JDA's wiki for how to construct Button
+     * @param payload The payload, may be null
+     * @return Button with the template's custom ID
+     */
+    public Button createButton(@NonNull Button button, String payload) {
+        return button.withCustomId(createCustomId(payload));
+    }
+
+    /**
+     * Creates a string select menu for this template. The ID of the builder will be replaced.
+     *
+     * @param builder String Select Menu Builder
+     * @param payload The payload, may be null
+     * @return String select menu with the template's custom ID
+     */
+    public StringSelectMenu createStringSelectMenu(@NonNull StringSelectMenu.Builder builder, String payload) {
+        return builder.setCustomId(createCustomId(payload)).build();
+    }
+
+    /**
+     * Creates an entity select menu for this template. The ID of the builder will be replaced.
+     *
+     * @param builder Entity Select Menu Builder
+     * @param payload The payload, may be null
+     * @return Entity select menu with the template's custom ID
+     */
+    public EntitySelectMenu createEntitySelectMenu(@NonNull EntitySelectMenu.Builder builder, String payload) {
+        return builder.setCustomId(createCustomId(payload)).build();
+    }
+
+    /**
+     * Sets the ID of the modal builder to the template's custom ID
+     *
+     * @param modalBuilder The modal builder
+     * @param payload      The payload, may be null
+     * @return The modal builder
+     */
+    public Modal.Builder useModal(@NonNull Modal.Builder modalBuilder, String payload) {
+        return modalBuilder.setId(createCustomId(payload));
+    }
+
+    /**
+     * Registers this template with the {@link InteractableListener}
+     *
+     * @return this template
+     * @throws IllegalArgumentException if another template with the same key is already registered
+     */
+    @Override
+    public InteractableTemplate registerNow() {
+        InteractableListener.addTemplate(this);
+        return this;
+    }
+
+    @Override
+    public Result process(InteractionEventContext ctx) {
+        String payload = getPayload(ctx.getCustomId());
+        if (payload == null) {
+            return Result.NOT_PROCESSED;
+        }
+
+        if (!canInteract(ctx)) {
+            runInteractionDeniedCallbacks(ctx);
+            return Result.IGNORE;
+        }
+
+        Result result;
+        try (InteractionSpan ignored = InteractionTracing.trace(TraceStage.HANDLER, ctx);
+            SlowHandlerDetector.Watch watch = InteractableListener.getSlowHandlerDetector()
+                .watch(this, ctx.getCustomId())) {
+            result = handler.apply(ctx, payload);
+        }
+        publishInteraction(ctx);
+
+        // Templates are shared, so they are never removed by processing
+        return result == Result.REMOVE ? Result.KEEP : result;
+    }
+
+    /**
+     * Templates never expire
+     *
+     * @return false
+     */
+    @Override
+    public boolean isExpired() {
+        return false;
+    }
+
+    /**
+     * Templates never expire
+     *
+     * @return {@link Long#MAX_VALUE}
+     */
+    @Override
+    public long getExpiresAtMillis() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Handler of the template's interactions. Takes the interaction event context and the payload of the interacted
+     * component.
+     */
+    @FunctionalInterface
+    public interface Handler extends BiFunction<InteractionEventContext, String, Result> {
+
+    }
+}
@@ -0,0 +1,350 @@
+package enterprises.iwakura.jdainteractables.components;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+import enterprises.iwakura.jdainteractables.Interaction;
+import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.components.MessageTopLevelComponent;
+import net.dv8tion.jda.api.components.actionrow.ActionRow;
+import net.dv8tion.jda.api.components.buttons.Button;
+import net.dv8tion.jda.api.components.buttons.ButtonStyle;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import net.dv8tion.jda.api.utils.messages.MessageEditBuilder;
+import net.dv8tion.jda.api.utils.messages.MessageEditData;
+
+/**
+ * Represents an interactable paginated message. Pages are rendered lazily by the page renderer only when they are
+ * viewed (or prefetched), and the rendered pages are kept in a bounded LRU cache of this paginator.
+ * <p>
+ * The paginator appends a row of navigation buttons (first, previous, next and last) to the components of each page.
+ * Create the paginator using {@link #of(int, IntFunction)} for synchronous renderers or
+ * {@link #ofAsync(int, IntFunction)} for asynchronous renderers, send the message returned by
+ * {@link #createMessage()} and register the paginator by calling {@link #registerNow()} or by using
+ * {@link #registerOnCompleted()} when calling {@link RestAction#queue(java.util.function.Consumer)}.
+ * </p><p>
+ * Optionally, neighbouring pages can be prefetched in the background using {@link #setPrefetchDistance(int)}.
+ * </p>
+ */
+@Slf4j
+@Getter
+public class Paginator extends InteractableMessage {
+
+    /**
+     * Default number of rendered pages kept in the cache
+     */
+    public static final int DEFAULT_CACHE_SIZE = 8;
+
+    @Getter(AccessLevel.NONE)
+    protected final IntFunction<CompletableFuture<MessageEditData>> pageRenderer;
+    @Getter(AccessLevel.NONE)
+    protected final Map<Integer, CompletableFuture<MessageEditData>> pageCache;
+
+    protected final Button firstButton;
+    protected final Button previousButton;
+    protected final Button nextButton;
+    protected final Button lastButton;
+
+    protected volatile int pageCount;
+    protected volatile int currentPage;
+    protected volatile int cacheSize = DEFAULT_CACHE_SIZE;
+    protected volatile int prefetchDistance;
+    protected volatile Executor prefetchExecutor = ForkJoinPool.commonPool();
+
+    /**
+     * Creates new paginator
+     *
+     * @param pageCount    Number of pages
+     * @param pageRenderer Asynchronous renderer of pages, takes zero-based page index
+     */
+    protected Paginator(int pageCount, @NonNull IntFunction<CompletableFuture<MessageEditData>> pageRenderer) {
+        if (pageCount <= 0) {
+            throw new IllegalArgumentException("Page count must be positive");
+        }
+
+        this.pageCount = pageCount;
+        this.pageRenderer = pageRenderer;
+        this.pageCache = new LinkedHashMap<Integer, CompletableFuture<MessageEditData>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CompletableFuture<MessageEditData>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+        this.firstButton = addInteraction(Interaction.asButton(ButtonStyle.SECONDARY, Emoji.fromUnicode("⏮")),
+            event -> navigate(event, page -> 0));
+        this.previousButton = addInteraction(Interaction.asButton(ButtonStyle.SECONDARY, Emoji.fromUnicode("◀")),
+            event -> navigate(event, page -> page - 1));
+        this.nextButton = addInteraction(Interaction.asButton(ButtonStyle.SECONDARY, Emoji.fromUnicode("▶")),
+            event -> navigate(event, page -> page + 1));
+        this.lastButton = addInteraction(Interaction.asButton(ButtonStyle.SECONDARY, Emoji.fromUnicode("⏭")),
+            event -> navigate(event, page -> this.pageCount - 1));
+    }
+
+    /**
+     * Creates new paginator with synchronous page renderer. The renderer is called on the thread that processes the
+     * interaction, or on the {@link #getPrefetchExecutor()} when prefetching.
+     *
+     * @param pageCount    Number of pages
+     * @param pageRenderer Renderer of pages, takes zero-based page index
+     * @return New paginator
+     */
+    public static Paginator of(int pageCount, @NonNull IntFunction<MessageEditData> pageRenderer) {
+        return new Paginator(pageCount, page -> {
+            CompletableFuture<MessageEditData> future = new CompletableFuture<>();
+            try {
+                future.complete(pageRenderer.apply(page));
+            } catch (Exception exception) {
+                future.completeExceptionally(exception);
+            }
+            return future;
+        });
+    }
+
+    /**
+     * Creates new paginator with asynchronous page renderer
+     *
+     * @param pageCount    Number of pages
+     * @param pageRenderer Asynchronous renderer of pages, takes zero-based page index
+     * @return New paginator
+     */
+    public static Paginator ofAsync(
+        int pageCount,
+        @NonNull IntFunction<CompletableFuture<MessageEditData>> pageRenderer
+    ) {
+        return new Paginator(pageCount, pageRenderer);
+    }
+
+    /**
+     * Renders the current page as a message to be sent
+     *
+     * @return Future of the message with navigation buttons
+     */
+    public CompletableFuture<MessageCreateData> createMessage() {
+        int page = currentPage;
+        CompletableFuture<MessageCreateData> message = renderPage(page).thenApply(MessageCreateData::fromEditData);
+        prefetchAround(page);
+        return message;
+    }
+
+    /**
+     * Renders the page with navigation buttons. The page is taken from the cache if possible.
+     *
+     * @param page Zero-based page index
+     * @return Future of the rendered page with navigation buttons
+     */
+    public CompletableFuture<MessageEditData> renderPage(int page) {
+        return loadPage(page).thenApply(data -> decorate(data, page));
+    }
+
+    /**
+     * Sets the number of rendered pages kept in the cache
+     *
+     * @param cacheSize Number of rendered pages, must be positive
+     * @return This paginator
+     */
+    public Paginator setCacheSize(int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of neighbouring pages on each side of the current page to prefetch in the background. Zero
+     * disables prefetching, which is the default.
+     *
+     * @param prefetchDistance Number of pages on each side
+     * @return This paginator
+     */
+    public Paginator setPrefetchDistance(int prefetchDistance) {
+        if (prefetchDistance < 0) {
+            throw new IllegalArgumentException("Prefetch distance must not be negative");
+        }
+        this.prefetchDistance = prefetchDistance;
+        return this;
+    }
+
+    /**
+     * Sets the executor used for prefetching, {@link ForkJoinPool#commonPool()} by default
+     *
+     * @param prefetchExecutor Executor
+     * @return This paginator
+     */
+    public Paginator setPrefetchExecutor(@NonNull Executor prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+        return this;
+    }
+
+    /**
+     * Sets the number of pages. The current page is moved to the last page if it's out of bounds.
+     *
+     * @param pageCount Number of pages, must be positive
+     * @return This paginator
+     */
+    public Paginator setPageCount(int pageCount) {
+        if (pageCount <= 0) {
+            throw new IllegalArgumentException("Page count must be positive");
+        }
+        synchronized (pageCache) {
+            this.pageCount = pageCount;
+            if (currentPage >= pageCount) {
+                currentPage = pageCount - 1;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Clears the cache of rendered pages, e.g. when the underlying data has changed
+     */
+    public void invalidate() {
+        synchronized (pageCache) {
+            pageCache.clear();
+        }
+    }
+
+    /**
+     * Navigates to the page computed from the current page and edits the message once it's rendered
+     *
+     * @param event      The button interaction event
+     * @param pageMapper Function that computes the target page from the current page
+     * @return {@link Result#KEEP}
+     */
+    protected Result navigate(ButtonInteractionEvent event, IntUnaryOperator pageMapper) {
+        int page;
+        synchronized (pageCache) {
+            page = Math.max(0, Math.min(pageCount - 1, pageMapper.applyAsInt(currentPage)));
+            currentPage = page;
+        }
+
+        event.deferEdit().queue();
+        renderPage(page).whenComplete((data, throwable) -> {
+            if (throwable != null) {
+                log.error("Failed to render page {} of paginator {}", page, id, throwable);
+                return;
+            }
+            // Skip stale renders when the user navigated again in the meantime
+            if (currentPage == page) {
+                event.getHook().editOriginal(data).queue();
+            }
+        });
+        prefetchAround(page);
+
+        return Result.KEEP;
+    }
+
+    /**
+     * Loads the page from the cache or renders it using the page renderer. Failed renders are not cached.
+     *
+     * @param page Zero-based page index
+     * @return Future of the rendered page without navigation buttons
+     */
+    protected CompletableFuture<MessageEditData> loadPage(int page) {
+        final CompletableFuture<MessageEditData> future;
+        synchronized (pageCache) {
+            CompletableFuture<MessageEditData> cached = pageCache.get(page);
+            if (cached != null) {
+                return cached;
+            }
+            future = new CompletableFuture<>();
+            pageCache.put(page, future);
+        }
+
+        try {
+            pageRenderer.apply(page).whenComplete((data, throwable) -> {
+                if (throwable != null) {
+                    evict(page, future);
+                    future.completeExceptionally(throwable);
+                } else {
+                    future.complete(data);
+                }
+            });
+        } catch (Exception exception) {
+            evict(page, future);
+            future.completeExceptionally(exception);
+        }
+
+        return future;
+    }
+
+    /**
+     * Prefetches neighbouring pages that are not cached yet
+     *
+     * @param page Zero-based index of the current page
+     */
+    protected void prefetchAround(int page) {
+        int distance = prefetchDistance;
+        for (int offset = 1; offset <= distance; offset++) {
+            prefetch(page + offset);
+            prefetch(page - offset);
+        }
+    }
+
+    /**
+     * Prefetches the page in the background if it's within bounds and not cached yet
+     *
+     * @param page Zero-based page index
+     */
+    protected void prefetch(int page) {
+        if (page < 0 || page >= pageCount) {
+            return;
+        }
+
+        synchronized (pageCache) {
+            if (pageCache.containsKey(page)) {
+                return;
+            }
+        }
+
+        try {
+            prefetchExecutor.execute(() -> loadPage(page));
+        } catch (Exception exception) {
+            log.warn("Failed to prefetch page {} of paginator {}", page, id, exception);
+        }
+    }
+
+    /**
+     * Appends the navigation buttons to the page
+     *
+     * @param data Rendered page
+     * @param page Zero-based page index
+     * @return Page with navigation buttons
+     */
+    protected MessageEditData decorate(MessageEditData data, int page) {
+        boolean first = page <= 0;
+        boolean last = page >= pageCount - 1;
+
+        MessageEditBuilder builder = MessageEditBuilder.from(data);
+        List<MessageTopLevelComponent> components = new ArrayList<>(builder.getComponents());
+        components.add(ActionRow.of(
+            firstButton.withDisabled(first),
+            previousButton.withDisabled(first),
+            nextButton.withDisabled(last),
+            lastButton.withDisabled(last)
+        ));
+
+        return builder.setComponents(components).build();
+    }
+
+    private void evict(int page, CompletableFuture<MessageEditData> future) {
+        synchronized (pageCache) {
+            pageCache.remove(page, future);
+        }
+    }
+}
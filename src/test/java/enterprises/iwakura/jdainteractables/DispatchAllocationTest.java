@@ -0,0 +1,100 @@
+package enterprises.iwakura.jdainteractables;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
+import enterprises.iwakura.jdainteractables.components.InteractableMessage;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.components.buttons.Button;
+import net.dv8tion.jda.api.components.buttons.ButtonStyle;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.interactions.components.buttons.ButtonInteraction;
+
+/**
+ * Allocation benchmark of the dispatch path. A steady-state button click must not allocate in library code.
+ */
+public class DispatchAllocationTest {
+
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int ITERATIONS = 100_000;
+
+    @Test
+    public void testSteadyStateClickDoesNotAllocate() {
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        InteractableMessage message = new InteractableMessage();
+        Button button = message.addInteraction(Interaction.asButton(ButtonStyle.PRIMARY, "Click"),
+            event -> Result.KEEP);
+        message.registerNow();
+
+        InteractionEventContext ctx = new InteractionEventContext(
+            new ButtonInteractionEvent(stub(JDA.class, null), 0, stub(ButtonInteraction.class, button)));
+
+        try (InteractableListener listener = new InteractableListener(Runnable::run)) {
+            for (int iteration = 0; iteration < WARMUP_ITERATIONS; iteration++) {
+                listener.dispatch(ctx);
+            }
+
+            long threadId = Thread.currentThread().getId();
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+                listener.dispatch(ctx);
+            }
+            long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+            // Less than a byte per dispatch leaves room for the measurement itself
+            assertTrue(allocated < ITERATIONS, "Dispatching allocated " + allocated + " bytes in " + ITERATIONS
+                + " iterations");
+        } finally {
+            InteractableListener.removeAll(Collections.singletonList(message));
+        }
+    }
+
+    /**
+     * Creates a stub of the interface returning the button for component getters and defaults otherwise
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Button button) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getButton":
+                case "getComponent":
+                    return button;
+                case "getCustomId":
+                case "getComponentId":
+                    return button.getCustomId();
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName() + " stub";
+                default:
+                    break;
+            }
+
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+                return false;
+            }
+            if (returnType == int.class) {
+                return 0;
+            }
+            if (returnType == long.class) {
+                return 0L;
+            }
+            return null;
+        });
+    }
+}
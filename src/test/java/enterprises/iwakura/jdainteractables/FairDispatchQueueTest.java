@@ -0,0 +1,117 @@
+package enterprises.iwakura.jdainteractables;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Deficit round-robin ordering of {@link FairDispatchQueue}
+ */
+public class FairDispatchQueueTest {
+
+    @Test
+    public void testSingleTenantIsOrderedNaturally() {
+        FairDispatchQueue<Integer> queue = new FairDispatchQueue<>(tenant -> FairDispatchQueue.DEFAULT_WEIGHT);
+        queue.add(1, 3);
+        queue.add(1, 1);
+        queue.add(1, 2);
+
+        assertEquals(1, queue.poll());
+        assertEquals(2, queue.poll());
+        assertEquals(3, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.getActiveTenantCount());
+    }
+
+    @Test
+    public void testFloodingTenantDoesNotDelayOthers() {
+        FairDispatchQueue<Integer> queue = new FairDispatchQueue<>(tenant -> FairDispatchQueue.DEFAULT_WEIGHT);
+        for (int index = 0; index < 100; index++) {
+            queue.add(1, element(1, index));
+        }
+        queue.add(2, element(2, 0));
+        queue.add(3, element(3, 0));
+
+        assertEquals("1231111", pollTenants(queue, 7));
+        assertEquals(95, queue.size());
+    }
+
+    @Test
+    public void testTenantsAreServedProportionallyToWeights() {
+        Map<Long, Double> weights = new HashMap<>();
+        weights.put(1L, 2.0);
+        weights.put(2L, 1.0);
+        FairDispatchQueue<Integer> queue = new FairDispatchQueue<>(weights::get);
+        for (int index = 0; index < 6; index++) {
+            queue.add(1, element(1, index));
+            queue.add(2, element(2, index));
+        }
+
+        assertEquals("112112112222", pollTenants(queue, 12));
+    }
+
+    @Test
+    public void testWeightsBelowOneAccumulateCredit() {
+        Map<Long, Double> weights = new HashMap<>();
+        weights.put(1L, 0.25);
+        weights.put(2L, 1.0);
+        FairDispatchQueue<Integer> queue = new FairDispatchQueue<>(weights::get);
+        for (int index = 0; index < 10; index++) {
+            queue.add(1, element(1, index));
+            queue.add(2, element(2, index));
+        }
+
+        assertEquals("2221222212", pollTenants(queue, 10));
+    }
+
+    @Test
+    public void testTinyWeightsDoNotSpin() {
+        Map<Long, Double> weights = new HashMap<>();
+        weights.put(1L, 1e-12);
+        weights.put(2L, 3e-12);
+        FairDispatchQueue<Integer> queue = new FairDispatchQueue<>(weights::get);
+        for (int index = 0; index < 4; index++) {
+            queue.add(1, element(1, index));
+            queue.add(2, element(2, index));
+        }
+
+        // Without skipping idle rounds, each element would take about 10^12 iterations
+        String tenants = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> pollTenants(queue, 8));
+        assertEquals("22212111", tenants);
+    }
+
+    @Test
+    public void testNonPositiveWeightsFallBackToDefault() {
+        FairDispatchQueue<Integer> queue = new FairDispatchQueue<>(tenant -> tenant == 1 ? 0 : -1);
+        for (int index = 0; index < 2; index++) {
+            queue.add(1, element(1, index));
+            queue.add(2, element(2, index));
+        }
+
+        assertEquals("1212", pollTenants(queue, 4));
+    }
+
+    /**
+     * Encodes the tenant into the element, keeping elements of a tenant in order of addition
+     */
+    private static int element(long tenant, int index) {
+        return (int) tenant * 1000 + index;
+    }
+
+    /**
+     * Polls the elements and returns their tenants
+     */
+    private static String pollTenants(FairDispatchQueue<Integer> queue, int count) {
+        StringBuilder tenants = new StringBuilder();
+        for (int index = 0; index < count; index++) {
+            tenants.append(queue.poll() / 1000);
+        }
+        return tenants.toString();
+    }
+}
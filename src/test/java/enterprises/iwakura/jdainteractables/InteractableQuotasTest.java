@@ -0,0 +1,120 @@
+package enterprises.iwakura.jdainteractables;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import enterprises.iwakura.jdainteractables.components.InteractableMessage;
+
+/**
+ * Admission of interactables by {@link InteractableQuotas}
+ */
+public class InteractableQuotasTest {
+
+    @Test
+    public void testEvictsOldestOfUser() {
+        InteractableQuotas quotas = new InteractableQuotas().setMaxPerUser(2);
+        InteractableMessage first = track(quotas, InteractableScope.of(1, 10, 100));
+        InteractableMessage second = track(quotas, InteractableScope.of(1, 10, 101));
+        track(quotas, InteractableScope.of(2, 10, 100));
+
+        Set<Interactable<?>> evicted = new LinkedHashSet<>();
+        quotas.admit(scoped(InteractableScope.of(1, 10, 102)), evicted);
+
+        assertEquals(Arrays.asList(first), Arrays.asList(evicted.toArray()));
+        quotas.untrack(first);
+        assertEquals(1, quotas.getUserCount(1));
+        assertTrue(quotas.scopes.containsKey(second));
+    }
+
+    @Test
+    public void testEvictionsCountTowardsAllCaps() {
+        InteractableQuotas quotas = new InteractableQuotas().setMaxPerUser(2).setMaxPerChannel(2);
+        InteractableMessage first = track(quotas, InteractableScope.of(1, 10, 100));
+        InteractableMessage second = track(quotas, InteractableScope.of(2, 10, 100));
+        track(quotas, InteractableScope.of(1, 10, 101));
+
+        // The user's oldest interactable also frees a slot in the channel
+        Set<Interactable<?>> evicted = new LinkedHashSet<>();
+        quotas.admit(scoped(InteractableScope.of(1, 10, 100)), evicted);
+
+        assertEquals(Arrays.asList(first), Arrays.asList(evicted.toArray()));
+        assertTrue(quotas.scopes.containsKey(second));
+    }
+
+    @Test
+    public void testBatchEvictsInOrderOfRegistration() {
+        InteractableQuotas quotas = new InteractableQuotas().setMaxPerGuild(2);
+        InteractableMessage first = track(quotas, InteractableScope.of(1, 10, 100));
+        InteractableMessage second = track(quotas, InteractableScope.of(2, 10, 100));
+        InteractableMessage third = scoped(InteractableScope.of(3, 10, 100));
+        InteractableMessage fourth = scoped(InteractableScope.of(4, 10, 100));
+
+        // Same steps as the registry takes for a batch, victims are untracked before the next admission
+        Set<Interactable<?>> evicted = new LinkedHashSet<>();
+        for (InteractableMessage admitted : Arrays.asList(third, fourth)) {
+            quotas.admit(admitted, evicted);
+            evicted.forEach(quotas::untrack);
+            quotas.track(admitted);
+        }
+
+        assertEquals(Arrays.asList(first, second), Arrays.asList(evicted.toArray()));
+        assertEquals(2, quotas.getGuildCount(10));
+        assertTrue(quotas.scopes.containsKey(third) && quotas.scopes.containsKey(fourth));
+    }
+
+    @Test
+    public void testRejectsWithoutEvicting() {
+        InteractableQuotas quotas = new InteractableQuotas().setMaxPerUser(5).setMaxPerChannel(1)
+            .setPolicy(InteractableQuotas.Policy.REJECT);
+        track(quotas, InteractableScope.of(1, 10, 100));
+
+        InteractableMessage rejected = scoped(InteractableScope.of(1, 10, 100));
+        Set<Interactable<?>> evicted = new LinkedHashSet<>();
+        QuotaExceededException exception = assertThrows(QuotaExceededException.class,
+            () -> quotas.admit(rejected, evicted));
+
+        assertEquals(Arrays.asList(rejected), exception.getRejected());
+        assertTrue(evicted.isEmpty());
+        assertEquals(1, quotas.getChannelCount(100));
+    }
+
+    @Test
+    public void testUnscopedAndUnlimitedAreNotCounted() {
+        InteractableQuotas quotas = new InteractableQuotas().setMaxPerUser(1);
+        track(quotas, InteractableScope.of(1, 0, 100));
+        quotas.track(new InteractableMessage());
+
+        Set<Interactable<?>> evicted = new LinkedHashSet<>();
+        quotas.admit(new InteractableMessage(), evicted);
+        quotas.admit(scoped(InteractableScope.of(2, 0, 100)), evicted);
+
+        assertTrue(evicted.isEmpty());
+        assertEquals(0, quotas.getGuildCount(0));
+        assertEquals(1, quotas.getChannelCount(100));
+    }
+
+    @Test
+    public void testRejectsNegativeLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new InteractableQuotas().setMaxPerGuild(-1));
+    }
+
+    private static InteractableMessage scoped(InteractableScope scope) {
+        InteractableMessage message = new InteractableMessage();
+        message.setScope(scope);
+        return message;
+    }
+
+    private static InteractableMessage track(InteractableQuotas quotas, InteractableScope scope) {
+        InteractableMessage message = scoped(scope);
+        quotas.track(message);
+        return message;
+    }
+}
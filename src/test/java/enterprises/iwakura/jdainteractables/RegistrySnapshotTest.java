@@ -0,0 +1,170 @@
+package enterprises.iwakura.jdainteractables;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
+import enterprises.iwakura.jdainteractables.components.Interactable;
+import enterprises.iwakura.jdainteractables.components.InteractableMessage;
+import net.dv8tion.jda.api.components.buttons.ButtonStyle;
+
+/**
+ * Encoding and decoding of {@link RegistrySnapshot}
+ */
+public class RegistrySnapshotTest {
+
+    @Test
+    public void testRoundTripRestoresIdsCustomIdsAndExpiry() throws IOException {
+        InteractableMessage vote = new InteractableMessage();
+        vote.setHandlerKey("vote");
+        vote.setExpiryDuration(Duration.ofMinutes(10));
+        String yes = vote.addInteraction(Interaction.asButton(ButtonStyle.SUCCESS, "Yes"), event -> Result.KEEP)
+            .getCustomId();
+        String no = vote.addInteraction(Interaction.asButton(ButtonStyle.DANGER, "No"), event -> Result.KEEP)
+            .getCustomId();
+
+        InteractableMessage poll = new InteractableMessage();
+        poll.setHandlerKey("vote");
+        poll.addInteraction(Interaction.asButton(ButtonStyle.PRIMARY, "Vote"), event -> Result.KEEP);
+
+        InteractableMessage unkeyed = new InteractableMessage();
+        unkeyed.addInteraction(Interaction.asButton(ButtonStyle.PRIMARY, "Click"), event -> Result.KEEP);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(2, RegistrySnapshot.write(Arrays.asList(vote, poll, unkeyed), output));
+
+        List<RegistrySnapshot.Entry> entries = new ArrayList<>();
+        Map<String, RegistrySnapshot.Restorer> restorers = new HashMap<>();
+        restorers.put("vote", entry -> {
+            entries.add(entry);
+            InteractableMessage restored = new InteractableMessage(entry.getId());
+            for (String customId : entry.getCustomIds()) {
+                restored.addInteraction(Interaction.asExistingButton(customId), event -> Result.KEEP);
+            }
+            return restored;
+        });
+        List<Interactable<?>> restored = RegistrySnapshot.read(new ByteArrayInputStream(output.toByteArray()),
+            restorers);
+
+        assertEquals(2, restored.size());
+        assertEquals(vote.getId(), restored.get(0).getId());
+        assertEquals(poll.getId(), restored.get(1).getId());
+        assertEquals("vote", restored.get(0).getHandlerKey());
+        assertEquals(new ArrayList<>(vote.getCustomIds()), entries.get(0).getCustomIds());
+        assertTrue(restored.get(0).getCustomIds().containsAll(Arrays.asList(yes, no)));
+
+        long remainingMillis = restored.get(0).getExpiryDuration().toMillis();
+        assertTrue(remainingMillis > Duration.ofMinutes(9).toMillis() && remainingMillis <= Duration.ofMinutes(10)
+            .toMillis(), "Remaining expiry " + remainingMillis);
+    }
+
+    @Test
+    public void testEntriesWithoutRestorerAreSkipped() throws IOException {
+        InteractableMessage first = new InteractableMessage();
+        first.setHandlerKey("unknown");
+        first.addInteraction(Interaction.asButton(ButtonStyle.PRIMARY, "First"), event -> Result.KEEP);
+        InteractableMessage second = new InteractableMessage();
+        second.setHandlerKey("known");
+        second.addInteraction(Interaction.asButton(ButtonStyle.PRIMARY, "Second"), event -> Result.KEEP);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        RegistrySnapshot.write(Arrays.asList(first, second), output);
+
+        Map<String, RegistrySnapshot.Restorer> restorers = Collections.singletonMap("known",
+            entry -> new InteractableMessage(entry.getId()));
+        List<Interactable<?>> restored = RegistrySnapshot.read(new ByteArrayInputStream(output.toByteArray()),
+            restorers);
+
+        assertEquals(1, restored.size());
+        assertEquals(second.getId(), restored.get(0).getId());
+    }
+
+    @Test
+    public void testVarLongRoundTrip() throws IOException {
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE, -1};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (long value : values) {
+            RegistrySnapshot.writeVarLong(output, value);
+        }
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, RegistrySnapshot.readVarLong(input));
+        }
+    }
+
+    @Test
+    public void testLeavesBytesAfterSnapshotUnread() throws IOException {
+        InteractableMessage message = new InteractableMessage();
+        message.setHandlerKey("known");
+        message.addInteraction(Interaction.asButton(ButtonStyle.PRIMARY, "Click"), event -> Result.KEEP);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        RegistrySnapshot.write(Collections.singletonList(message), output);
+        output.write(42);
+
+        ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray());
+        Map<String, RegistrySnapshot.Restorer> restorers = Collections.singletonMap("known",
+            entry -> new InteractableMessage(entry.getId()));
+        assertEquals(1, RegistrySnapshot.read(input, restorers).size());
+        assertEquals(42, input.read());
+    }
+
+    @Test
+    public void testRejectsMalformedCounts() throws IOException {
+        // One key, one entry referring to the key index 5
+        ByteArrayOutputStream badIndex = header(1);
+        DataOutputStream output = new DataOutputStream(badIndex);
+        output.writeUTF("known");
+        RegistrySnapshot.writeVarLong(output, 1);
+        output.writeLong(0);
+        output.writeLong(0);
+        RegistrySnapshot.writeVarLong(output, 1000);
+        RegistrySnapshot.writeVarLong(output, 5);
+        assertMalformed(badIndex);
+
+        // Key count above the maximum array size
+        assertMalformed(header(Integer.MAX_VALUE + 1L));
+        assertMalformed(header(-1));
+    }
+
+    @Test
+    public void testRejectsOtherStreams() {
+        byte[] garbage = {1, 2, 3, 4, 5, 6, 7, 8};
+        assertThrows(IllegalArgumentException.class, () -> RegistrySnapshot.read(new ByteArrayInputStream(garbage),
+            Collections.emptyMap()));
+    }
+
+    private static ByteArrayOutputStream header(long keyCount) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(RegistrySnapshot.MAGIC);
+        output.writeByte(RegistrySnapshot.FORMAT_VERSION);
+        output.writeLong(System.currentTimeMillis());
+        RegistrySnapshot.writeVarLong(output, keyCount);
+        return bytes;
+    }
+
+    private static void assertMalformed(ByteArrayOutputStream bytes) {
+        IOException exception = assertThrows(IOException.class, () -> RegistrySnapshot.read(
+            new ByteArrayInputStream(bytes.toByteArray()), Collections.emptyMap()));
+        assertEquals("Malformed snapshot", exception.getMessage());
+    }
+}
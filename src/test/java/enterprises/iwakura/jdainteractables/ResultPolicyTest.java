@@ -0,0 +1,56 @@
+package enterprises.iwakura.jdainteractables;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import enterprises.iwakura.jdainteractables.InteractionHandler.Result;
+
+/**
+ * Combining of handler results by {@link ResultPolicy}
+ */
+public class ResultPolicyTest {
+
+    @Test
+    public void testLastWins() {
+        assertEquals(Result.KEEP, combine(ResultPolicy.LAST, Result.REMOVE, Result.KEEP));
+        assertEquals(Result.REMOVE, combine(ResultPolicy.LAST, Result.KEEP, Result.REMOVE));
+        assertEquals(Result.IGNORE, combine(ResultPolicy.LAST, Result.KEEP, Result.IGNORE));
+    }
+
+    @Test
+    public void testRemoveWins() {
+        assertEquals(Result.REMOVE, combine(ResultPolicy.REMOVE_WINS, Result.KEEP, Result.REMOVE, Result.KEEP));
+        assertEquals(Result.REMOVE, combine(ResultPolicy.REMOVE_WINS, Result.REMOVE, Result.IGNORE));
+        assertEquals(Result.KEEP, combine(ResultPolicy.REMOVE_WINS, Result.IGNORE, Result.KEEP, Result.KEEP));
+        assertEquals(Result.IGNORE, combine(ResultPolicy.REMOVE_WINS, Result.NOT_PROCESSED, Result.IGNORE));
+    }
+
+    @Test
+    public void testKeepWins() {
+        assertEquals(Result.KEEP, combine(ResultPolicy.KEEP_WINS, Result.REMOVE, Result.KEEP, Result.REMOVE));
+        assertEquals(Result.KEEP, combine(ResultPolicy.KEEP_WINS, Result.KEEP, Result.IGNORE));
+        assertEquals(Result.REMOVE, combine(ResultPolicy.KEEP_WINS, Result.IGNORE, Result.REMOVE));
+    }
+
+    @Test
+    public void testNotProcessedNeverWins() {
+        for (ResultPolicy policy : new ResultPolicy[] {ResultPolicy.REMOVE_WINS, ResultPolicy.KEEP_WINS}) {
+            for (Result result : Result.values()) {
+                assertEquals(result, policy.combine(result, Result.NOT_PROCESSED), policy + " with " + result);
+                assertEquals(result, policy.combine(Result.NOT_PROCESSED, result), policy + " with " + result);
+            }
+        }
+    }
+
+    /**
+     * Combines the results in order of dispatch, starting from {@link Result#NOT_PROCESSED}
+     */
+    private static Result combine(ResultPolicy policy, Result... results) {
+        Result combined = Result.NOT_PROCESSED;
+        for (Result result : results) {
+            combined = policy.combine(combined, result);
+        }
+        return combined;
+    }
+}